@@ -0,0 +1,132 @@
+/******************************************************************************
+ * Accueil.java
+ * Accueil des nouvelles connexions, avant qu'elles ne deviennent des clients
+ *
+ * Cette classe gère :
+ * - La table bornée des connexions en cours d'accueil (salle et nom pas
+ *   encore reçus), au total et par adresse distante
+ * - La lecture des lignes d'accueil avec une échéance par connexion et une
+ *   longueur maximale
+ * - Les compteurs de connexions refusées et expirées
+ *
+ * Une connexion refusée est fermée par le thread d'acceptation lui-même,
+ * sans thread ni file d'envoi. Une connexion qui n'envoie pas sa salle et
+ * son nom avant l'échéance (lente, à moitié ouverte...) est fermée avant
+ * d'avoir coûté une place, un joueur ou un exécuteur d'envoi.
+ *
+ * Les adresses locales (passerelle sur la même machine, tests de charge)
+ * ne sont pas limitées par adresse : toutes leurs connexions en viennent.
+ *****************************************************************************/
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission et lecture des premières lignes des connexions entrantes
+ */
+public class Accueil {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final long DELAI_MS = 5000;           // Temps laissé pour envoyer la salle et le nom
+    public static final int LONGUEUR_MAX = 1024;        // Longueur maximale d'une ligne d'accueil
+    private static final int MAX_EN_COURS = 1024;       // Connexions en cours d'accueil, toutes adresses
+    private static final int MAX_PAR_ADRESSE = 16;      // Connexions en cours d'accueil par adresse distante
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Map<InetAddress, Integer> parAdresse = new HashMap<>(); // Accueils en cours par adresse
+    private int enCours = 0;                            // Accueils en cours au total
+    private final LongAdder refusees = new LongAdder(); // Connexions refusées (table pleine)
+    private final LongAdder expirees = new LongAdder(); // Connexions fermées à l'échéance
+
+    //==========================================================================
+    // Admission
+    //==========================================================================
+    /**
+     * Réserve une entrée de la table pour une connexion qui vient d'être acceptée
+     * @param adresse Adresse distante
+     * @return false si la table ou la part de cette adresse est pleine
+     */
+    public synchronized boolean reserver(InetAddress adresse) {
+        if (enCours >= MAX_EN_COURS) {
+            refusees.increment();
+            return false;
+        }
+        if (!adresse.isLoopbackAddress()) {
+            int nombre = parAdresse.getOrDefault(adresse, 0);
+            if (nombre >= MAX_PAR_ADRESSE) {
+                refusees.increment();
+                return false;
+            }
+            parAdresse.put(adresse, nombre + 1);
+        }
+        enCours++;
+        return true;
+    }
+
+    /**
+     * Libère l'entrée d'une connexion dont l'accueil est terminé, réussi ou non
+     * @param adresse Adresse distante
+     */
+    public synchronized void liberer(InetAddress adresse) {
+        enCours--;
+        if (!adresse.isLoopbackAddress()) {
+            parAdresse.computeIfPresent(adresse, (a, nombre) -> nombre > 1 ? nombre - 1 : null);
+        }
+    }
+
+    /**
+     * Compte une connexion fermée faute d'avoir fini son accueil à temps
+     */
+    public void expiree() {
+        expirees.increment();
+    }
+
+    //==========================================================================
+    // Lecture
+    //==========================================================================
+    /**
+     * Lit une ligne d'accueil octet par octet, sans rien lire au-delà : le
+     * reste du flux revient intact à qui lira ensuite
+     * @param socket Socket de la connexion (son délai de lecture suit l'échéance)
+     * @param entree Flux d'entrée de la socket
+     * @param echeance Échéance de l'accueil (System.nanoTime)
+     * @return La ligne sans fin de ligne, ou null si la connexion est fermée
+     * @throws SocketTimeoutException si l'échéance est passée
+     * @throws IOException si la ligne dépasse LONGUEUR_MAX ou en cas d'erreur
+     */
+    public static String lireLigne(Socket socket, InputStream entree, long echeance) throws IOException {
+        ByteArrayOutputStream ligne = new ByteArrayOutputStream();
+        int octet;
+        while (true) {
+            long reste = TimeUnit.NANOSECONDS.toMillis(echeance - System.nanoTime());
+            if (reste <= 0) throw new SocketTimeoutException("Accueil trop long");
+            socket.setSoTimeout((int) reste);
+            octet = entree.read();
+            if (octet == '\n') break;
+            if (octet < 0) return null;
+            if (ligne.size() >= LONGUEUR_MAX) throw new IOException("Ligne d'accueil trop longue");
+            ligne.write(octet);
+        }
+        String texte = ligne.toString(StandardCharsets.UTF_8);
+        return texte.endsWith("\r") ? texte.substring(0, texte.length() - 1) : texte;
+    }
+
+    //==========================================================================
+    // Getters
+    //==========================================================================
+    public synchronized int getEnCours() { return enCours; }
+    public long getRefusees() { return refusees.sum(); }
+    public long getExpirees() { return expirees.sum(); }
+}
@@ -0,0 +1,263 @@
+/******************************************************************************
+ * Appariement.java
+ * Mise en place des joueurs et lancement des parties d'une salle
+ *
+ * Cette classe gère :
+ * - Les places de la partie (MAX_JOUEURS par défaut) et la file des joueurs qui
+ *   attendent une place libre
+ * - Le compte à rebours, lancé dès que MIN_JOUEURS joueurs sont assis,
+ *   annulé si la salle redescend sous ce nombre, abrégé si elle est pleine
+ * - L'abandon d'une partie qui n'a plus assez de joueurs
+ * - La partie suivante : en fin de partie, un nouveau compte à rebours
+ *   part si la salle est assez remplie
+ *
+ * Rien n'est scruté : chaque arrivée, départ ou fin de partie réévalue la
+ * salle sur-le-champ. Un seul thread, partagé par toutes les salles du
+ * processus, égrène les comptes à rebours.
+ *****************************************************************************/
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Places, file d'attente et démarrage des parties d'une salle
+ */
+public class Appariement {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final int MIN_JOUEURS = 3;         // Nombre minimum de joueurs pour démarrer
+    public static final int MAX_JOUEURS = 10;        // Nombre de places par défaut
+    private static final int TAILLE_FILE = 10;       // Joueurs au plus en attente d'une place
+    private static final int COMPTE_A_REBOURS = 15;  // Secondes entre le quorum et le début de partie
+
+    private static final ScheduledExecutorService HORLOGE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "appariement");
+        t.setDaemon(true);
+        return t;
+    });                                              // Comptes à rebours de toutes les salles
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Serveur serveur;                   // Serveur de la salle
+    private final int places;                        // Joueurs assis au plus
+    private final Set<ClientHandler> joueurs = new HashSet<>();    // Joueurs assis (dans Serveur.clients)
+    private final Deque<ClientHandler> file = new ArrayDeque<>();  // Joueurs en attente d'une place
+    private ScheduledFuture<?> compte;               // Compte à rebours en cours (null sinon)
+    private int secondes;                            // Secondes restantes du compte à rebours
+    private boolean enJeu = false;                   // Partie en cours
+    private boolean automatique = true;              // Places limitées et démarrage automatique
+    private boolean ferme = false;                   // Salle arrêtée
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param serveur Serveur de la salle
+     * @param places Joueurs assis au plus (au moins MIN_JOUEURS)
+     */
+    public Appariement(Serveur serveur, int places) {
+        this.serveur = serveur;
+        this.places = Math.max(MIN_JOUEURS, places);
+    }
+
+    //==========================================================================
+    // Événements
+    //==========================================================================
+    /**
+     * Place un joueur dont le nom vient d'être lu
+     * Assis s'il reste une place (partie en cours comprise), sinon mis en file
+     * @param client Le client du joueur
+     * @return false si la salle et la file sont pleines
+     */
+    public synchronized boolean arriver(ClientHandler client) {
+        if (ferme) return false;
+        if (!automatique || (joueurs.size() < places && file.isEmpty())) {
+            asseoir(client);
+            evaluer();
+            return true;
+        }
+        if (file.size() >= TAILLE_FILE) return false;
+        file.add(client);
+        client.envoyerMessageAsync(messageFile(file.size()));
+        return true;
+    }
+
+    /**
+     * Retire un joueur déconnecté, assis ou en file
+     * Une partie qui n'a plus assez de joueurs est abandonnée
+     * @param client Le client du joueur
+     */
+    public void quitter(ClientHandler client) {
+        boolean abandon = false;
+        synchronized (this) {
+            if (file.remove(client)) {
+                annoncerFile();
+                return;
+            }
+            if (!joueurs.remove(client)) return;
+            serveur.removeClient(client);
+            serveur.getPartie().retirerJoueur(client.getJoueur());
+            if (enJeu && automatique && joueurs.size() < MIN_JOUEURS) {
+                serveur.broadcast("Trop peu de joueurs pour continuer. Fin de la partie.", null);
+                enJeu = false;
+                abandon = true;
+            }
+            placerFile();
+            evaluer();
+        }
+        if (abandon) {
+            serveur.getPartie().setPartieEnCours(false);
+        }
+    }
+
+    /**
+     * Signale la fin normale d'une partie (podium envoyé)
+     * La partie suivante se prépare avec les joueurs restés
+     */
+    public synchronized void finDePartie() {
+        if (!enJeu) return;
+        enJeu = false;
+        evaluer();
+    }
+
+    /**
+     * Arrête le compte à rebours d'une salle fermée
+     */
+    public synchronized void arreter() {
+        ferme = true;
+        annulerCompte();
+    }
+
+    /**
+     * Désactive la limite de places et le démarrage automatique : tous les
+     * joueurs sont assis et la partie n'est lancée qu'à la main (bancs d'essai)
+     */
+    synchronized void desactiver() {
+        automatique = false;
+        annulerCompte();
+    }
+
+    //==========================================================================
+    // Getters
+    //==========================================================================
+    public synchronized boolean isEnJeu() { return enJeu; }
+    public synchronized int getNombreEnFile() { return file.size(); }
+    public int getPlaces() { return places; }
+
+    /**
+     * Message envoyé à un joueur refusé
+     * @return Le message de salle pleine
+     */
+    public String messagePartiePleine() {
+        return "La partie est pleine (maximum " + places + " joueurs et "
+            + TAILLE_FILE + " en attente)";
+    }
+
+    //==========================================================================
+    // Méthodes privées (appelées sous le verrou de l'appariement)
+    //==========================================================================
+    /**
+     * Donne une place au joueur : liste des clients du serveur puis partie
+     */
+    private void asseoir(ClientHandler client) {
+        joueurs.add(client);
+        serveur.ajouterClient(client);
+        if (!enJeu) {
+            System.out.println("Nouveau client connecté. Total: " + joueurs.size());
+            serveur.broadcast("Un nouveau joueur a rejoint la partie. (" + joueurs.size() + " joueurs)", null);
+        }
+        client.entrerEnJeu(enJeu);
+    }
+
+    /**
+     * Assied les joueurs en file, dans l'ordre d'arrivée, tant qu'il reste des places
+     * En cours de partie, ils la rejoignent comme tout nouveau venu
+     */
+    private void placerFile() {
+        if (file.isEmpty()) return;
+        while (joueurs.size() < places && !file.isEmpty()) {
+            asseoir(file.poll());
+        }
+        annoncerFile();
+    }
+
+    private void annoncerFile() {
+        int position = 0;
+        for (ClientHandler client : file) {
+            client.envoyerMessageAsync(messageFile(++position));
+        }
+    }
+
+    private static String messageFile(int position) {
+        return "Salle pleine : vous êtes " + position + (position == 1 ? "er" : "e")
+            + " dans la file, vous jouerez dès qu'une place se libère.";
+    }
+
+    /**
+     * Lance, abrège ou annule le compte à rebours selon le nombre de joueurs assis
+     */
+    private void evaluer() {
+        if (enJeu || ferme || !automatique) return;
+        int nombre = joueurs.size();
+        if (nombre < MIN_JOUEURS) {
+            if (compte != null) {
+                annulerCompte();
+                serveur.broadcast("Compte à rebours annulé : il faut au moins " + MIN_JOUEURS + " joueurs.", null);
+            }
+        } else if (nombre >= places) {
+            // Salle pleine : inutile d'attendre d'autres joueurs
+            if (compte == null || secondes > 0) {
+                annulerCompte();
+                secondes = 0;
+                compte = HORLOGE.schedule(this::battre, 0, TimeUnit.SECONDS);
+            }
+        } else if (compte == null) {
+            secondes = COMPTE_A_REBOURS;
+            compte = HORLOGE.scheduleAtFixedRate(this::battre, 0, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private void annulerCompte() {
+        if (compte != null) {
+            compte.cancel(false);
+            compte = null;
+        }
+    }
+
+    //==========================================================================
+    // Compte à rebours (thread HORLOGE)
+    //==========================================================================
+    /**
+     * Annonce une seconde du compte à rebours ou démarre la partie
+     * La partie est démarrée hors du verrou : Partie prend ses propres verrous
+     */
+    private void battre() {
+        synchronized (this) {
+            if (compte == null || enJeu || ferme) return;   // Annulé entre-temps
+            if (secondes > 0) {
+                serveur.broadcast("La partie commence dans " + secondes + " secondes!", null);
+                secondes--;
+                return;
+            }
+            annulerCompte();
+            enJeu = true;
+            serveur.broadcast("La partie commence maintenant!", null);
+        }
+        try {
+            List<ClientHandler> clients = serveur.getClients();
+            serveur.getPartie().preparerJoueurs(clients);
+            serveur.getPartie().demarrerPartie(clients);
+        } catch (RuntimeException e) {
+            System.err.println("Erreur au démarrage de la partie: " + e.getMessage());
+        }
+    }
+}
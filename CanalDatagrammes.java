@@ -0,0 +1,277 @@
+/******************************************************************************
+ * CanalDatagrammes.java
+ * Canal UDP des traits, à côté de la connexion TCP de chaque joueur
+ *
+ * Cette classe gère :
+ * - La socket UDP du serveur, sur le même numéro de port que le TCP
+ * - L'ouverture du canal d'un joueur : le client demande UDP: sur TCP,
+ *   reçoit UDP:<jeton>, envoie ce jeton en datagramme ; le serveur note
+ *   l'adresse d'où il vient et confirme par UDP_OK: sur TCP
+ * - L'envoi des points nouveaux de chaque trait, en datagrammes numérotés
+ *   [int numéro][int trait][int couleur][int épaisseur][int premier point]
+ *   [short nombre de points] puis x, y de chaque point (short)
+ * - Le numéro du dernier datagramme (UDP_SEQ:<n>) envoyé sur TCP quand le
+ *   dessin marque une pause : une perte en fin de trait se voit aussi
+ * - La mémoire des derniers datagrammes, pour retrouver les traits d'une
+ *   demande RENVOI:<premier>:<dernier> (renvoyés en DRAW sur TCP)
+ * - Une perte simulée des datagrammes sortants, pour les essais en local
+ *
+ * Seuls les points des traits passent par UDP : ROLE, CHAT, CLEAR, les
+ * manches... restent sur TCP. Un point porte son index dans le trait :
+ * recevoir deux fois le même datagramme, ou dans le désordre, ne change
+ * rien. Un datagramme perdu ne retarde donc plus que son trait, et plus
+ * tout ce qui le suit sur la connexion TCP.
+ *
+ * Un client qui ne demande pas le canal, ou dont le jeton n'arrive pas
+ * (pare-feu, passerelle), reçoit les traits sur TCP comme avant.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.security.SecureRandom;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Socket UDP du serveur et envoi des traits par datagrammes
+ */
+public class CanalDatagrammes {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final String DEMANDE = "UDP:";           // Client : demande du canal ; serveur : UDP:<jeton>
+    public static final String ACTIF = "UDP_OK:";          // Serveur : jeton reçu, les traits passent par UDP
+    public static final String SEQUENCE = "UDP_SEQ:";      // Serveur : numéro du dernier datagramme envoyé
+    public static final String RENVOI = "RENVOI:";         // Client : RENVOI:<premier>:<dernier> datagrammes manquants
+    public static final int TAILLE_ENTETE = 22;            // Numéro, trait, couleur, épaisseur, premier point et nombre de points
+    public static final int TAILLE_MAX = 1200;             // Octets au plus par datagramme (sous la MTU courante)
+    public static final int POINTS_MAX = (TAILLE_MAX - TAILLE_ENTETE) / 4;   // Points au plus par datagramme
+    public static final int TAILLE_JETON = 8;              // Datagramme d'ouverture : le jeton (long)
+    private static final int MEMOIRE = 1024;               // Datagrammes récents dont on retrouve le trait
+    private static final long PAUSE_MS = 100;              // Silence après lequel UDP_SEQ est envoyé
+
+    private static final ScheduledExecutorService HORLOGE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "datagrammes-pause");
+        t.setDaemon(true);
+        return t;
+    });                                                    // Envois de UDP_SEQ de tous les destinataires
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final DatagramChannel canal;                   // Socket UDP du serveur
+    private final double perte;                            // Part des datagrammes sortants jetés exprès (essais)
+    private final Random hasard = new SecureRandom();      // Jetons d'ouverture
+    private final Map<Long, ClientHandler> ouvertures = new ConcurrentHashMap<>(); // Jeton -> client qui l'attend
+    private final Set<Destinataire> destinataires = ConcurrentHashMap.newKeySet(); // Canaux ouverts
+    private final LongAdder envoyes = new LongAdder();     // Datagrammes envoyés
+    private final LongAdder jetes = new LongAdder();       // Datagrammes jetés par la perte simulée
+    private final LongAdder renvois = new LongAdder();     // Demandes RENVOI reçues
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Ouvre la socket UDP et démarre la réception des jetons
+     * @param port Port UDP (celui du serveur TCP)
+     * @param perte Part des datagrammes sortants à jeter, entre 0 et 1 (essais)
+     * @throws IOException si le port UDP n'est pas libre
+     */
+    public CanalDatagrammes(int port, double perte) throws IOException {
+        this.perte = perte;
+        canal = DatagramChannel.open();
+        canal.bind(new InetSocketAddress(port));
+        Thread reception = new Thread(this::recevoir, "datagrammes");
+        reception.setDaemon(true);
+        reception.start();
+    }
+
+    //==========================================================================
+    // Ouverture du canal d'un client
+    //==========================================================================
+    /**
+     * Prépare l'ouverture du canal d'un client
+     * @param client Le client qui a demandé le canal
+     * @return Le jeton que le client doit envoyer en datagramme
+     */
+    public long ouvrir(ClientHandler client) {
+        long jeton = hasard.nextLong();
+        ouvertures.put(jeton, client);
+        return jeton;
+    }
+
+    /**
+     * Oublie le canal d'un client déconnecté, ouvert ou en cours d'ouverture
+     * @param client Le client
+     */
+    public void fermer(ClientHandler client) {
+        ouvertures.values().remove(client);
+        destinataires.removeIf(destinataire -> destinataire.client == client);
+    }
+
+    /**
+     * Reçoit les jetons d'ouverture (thread dédié)
+     * Rien d'autre n'arrive par UDP : tout datagramme inattendu est ignoré
+     */
+    private void recevoir() {
+        ByteBuffer tampon = ByteBuffer.allocate(TAILLE_JETON + 1);     // Un datagramme plus long se voit
+        while (canal.isOpen()) {
+            try {
+                tampon.clear();
+                SocketAddress adresse = canal.receive(tampon);
+                if (tampon.position() != TAILLE_JETON) continue;
+                ClientHandler client = ouvertures.remove(tampon.getLong(0));
+                if (client == null || !client.isActive()) continue;
+                Destinataire destinataire = new Destinataire(this, client, adresse);
+                destinataires.add(destinataire);
+                client.activerDatagrammes(destinataire);
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                System.err.println("Erreur de réception UDP: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ferme la socket UDP (serveur arrêté)
+     */
+    public void arreter() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du canal UDP: " + e.getMessage());
+        }
+    }
+
+    //==========================================================================
+    // Getters
+    //==========================================================================
+    public int getNombre() { return destinataires.size(); }
+    public long getEnvoyes() { return envoyes.sum(); }
+    public long getJetes() { return jetes.sum(); }
+    public long getRenvois() { return renvois.sum(); }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    private void envoyer(ByteBuffer datagramme, SocketAddress adresse) {
+        if (perte > 0 && ThreadLocalRandom.current().nextDouble() < perte) {
+            jetes.increment();
+            return;
+        }
+        try {
+            canal.send(datagramme, adresse);
+            envoyes.increment();
+        } catch (IOException e) {
+            // Comme une perte : le client demandera le renvoi sur TCP
+        }
+    }
+
+    //==========================================================================
+    // Canal d'un client
+    //==========================================================================
+    /**
+     * Envoi des traits d'un client par datagrammes
+     * Appelé par Fidelite au niveau PLEIN, sous son verrou
+     */
+    public static class Destinataire {
+        private final CanalDatagrammes canal;              // Socket du serveur
+        private final ClientHandler client;                // Connexion TCP du client
+        private final SocketAddress adresse;               // Adresse UDP vue dans le jeton
+        private int sequence = 0;                          // Numéro du dernier datagramme envoyé
+        private final int[] traits = new int[MEMOIRE];     // Trait de chaque datagramme récent (index : numéro % MEMOIRE)
+        private int traitCourant = -1;                     // Dernier trait envoyé
+        private int pointsEnvoyes = 0;                     // Points de ce trait déjà envoyés
+        private long dernierEnvoi;                         // Instant du dernier datagramme (System.nanoTime)
+        private boolean pausePrevue = false;               // UDP_SEQ planifié
+
+        private Destinataire(CanalDatagrammes canal, ClientHandler client, SocketAddress adresse) {
+            this.canal = canal;
+            this.client = client;
+            this.adresse = adresse;
+        }
+
+        /**
+         * Envoie les points d'un trait que le client n'a pas encore reçus
+         * Une version plus courte ou d'un autre trait repart du premier point
+         * @param ligne Version décodée du trait (null si illisible)
+         * @return false si le trait doit passer par TCP
+         */
+        public synchronized boolean tracer(LineData ligne) {
+            if (ligne == null) return false;
+            int nbPoints = ligne.getNbPoints();
+            int debut = ligne.getIdentifiant() == traitCourant && pointsEnvoyes <= nbPoints ? pointsEnvoyes : 0;
+            for (int premier = debut; premier < nbPoints; premier += POINTS_MAX) {
+                int nombre = Math.min(POINTS_MAX, nbPoints - premier);
+                sequence++;
+                traits[sequence % MEMOIRE] = ligne.getIdentifiant();
+                ByteBuffer datagramme = ByteBuffer.allocate(TAILLE_ENTETE + 4 * nombre);
+                datagramme.putInt(sequence).putInt(ligne.getIdentifiant()).putInt(ligne.getCouleur())
+                    .putInt(ligne.getStrokeWidth()).putInt(premier).putShort((short) nombre);
+                for (int i = premier; i < premier + nombre; i++) {
+                    datagramme.putShort((short) ligne.getX(i)).putShort((short) ligne.getY(i));
+                }
+                canal.envoyer(datagramme.flip(), adresse);
+            }
+            traitCourant = ligne.getIdentifiant();
+            pointsEnvoyes = nbPoints;
+            dernierEnvoi = System.nanoTime();
+            if (!pausePrevue) {
+                pausePrevue = true;
+                HORLOGE.schedule(this::signalerPause, PAUSE_MS, TimeUnit.MILLISECONDS);
+            }
+            return true;
+        }
+
+        /**
+         * Traits des datagrammes demandés par le client
+         * @param premier Premier numéro manquant
+         * @param dernier Dernier numéro manquant
+         * @return Les traits à renvoyer sur TCP, ou null si la demande remonte
+         *         au-delà de la mémoire (il faut renvoyer tout le dessin)
+         */
+        public synchronized Set<Integer> traitsDe(int premier, int dernier) {
+            canal.renvois.increment();
+            Set<Integer> demandes = new LinkedHashSet<>();
+            if (premier < 1 || premier > dernier || dernier > sequence) return demandes;
+            if (sequence - premier >= MEMOIRE) return null;
+            for (int numero = premier; numero <= dernier; numero++) {
+                demandes.add(traits[numero % MEMOIRE]);
+            }
+            return demandes;
+        }
+
+        /**
+         * Envoie UDP_SEQ sur TCP après PAUSE_MS sans datagramme (thread HORLOGE)
+         * Le numéro est lu au moment de l'écriture. Un datagramme parti juste
+         * avant peut arriver après lui : le renvoi demandé est alors superflu,
+         * sans dommage
+         */
+        private synchronized void signalerPause() {
+            long reste = dernierEnvoi + TimeUnit.MILLISECONDS.toNanos(PAUSE_MS) - System.nanoTime();
+            if (reste > 0) {
+                HORLOGE.schedule(this::signalerPause, reste, TimeUnit.NANOSECONDS);
+                return;
+            }
+            pausePrevue = false;
+            client.envoyerCalcule(this::messageSequence);
+        }
+
+        private synchronized String messageSequence() {
+            return SEQUENCE + sequence;
+        }
+    }
+}
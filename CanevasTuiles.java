@@ -0,0 +1,440 @@
+/******************************************************************************
+ * CanevasTuiles.java
+ * Image du dessin de la manche, découpée en tuiles, côté serveur
+ *
+ * Cette classe gère :
+ * - Le rendu hors écran des traits de la manche (HistoriqueTraits)
+ * - Le suivi des tuiles modifiées depuis le dernier instantané
+ * - La compression des tuiles et l'encodage du message CANEVAS
+ * - L'encodage des seules tuiles changées depuis une version (message
+ *   TUILES, pour les spectateurs)
+ * - Le décodage de ces messages côté client
+ *
+ * Un joueur qui arrive en cours de manche reçoit l'image (seules les tuiles
+ * non blanches, compressées) puis seulement les traits suivants : le coût
+ * dépend de la taille du canevas et plus de la longueur de l'historique.
+ * Le rendu n'est fait qu'à la demande d'un instantané, rien n'est calculé
+ * pendant le dessin.
+ *****************************************************************************/
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Canevas du serveur, rendu à la demande à partir de l'historique des traits
+ */
+public class CanevasTuiles {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final int LARGEUR = 1200;           // Largeur du canevas en pixels
+    public static final int HAUTEUR = 800;            // Hauteur du canevas en pixels
+    private static final int TAILLE_TUILE = 64;       // Côté d'une tuile en pixels
+    private static final int COLONNES = (LARGEUR + TAILLE_TUILE - 1) / TAILLE_TUILE;
+    private static final int RANGEES = (HAUTEUR + TAILLE_TUILE - 1) / TAILLE_TUILE;
+    private static final int FOND = 0xFFFFFF;         // Couleur du fond (blanc)
+    private static final int MARGE = 2;               // Pixels ajoutés autour d'un trait (anti-aliasing)
+
+    //==========================================================================
+    // Instantané décodé
+    //==========================================================================
+    /**
+     * Contenu d'un message CANEVAS, côté client
+     */
+    public static class Instantane {
+        private final BufferedImage image;    // Image du canevas (fond blanc)
+        private final int[] identifiants;     // Traits contenus dans l'image
+
+        private Instantane(BufferedImage image, int[] identifiants) {
+            this.image = image;
+            this.identifiants = identifiants;
+        }
+
+        public BufferedImage getImage() { return image; }
+        public int[] getIdentifiants() { return identifiants; }
+    }
+
+    /**
+     * Contenu décodé d'un message TUILES : des tuiles à recopier dans une image
+     */
+    public static class Retouche {
+        private final int[] index;            // Index de chaque tuile
+        private final int[][] pixels;         // Pixels RGB de chaque tuile, ligne par ligne
+
+        private Retouche(int[] index, int[][] pixels) {
+            this.index = index;
+            this.pixels = pixels;
+        }
+
+        /**
+         * Recopie les tuiles dans une image du canevas
+         * @param image Image de LARGEUR x HAUTEUR pixels
+         */
+        public void appliquer(BufferedImage image) {
+            for (int t = 0; t < index.length; t++) {
+                Rectangle zone = zoneTuile(index[t]);
+                image.setRGB(zone.x, zone.y, zone.width, zone.height, pixels[t], 0, zone.width);
+            }
+        }
+    }
+
+    /**
+     * Trait présent dans l'image
+     */
+    private static class Rendu {
+        final HistoriqueTraits.Trait trait;   // Version de l'historique rendue
+        final LineData ligne;                 // Trait décodé (null si illisible)
+        final Rectangle bornes;               // Zone couverte (null si rien n'est dessiné)
+
+        Rendu(HistoriqueTraits.Trait trait, LineData ligne, Rectangle bornes) {
+            this.trait = trait;
+            this.ligne = ligne;
+            this.bornes = bornes;
+        }
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final BufferedImage image = imageBlanche();                        // Rendu des traits
+    private final List<Rendu> rendus = new ArrayList<>();                       // Traits déjà dans l'image, dans l'ordre
+    private final boolean[] modifiees = new boolean[COLONNES * RANGEES];       // Tuiles à recompresser
+    private final byte[][] compressees = new byte[COLONNES * RANGEES][];       // Tuiles compressées (null si blanche)
+    private final long[] versions = new long[COLONNES * RANGEES];              // Version de la dernière modification de chaque tuile
+    private long version = 0;                                                   // Version courante de l'image
+    private final int[] pixels = new int[TAILLE_TUILE * TAILLE_TUILE];         // Tampon de lecture d'une tuile
+    private final byte[] brut = new byte[3 * TAILLE_TUILE * TAILLE_TUILE];     // Tuile en RGB avant compression
+    private final Deflater compresseur = new Deflater(Deflater.BEST_SPEED);
+    private final Path2D.Float chemin = new Path2D.Float();                     // Chemin réutilisé pour le rendu
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Met l'image à jour avec l'historique puis construit le message CANEVAS
+     * Seules les tuiles modifiées depuis l'instantané précédent sont recompressées
+     * @param traits Copie des traits affichés (HistoriqueTraits.copie())
+     * @return Le message complet "CANEVAS:..."
+     */
+    public synchronized String instantane(List<HistoriqueTraits.Trait> traits) {
+        actualiser(traits);
+
+        int nbTuiles = 0, taille = 0;
+        for (byte[] tuile : compressees) {
+            if (tuile != null) {
+                nbTuiles++;
+                taille += 6 + tuile.length;
+            }
+        }
+
+        ByteBuffer tampon = ByteBuffer.allocate(4 + 4 * rendus.size() + 2 + taille);
+        tampon.putInt(rendus.size());
+        for (Rendu rendu : rendus) {
+            tampon.putInt(rendu.trait.getIdentifiant());
+        }
+        tampon.putShort((short) nbTuiles);
+        for (int i = 0; i < compressees.length; i++) {
+            if (compressees[i] != null) {
+                tampon.putShort((short) i).putInt(compressees[i].length).put(compressees[i]);
+            }
+        }
+        return "CANEVAS:" + Base64.getEncoder().encodeToString(tampon.array());
+    }
+
+    /**
+     * Met l'image à jour avec l'historique et recompresse les tuiles modifiées
+     * @param traits Copie des traits affichés (HistoriqueTraits.copie())
+     * @return La version de l'image, qui augmente à chaque modification
+     */
+    public synchronized long actualiser(List<HistoriqueTraits.Trait> traits) {
+        mettreAJour(traits);
+
+        boolean change = false;
+        for (int i = 0; i < compressees.length; i++) {
+            if (modifiees[i]) {
+                if (!change) {
+                    change = true;
+                    version++;
+                }
+                compressees[i] = compresserTuile(i);
+                versions[i] = version;
+                modifiees[i] = false;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Construit le message TUILES des tuiles modifiées après une version
+     * Une tuile redevenue blanche est envoyée sans contenu
+     * @param depuis Version déjà connue du destinataire (0 pour une image blanche)
+     * @return Le message complet "TUILES:...", ou null si rien n'a changé
+     */
+    public synchronized String tuiles(long depuis) {
+        int nbTuiles = 0, taille = 0;
+        for (int i = 0; i < compressees.length; i++) {
+            if (versions[i] > depuis) {
+                nbTuiles++;
+                taille += 6 + (compressees[i] == null ? 0 : compressees[i].length);
+            }
+        }
+        if (nbTuiles == 0) return null;
+
+        ByteBuffer tampon = ByteBuffer.allocate(2 + taille);
+        tampon.putShort((short) nbTuiles);
+        for (int i = 0; i < compressees.length; i++) {
+            if (versions[i] > depuis) {
+                byte[] tuile = compressees[i] == null ? new byte[0] : compressees[i];
+                tampon.putShort((short) i).putInt(tuile.length).put(tuile);
+            }
+        }
+        return "TUILES:" + Base64.getEncoder().encodeToString(tampon.array());
+    }
+
+    /**
+     * Décode un message CANEVAS (sans le préfixe)
+     * @param donnees Texte reçu après "CANEVAS:"
+     * @return L'image et les traits qu'elle contient
+     * @throws IOException en cas de données invalides
+     */
+    public static Instantane decoder(String donnees) throws IOException {
+        try {
+            ByteBuffer tampon = ByteBuffer.wrap(Base64.getDecoder().decode(donnees));
+            int nbTraits = tampon.getInt();
+            if (nbTraits < 0 || nbTraits > tampon.remaining() / 4) throw new IOException("Canevas invalide");
+            int[] identifiants = new int[nbTraits];
+            for (int i = 0; i < nbTraits; i++) {
+                identifiants[i] = tampon.getInt();
+            }
+
+            BufferedImage image = imageBlanche();
+            lireTuiles(tampon).appliquer(image);
+            return new Instantane(image, identifiants);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Canevas invalide: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Décode un message TUILES (sans le préfixe)
+     * @param donnees Texte reçu après "TUILES:"
+     * @return Les tuiles à recopier
+     * @throws IOException en cas de données invalides
+     */
+    public static Retouche decoderTuiles(String donnees) throws IOException {
+        try {
+            return lireTuiles(ByteBuffer.wrap(Base64.getDecoder().decode(donnees)));
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Tuiles invalides: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Crée une image du canevas entièrement blanche
+     * @return Image de LARGEUR x HAUTEUR pixels
+     */
+    public static BufferedImage imageBlanche() {
+        BufferedImage image = new BufferedImage(LARGEUR, HAUTEUR, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(new Color(FOND));
+        g2.fillRect(0, 0, LARGEUR, HAUTEUR);
+        g2.dispose();
+        return image;
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Lit une suite de tuiles [short nombre] puis [short index][int longueur][deflate RGB]
+     * Une tuile sans contenu est blanche
+     */
+    private static Retouche lireTuiles(ByteBuffer tampon) throws IOException {
+        int nbTuiles = tampon.getShort();
+        if (nbTuiles < 0 || nbTuiles > COLONNES * RANGEES) throw new IOException("Nombre de tuiles invalide: " + nbTuiles);
+        int[] index = new int[nbTuiles];
+        int[][] pixels = new int[nbTuiles][];
+        byte[] brut = new byte[3 * TAILLE_TUILE * TAILLE_TUILE];
+        Inflater decompresseur = new Inflater();
+        try {
+            for (int t = 0; t < nbTuiles; t++) {
+                int i = tampon.getShort();
+                int longueur = tampon.getInt();
+                if (i < 0 || i >= COLONNES * RANGEES || longueur < 0 || longueur > tampon.remaining()) {
+                    throw new IOException("Tuile invalide: " + i);
+                }
+                Rectangle zone = zoneTuile(i);
+                int[] tuile = new int[zone.width * zone.height];
+                if (longueur == 0) {
+                    Arrays.fill(tuile, FOND);
+                } else {
+                    decompresseur.reset();
+                    decompresseur.setInput(tampon.array(), tampon.position(), longueur);
+                    int attendu = 3 * tuile.length;
+                    if (decompresseur.inflate(brut, 0, attendu) != attendu) throw new IOException("Tuile tronquée: " + i);
+                    for (int p = 0; p < tuile.length; p++) {
+                        tuile[p] = (brut[3 * p] & 0xFF) << 16 | (brut[3 * p + 1] & 0xFF) << 8 | (brut[3 * p + 2] & 0xFF);
+                    }
+                }
+                tampon.position(tampon.position() + longueur);
+                index[t] = i;
+                pixels[t] = tuile;
+            }
+            return new Retouche(index, pixels);
+        } catch (DataFormatException e) {
+            throw new IOException("Tuile invalide: " + e.getMessage(), e);
+        } finally {
+            decompresseur.end();
+        }
+    }
+
+    /**
+     * Rattrape l'historique : garde le début commun, refait la zone des traits
+     * retirés ou modifiés, puis dessine les traits nouveaux
+     */
+    private void mettreAJour(List<HistoriqueTraits.Trait> traits) {
+        int communs = 0;
+        while (communs < rendus.size() && communs < traits.size()
+                && rendus.get(communs).trait.getIdentifiant() == traits.get(communs).getIdentifiant()
+                && rendus.get(communs).trait.getDonnees() == traits.get(communs).getDonnees()) {
+            communs++;
+        }
+        if (communs == rendus.size() && communs == traits.size()) return;
+
+        Graphics2D g2 = image.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        // Traits retirés ou prolongés : effacer leur zone et redessiner ce qui est dessous
+        Rectangle zone = null;
+        for (int i = communs; i < rendus.size(); i++) {
+            Rectangle bornes = rendus.get(i).bornes;
+            if (bornes != null) zone = zone == null ? bornes : zone.union(bornes);
+        }
+        if (zone != null) {
+            Graphics2D g2Zone = (Graphics2D) g2.create();
+            g2Zone.clip(zone);
+            g2Zone.setColor(new Color(FOND));
+            g2Zone.fill(zone);
+            for (int i = 0; i < communs; i++) {
+                dessiner(g2Zone, rendus.get(i).ligne);
+            }
+            g2Zone.dispose();
+            marquer(zone);
+        }
+        rendus.subList(communs, rendus.size()).clear();
+
+        for (int i = communs; i < traits.size(); i++) {
+            HistoriqueTraits.Trait trait = traits.get(i);
+            try {
+                LineData ligne = LineData.decoder(trait.getDonnees());
+                Rectangle bornes = bornes(ligne);
+                dessiner(g2, ligne);
+                marquer(bornes);
+                rendus.add(new Rendu(trait, ligne, bornes));
+            } catch (IOException e) {
+                System.err.println("Trait illisible ignoré dans le canevas: " + e.getMessage());
+                rendus.add(new Rendu(trait, null, null));
+            }
+        }
+        g2.dispose();
+    }
+
+    /**
+     * Dessine un trait avec le même style que le client (bouts et jointures arrondis)
+     */
+    private void dessiner(Graphics2D g2, LineData ligne) {
+        if (ligne == null || ligne.getNbPoints() < 2) return;
+        chemin.reset();
+        chemin.moveTo(ligne.getX(0), ligne.getY(0));
+        for (int i = 1; i < ligne.getNbPoints(); i++) {
+            chemin.lineTo(ligne.getX(i), ligne.getY(i));
+        }
+        g2.setColor(ligne.getColor());
+        g2.setStroke(new BasicStroke(ligne.getStrokeWidth(), BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        g2.draw(chemin);
+    }
+
+    /**
+     * Zone couverte par un trait, épaisseur comprise
+     * @return La zone, ou null si le trait n'a aucun point
+     */
+    private static Rectangle bornes(LineData ligne) {
+        if (ligne.getNbPoints() == 0) return null;
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = 0; i < ligne.getNbPoints(); i++) {
+            minX = Math.min(minX, ligne.getX(i));
+            minY = Math.min(minY, ligne.getY(i));
+            maxX = Math.max(maxX, ligne.getX(i));
+            maxY = Math.max(maxY, ligne.getY(i));
+        }
+        int marge = (ligne.getStrokeWidth() + 1) / 2 + MARGE;
+        return new Rectangle(minX - marge, minY - marge, maxX - minX + 2 * marge, maxY - minY + 2 * marge);
+    }
+
+    /**
+     * Marque comme modifiées les tuiles touchées par une zone
+     */
+    private void marquer(Rectangle zone) {
+        if (zone == null) return;
+        Rectangle utile = zone.intersection(new Rectangle(0, 0, LARGEUR, HAUTEUR));
+        if (utile.isEmpty()) return;
+        for (int r = utile.y / TAILLE_TUILE; r <= (utile.y + utile.height - 1) / TAILLE_TUILE; r++) {
+            for (int c = utile.x / TAILLE_TUILE; c <= (utile.x + utile.width - 1) / TAILLE_TUILE; c++) {
+                modifiees[r * COLONNES + c] = true;
+            }
+        }
+    }
+
+    /**
+     * Compresse une tuile en RGB (deflate)
+     * @return Les octets compressés, ou null si la tuile est entièrement blanche
+     */
+    private byte[] compresserTuile(int index) {
+        Rectangle zone = zoneTuile(index);
+        image.getRGB(zone.x, zone.y, zone.width, zone.height, pixels, 0, zone.width);
+
+        boolean blanche = true;
+        int n = zone.width * zone.height;
+        for (int p = 0; p < n; p++) {
+            int rgb = pixels[p];
+            if ((rgb & 0xFFFFFF) != FOND) blanche = false;
+            brut[3 * p] = (byte) (rgb >> 16);
+            brut[3 * p + 1] = (byte) (rgb >> 8);
+            brut[3 * p + 2] = (byte) rgb;
+        }
+        if (blanche) return null;
+
+        compresseur.reset();
+        compresseur.setInput(brut, 0, 3 * n);
+        compresseur.finish();
+        ByteArrayOutputStream sortie = new ByteArrayOutputStream(256);
+        byte[] morceau = new byte[4096];
+        while (!compresseur.finished()) {
+            int lus = compresseur.deflate(morceau);
+            sortie.write(morceau, 0, lus);
+        }
+        return sortie.toByteArray();
+    }
+
+    /**
+     * Rectangle d'une tuile dans le canevas (les tuiles du bord peuvent être plus petites)
+     */
+    private static Rectangle zoneTuile(int index) {
+        int x = (index % COLONNES) * TAILLE_TUILE;
+        int y = (index / COLONNES) * TAILLE_TUILE;
+        return new Rectangle(x, y, Math.min(TAILLE_TUILE, LARGEUR - x), Math.min(TAILLE_TUILE, HAUTEUR - y));
+    }
+}
@@ -0,0 +1,143 @@
+/******************************************************************************
+ * Classement.java
+ * Classement des joueurs de la partie en cours
+ *
+ * Cette classe gère :
+ * - Un tableau de joueurs toujours trié par score décroissant
+ * - La mise à jour du rang d'un joueur quand il marque des points
+ * - Le retrait d'un joueur parti en cours de partie
+ * - La construction du podium complet à la demande
+ *
+ * Les scores ne faisant qu'augmenter, un joueur qui marque ne peut que
+ * remonter : il suffit de le faire glisser vers le haut, sans retrier.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Classement maintenu trié au fil des points marqués
+ */
+class Classement {
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final List<Joueur> ordre = new ArrayList<>();          // Joueurs du premier au dernier
+    private final Map<Joueur, Integer> positions = new HashMap<>(); // Index de chaque joueur dans ordre
+    private final Map<Joueur, Integer> arrivees = new HashMap<>();  // Ordre d'arrivée (départage les égalités)
+    private int prochaineArrivee = 0;                              // Ordre d'arrivée du prochain joueur ajouté
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Ajoute un joueur au classement
+     * @param joueur Le joueur à ajouter
+     */
+    public synchronized void ajouterJoueur(Joueur joueur) {
+        if (positions.containsKey(joueur)) return;
+        arrivees.put(joueur, prochaineArrivee++);
+        ordre.add(joueur);
+        positions.put(joueur, ordre.size() - 1);
+        remonter(ordre.size() - 1);
+    }
+
+    /**
+     * Ajoute des points à un joueur et met à jour son rang
+     * @param joueur Le joueur qui marque
+     * @param points Nombre de points gagnés
+     * @return Le nouveau rang du joueur (1 pour le premier)
+     */
+    public synchronized int ajouterPoints(Joueur joueur, int points) {
+        joueur.ajouterPoints(points);
+        Integer position = positions.get(joueur);
+        if (position == null) {
+            ajouterJoueur(joueur);
+            position = positions.get(joueur);
+        }
+        return remonter(position) + 1;
+    }
+
+    /**
+     * Retire un joueur parti : les joueurs classés après lui remontent d'un rang
+     * @param joueur Le joueur à retirer (sans effet s'il n'est pas classé)
+     */
+    public synchronized void retirerJoueur(Joueur joueur) {
+        Integer position = positions.remove(joueur);
+        if (position == null) return;
+        arrivees.remove(joueur);
+        ordre.remove((int) position);
+        for (int i = position; i < ordre.size(); i++) {
+            positions.put(ordre.get(i), i);
+        }
+    }
+
+    /**
+     * Vide le classement avant une nouvelle partie
+     */
+    public synchronized void vider() {
+        ordre.clear();
+        positions.clear();
+        arrivees.clear();
+        prochaineArrivee = 0;
+    }
+
+    /**
+     * Retourne le rang actuel d'un joueur
+     * @param joueur Le joueur recherché
+     * @return Son rang (1 pour le premier) ou -1 s'il n'est pas classé
+     */
+    public synchronized int getRang(Joueur joueur) {
+        Integer position = positions.get(joueur);
+        return position == null ? -1 : position + 1;
+    }
+
+    /**
+     * Construit le message de podium complet
+     * @return Le message "PODIUM:" avec une ligne par joueur
+     */
+    public synchronized String podium() {
+        StringBuilder classement = new StringBuilder("PODIUM:\n");
+        for (int i = 0; i < ordre.size(); i++) {
+            Joueur j = ordre.get(i);
+            classement.append((i + 1)).append(". ")
+                     .append(j.getNom()).append(" - ")
+                     .append(j.getPoints()).append(" points\n");
+        }
+        return classement.toString();
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Fait remonter le joueur situé à une position tant qu'il dépasse le précédent
+     * @param position Position de départ
+     * @return Position finale
+     */
+    private int remonter(int position) {
+        Joueur joueur = ordre.get(position);
+        while (position > 0 && passeDevant(joueur, ordre.get(position - 1))) {
+            Joueur depasse = ordre.get(position - 1);
+            ordre.set(position, depasse);
+            positions.put(depasse, position);
+            position--;
+        }
+        ordre.set(position, joueur);
+        positions.put(joueur, position);
+        return position;
+    }
+
+    /**
+     * Indique si un joueur doit être classé devant un autre
+     * A points égaux, le premier arrivé reste devant
+     */
+    private boolean passeDevant(Joueur a, Joueur b) {
+        if (a.getPoints() != b.getPoints()) {
+            return a.getPoints() > b.getPoints();
+        }
+        return arrivees.get(a) < arrivees.get(b);
+    }
+}
@@ -0,0 +1,251 @@
+/******************************************************************************
+ * ClassementGeneral.java
+ * Classement de tous les temps, toutes parties confondues
+ *
+ * Cette classe gère :
+ * - Le cumul des points de chaque joueur sur toutes les manches jouées
+ * - La reconstruction du cumul depuis le journal des résultats au démarrage
+ * - Les requêtes "meilleurs joueurs" et "mon rang" en O(log n)
+ *
+ * Chaque nom reçoit un identifiant entier ; les totaux et l'arbre d'ordre
+ * (un treap où chaque noeud connaît la taille de son sous-arbre) sont
+ * stockés dans des tableaux de primitives indexés par cet identifiant.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Classement général des joueurs
+ */
+class ClassementGeneral {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final int NB_MEILLEURS = 10;           // Nombre de joueurs listés par défaut
+    private static final int CAPACITE_INITIALE = 1024;   // Nombre de joueurs avant agrandissement
+    private static final int AUCUN = -1;                 // Noeud absent
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Map<String, Integer> identifiants = new HashMap<>(); // Nom -> identifiant
+    private final Random aleatoire = new Random();
+    private String[] noms = new String[CAPACITE_INITIALE];  // Identifiant -> nom
+    private long[] totaux = new long[CAPACITE_INITIALE];    // Identifiant -> total de points
+    private int[] gauche = new int[CAPACITE_INITIALE];      // Fils gauche (meilleurs scores)
+    private int[] droite = new int[CAPACITE_INITIALE];      // Fils droit (scores inférieurs)
+    private int[] tailles = new int[CAPACITE_INITIALE];     // Taille du sous-arbre
+    private int[] priorites = new int[CAPACITE_INITIALE];   // Priorité aléatoire du treap
+    private int nbJoueurs = 0;
+    private int racine = AUCUN;
+
+    // Résultat de decouper(), gardé en champ pour éviter une allocation par appel
+    private int decoupeAvant;
+    private int decoupeApres;
+
+    //==========================================================================
+    // Chargement
+    //==========================================================================
+    /**
+     * Reconstruit le classement à partir des manches enregistrées dans le journal
+     * A appeler une seule fois au démarrage, sur un classement vide
+     * @param journal Journal des résultats
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public synchronized void reconstruire(JournalResultats journal) throws IOException {
+        // Cumul d'abord, insertion dans l'arbre ensuite : chaque joueur n'est inséré qu'une fois
+        journal.lire(e -> {
+            if (e.type == JournalResultats.TYPE_MANCHE) {
+                for (int i = 0; i < e.noms.length; i++) {
+                    totaux[identifiant(e.noms[i])] += e.points[i];
+                }
+            }
+        });
+        for (int id = 0; id < nbJoueurs; id++) {
+            racine = inserer(racine, id);
+        }
+    }
+
+    //==========================================================================
+    // Mise à jour
+    //==========================================================================
+    /**
+     * Ajoute des points au total d'un joueur
+     * @param nom Nom du joueur
+     * @param points Points gagnés
+     */
+    public synchronized void ajouterPoints(String nom, int points) {
+        int id = identifiant(nom);
+        if (estDansArbre(id)) racine = retirer(racine, id);
+        totaux[id] += points;
+        racine = inserer(racine, id);
+    }
+
+    //==========================================================================
+    // Requêtes
+    //==========================================================================
+    /**
+     * Construit le message de réponse pour un joueur : les k premiers puis son rang
+     * @param k Nombre de joueurs à lister
+     * @param nom Nom du joueur demandeur
+     * @return Message "CLASSEMENT_GENERAL:" multi-lignes
+     */
+    public synchronized String message(int k, String nom) {
+        StringBuilder sb = new StringBuilder("CLASSEMENT_GENERAL:\n");
+        int rang = 1;
+        for (int id : meilleurs(k)) {
+            sb.append(rang++).append(". ")
+              .append(noms[id]).append(" - ")
+              .append(totaux[id]).append(" points\n");
+        }
+        Integer id = identifiants.get(nom);
+        if (id != null && estDansArbre(id)) {
+            sb.append("Votre rang : ").append(rang(id)).append(" sur ").append(taille(racine))
+              .append(" (").append(totaux[id]).append(" points)\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Retourne les identifiants des k meilleurs joueurs, du premier au k-ième
+     */
+    private List<Integer> meilleurs(int k) {
+        List<Integer> resultat = new ArrayList<>(Math.min(k, nbJoueurs));
+        Deque<Integer> pile = new ArrayDeque<>();
+        int noeud = racine;
+        while ((noeud != AUCUN || !pile.isEmpty()) && resultat.size() < k) {
+            while (noeud != AUCUN) {
+                pile.push(noeud);
+                noeud = gauche[noeud];
+            }
+            noeud = pile.pop();
+            resultat.add(noeud);
+            noeud = droite[noeud];
+        }
+        return resultat;
+    }
+
+    /**
+     * Rang d'un joueur présent dans l'arbre (1 pour le premier)
+     */
+    private int rang(int id) {
+        int rang = 0;
+        int noeud = racine;
+        while (noeud != id) {
+            if (passeDevant(id, noeud)) {
+                noeud = gauche[noeud];
+            } else {
+                rang += taille(gauche[noeud]) + 1;
+                noeud = droite[noeud];
+            }
+        }
+        return rang + taille(gauche[id]) + 1;
+    }
+
+    //==========================================================================
+    // Treap
+    //==========================================================================
+    /**
+     * Ordre du classement : total décroissant, puis identifiant croissant
+     */
+    private boolean passeDevant(int a, int b) {
+        return totaux[a] != totaux[b] ? totaux[a] > totaux[b] : a < b;
+    }
+
+    private int taille(int noeud) {
+        return noeud == AUCUN ? 0 : tailles[noeud];
+    }
+
+    private void recalculer(int noeud) {
+        tailles[noeud] = taille(gauche[noeud]) + taille(droite[noeud]) + 1;
+    }
+
+    private boolean estDansArbre(int id) {
+        return tailles[id] > 0;
+    }
+
+    /**
+     * Découpe un sous-arbre en deux : noeuds devant id, et noeuds derrière
+     */
+    private void decouper(int noeud, int id) {
+        if (noeud == AUCUN) {
+            decoupeAvant = AUCUN;
+            decoupeApres = AUCUN;
+        } else if (passeDevant(noeud, id)) {
+            decouper(droite[noeud], id);
+            droite[noeud] = decoupeAvant;
+            recalculer(noeud);
+            decoupeAvant = noeud;
+        } else {
+            decouper(gauche[noeud], id);
+            gauche[noeud] = decoupeApres;
+            recalculer(noeud);
+            decoupeApres = noeud;
+        }
+    }
+
+    private int fusionner(int a, int b) {
+        if (a == AUCUN) return b;
+        if (b == AUCUN) return a;
+        if (priorites[a] > priorites[b]) {
+            droite[a] = fusionner(droite[a], b);
+            recalculer(a);
+            return a;
+        }
+        gauche[b] = fusionner(a, gauche[b]);
+        recalculer(b);
+        return b;
+    }
+
+    private int inserer(int noeud, int id) {
+        gauche[id] = AUCUN;
+        droite[id] = AUCUN;
+        tailles[id] = 1;
+        decouper(noeud, id);
+        int avant = decoupeAvant;
+        int apres = decoupeApres;
+        return fusionner(fusionner(avant, id), apres);
+    }
+
+    private int retirer(int noeud, int id) {
+        if (noeud == id) {
+            int reste = fusionner(gauche[id], droite[id]);
+            tailles[id] = 0;
+            return reste;
+        }
+        if (passeDevant(id, noeud)) {
+            gauche[noeud] = retirer(gauche[noeud], id);
+        } else {
+            droite[noeud] = retirer(droite[noeud], id);
+        }
+        recalculer(noeud);
+        return noeud;
+    }
+
+    //==========================================================================
+    // Identifiants
+    //==========================================================================
+    /**
+     * Retourne l'identifiant d'un nom, en le créant au besoin
+     */
+    private int identifiant(String nom) {
+        Integer id = identifiants.get(nom);
+        if (id != null) return id;
+
+        if (nbJoueurs == noms.length) {
+            int capacite = noms.length * 2;
+            noms = Arrays.copyOf(noms, capacite);
+            totaux = Arrays.copyOf(totaux, capacite);
+            gauche = Arrays.copyOf(gauche, capacite);
+            droite = Arrays.copyOf(droite, capacite);
+            tailles = Arrays.copyOf(tailles, capacite);
+            priorites = Arrays.copyOf(priorites, capacite);
+        }
+        int nouveau = nbJoueurs++;
+        noms[nouveau] = nom;
+        priorites[nouveau] = aleatoire.nextInt();
+        identifiants.put(nom, nouveau);
+        return nouveau;
+    }
+}
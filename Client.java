@@ -7,12 +7,17 @@
  * - La connexion au serveur
  * - Le dessin et l'envoi des traits
  * - Le chat et les interactions utilisateur
+ *
+ * Les messages sont décodés sur le thread de réception (désérialisation des
+ * traits DRAW comprise) puis appliqués par lots sur l'EDT, au plus une fois
+ * toutes les ~16 ms : un seul Runnable et un seul repaint par lot, quel que
+ * soit le débit du dessinateur.
  *****************************************************************************/
 
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
 import java.io.*;
-import java.net.*;
 import java.util.*;
 import java.util.List;
 import javax.swing.*;
@@ -24,29 +29,34 @@ public class Client extends JFrame {
     //==========================================================================
     private static final String HOST = "localhost";    // Hôte par défaut
     private static final int PORT = 12345;            // Port par défaut
-    private static final int BUFFER_SIZE = 8192;      // Taille du buffer réseau
+    private static final int PERIODE_LOT_MS = 16;     // Intervalle entre deux lots de messages (~60 images/s)
+    private static final int PROFONDEUR_RENVOI = 16;  // Traits récents où chercher un trait complété après coup
 
     //==========================================================================
     // Composants réseau
     //==========================================================================
-    private Socket socket;                            // Socket de connexion
-    private BufferedReader in;                        // Flux d'entrée
-    private BufferedWriter out;                       // Flux de sortie
+    private ConnexionServeur connexion;               // Connexion au serveur
+    private final List<Evenement> evenementsEnAttente = new ArrayList<>(); // Messages décodés pas encore appliqués
+    private boolean lotPlanifie = false;              // Un lot est déjà prévu (protégé par evenementsEnAttente)
+    private final javax.swing.Timer minuterieLot;     // Déclenche l'application du lot sur l'EDT
 
     //==========================================================================
     // Composants de dessin
     //==========================================================================
     private static final List<LineData> lines = Collections.synchronizedList(new ArrayList<>());
     private static Color currentColor = Color.BLACK;
-    private static final ArrayList<Point> currentLine = new ArrayList<>();
+    private static LineData currentLine = null;       // Trait en cours de tracé (null hors tracé)
     private static int currentStrokeWidth = 2;        // Taille du trait
+    private int prochainTrait = 1;                    // Numéro du prochain trait dessiné
+    private final Set<Integer> traitsDuFond = new HashSet<>(); // Traits contenus dans l'image reçue à l'arrivée
     private boolean canDraw = false;                  // Autorisation de dessiner
+    private BufferedImage imageTribune = null;        // Dessin reçu en tuiles (spectateur, connexion lente)
 
     //==========================================================================
     // Composants d'interface graphique
     //==========================================================================
     private JButton selectedColorButton = null;
-    private final JTextArea chatArea;
+    private final ZoneChat chatArea;
     private final DrawingPanel drawingPanel;
     private final JTextField chatInput;
     private final JLabel timerLabel;
@@ -59,6 +69,7 @@ public class Client extends JFrame {
     //==========================================================================
     // État du jeu
     //==========================================================================
+    private final boolean spectateur;                 // Regarde la partie sans jouer
     private String playerRole = "";                   // Rôle du joueur
     private boolean hasFoundWord = false;             // Mot trouvé ou non
     private String motActuel = null;                  // Mot en cours
@@ -73,7 +84,19 @@ public class Client extends JFrame {
      * @param port Port du serveur
      */
     public Client(String host, int port) {
-        setTitle("Dessiner c'est Gagné");
+        this(host, port, false, null);
+    }
+
+    /**
+     * Crée et initialise l'interface du client
+     * @param host Adresse du serveur (ou de la passerelle)
+     * @param port Port du serveur
+     * @param spectateur true pour regarder la partie sans y jouer
+     * @param salle Salle à rejoindre derrière une passerelle (null : salle principale)
+     */
+    public Client(String host, int port, boolean spectateur, String salle) {
+        this.spectateur = spectateur;
+        setTitle(spectateur ? "Dessiner c'est Gagné (spectateur)" : "Dessiner c'est Gagné");
         setSize(1200, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLocationRelativeTo(null);
@@ -143,10 +166,7 @@ public class Client extends JFrame {
         JPanel rightPanel = new JPanel(new BorderLayout(0, 10));
 
         // Zone de chat
-        chatArea = new JTextArea();
-        chatArea.setEditable(false);
-        chatArea.setLineWrap(true);
-        chatArea.setWrapStyleWord(true);
+        chatArea = new ZoneChat();
         JScrollPane scrollPane = new JScrollPane(chatArea);
         scrollPane.setPreferredSize(new Dimension(300, 600));
 
@@ -165,14 +185,24 @@ public class Client extends JFrame {
         gamePanel.add(splitPane, BorderLayout.CENTER);
 
         // Commencer avec seulement le panneau d'attente visible
-        add(waitingPanel, BorderLayout.CENTER);
-        gamePanel.setVisible(false);
+        // (un spectateur arrive souvent en cours de partie : il voit directement le jeu)
+        if (spectateur) {
+            add(gamePanel, BorderLayout.CENTER);
+            chatInput.setEnabled(false);
+        } else {
+            add(waitingPanel, BorderLayout.CENTER);
+            gamePanel.setVisible(false);
+        }
 
         // Configuration des événements de la souris
         setupMouseListeners();
 
+        // Application des messages reçus par lots
+        minuterieLot = new javax.swing.Timer(PERIODE_LOT_MS, e -> traiterLot());
+        minuterieLot.setRepeats(false);
+
         // Connexion au serveur
-        connectToServer(host, port);
+        connectToServer(host, port, salle);
     }
 
     //==========================================================================
@@ -186,18 +216,19 @@ public class Client extends JFrame {
             @Override
             public void mousePressed(MouseEvent e) {
                 if (canDraw) {
-                    currentLine.clear();
-                    currentLine.add(e.getPoint());
-                    sendDrawingData();
+                    currentLine = new LineData(prochainTrait++, currentColor, currentStrokeWidth);
+                    currentLine.ajouterPoint(e.getX(), e.getY());
+                    sendDrawingData(currentLine);
                 }
             }
 
             @Override
             public void mouseReleased(MouseEvent e) {
-                if (canDraw) {
-                    lines.add(new LineData(new ArrayList<>(currentLine), currentColor, currentStrokeWidth));
-                    currentLine.clear();
-                    sendDrawingData();
+                if (canDraw && currentLine != null) {
+                    LineData ligne = currentLine;
+                    lines.add(ligne);
+                    currentLine = null;
+                    drawingPanel.afficherAjout(ligne, 0);
                 }
             }
         });
@@ -205,10 +236,10 @@ public class Client extends JFrame {
         drawingPanel.addMouseMotionListener(new MouseAdapter() {
             @Override
             public void mouseDragged(MouseEvent e) {
-                if (canDraw) {
-                    currentLine.add(e.getPoint());
-                    sendDrawingData();
-                    drawingPanel.repaint();
+                if (canDraw && currentLine != null) {
+                    currentLine.ajouterPoint(e.getX(), e.getY());
+                    sendDrawingData(currentLine);
+                    drawingPanel.afficherAjout(currentLine, currentLine.getNbPoints() - 2);
                 }
             }
         });
@@ -269,7 +300,7 @@ public class Client extends JFrame {
         plusButton.setContentAreaFilled(true);
         plusButton.setBorder(BorderFactory.createLineBorder(Color.BLACK));
         plusButton.addActionListener(e -> {
-            if (!currentColor.equals(Color.WHITE)) {
+            if (!currentColor.equals(Color.WHITE) && currentStrokeWidth + 2 <= LineData.EPAISSEUR_MAX) {
                 currentStrokeWidth += 2;
             }
         });
@@ -295,40 +326,54 @@ public class Client extends JFrame {
         clearButton.setContentAreaFilled(true);
         clearButton.setBorder(BorderFactory.createLineBorder(Color.BLACK));
         clearButton.addActionListener(e -> {
-            lines.clear();
-            drawingPanel.repaint();
+            effacerDessin();
             try {
-                synchronized(out) {
-                    out.write("CLEAR:\n");
-                    out.flush();
-                }
+                connexion.envoyer("CLEAR:");
             } catch (IOException ex) {
                 System.err.println("Erreur lors de l'envoi de la commande clear: " + ex.getMessage());
             }
         });
         colorPanel.add(clearButton);
 
+        // Boutons pour annuler et refaire le dernier trait
+        colorPanel.add(creerBoutonCommande("↶", "UNDO:"));
+        colorPanel.add(creerBoutonCommande("↷", "REDO:"));
+
         colorPanel.revalidate();
         colorPanel.repaint();
     }
 
+    /**
+     * Crée un bouton d'outil qui envoie une commande de dessin au serveur
+     * @param texte Libellé du bouton
+     * @param commande Message envoyé (le serveur répond à tous les joueurs)
+     * @return Le bouton
+     */
+    private JButton creerBoutonCommande(String texte, String commande) {
+        JButton bouton = new JButton(texte);
+        bouton.setPreferredSize(new Dimension(30, 30));
+        bouton.setOpaque(true);
+        bouton.setContentAreaFilled(true);
+        bouton.setBorder(BorderFactory.createLineBorder(Color.BLACK));
+        bouton.addActionListener(e -> {
+            if (!canDraw) return;
+            try {
+                connexion.envoyer(commande);
+            } catch (IOException ex) {
+                System.err.println("Erreur lors de l'envoi de la commande " + commande + " " + ex.getMessage());
+            }
+        });
+        return bouton;
+    }
+
     /**
      * Envoie les données de dessin au serveur
+     * @param lineData Le trait, envoyé en entier
      */
-    private void sendDrawingData() {
+    private void sendDrawingData(LineData lineData) {
         if (!canDraw) return;
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ObjectOutputStream oos = new ObjectOutputStream(baos);
-            // Inclure la taille du trait lors de la création du LineData
-            LineData lineData = new LineData(new ArrayList<>(currentLine), currentColor, currentStrokeWidth);
-            oos.writeObject(lineData);
-            oos.flush();
-
-            synchronized(out) {
-                out.write("DRAW:" + Base64.getEncoder().encodeToString(baos.toByteArray()) + "\n");
-                out.flush();
-            }
+            connexion.envoyerDessin(lineData);
         } catch (IOException e) {
             System.err.println("Erreur lors de l'envoi des données de dessin: " + e.getMessage());
         }
@@ -340,16 +385,9 @@ public class Client extends JFrame {
     /**
      * Établit la connexion avec le serveur
      */
-    private void connectToServer(String host, int port) {
+    private void connectToServer(String host, int port, String salle) {
         try {
-            socket = new Socket();
-            socket.setTcpNoDelay(true); // Désactiver l'algorithme de Nagle
-            socket.setSendBufferSize(BUFFER_SIZE);
-            socket.setReceiveBufferSize(BUFFER_SIZE);
-            socket.connect(new InetSocketAddress(host, port));
-
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            connexion = new ConnexionServeur(host, port);
 
             String playerName = JOptionPane.showInputDialog(this,
                 "Entrez votre nom:", "Bienvenue", JOptionPane.QUESTION_MESSAGE);
@@ -358,11 +396,27 @@ public class Client extends JFrame {
                 System.exit(0);
             }
 
-            out.write(playerName + "\n");
-            out.flush();
+            if (salle != null) {
+                connexion.choisirSalle(salle);
+            }
+
+            // Envoi du nom et démarrage du thread de réception des messages
+            connexion.demarrer(spectateur ? Tribune.PREFIXE + playerName : playerName, new ConnexionServeur.Ecouteur() {
+                @Override
+                public void messageRecu(String message) {
+                    recevoirMessage(message);
+                }
 
-            // Thread de réception des messages
-            new Thread(this::receiveMessages).start();
+                @Override
+                public void connexionPerdue(IOException cause) {
+                    if (cause != null) {
+                        afficherConnexionPerdue(cause);
+                    }
+                }
+            });
+            if (!spectateur) {
+                connexion.demanderDatagrammes();   // Traits par UDP si le serveur le permet
+            }
 
         } catch (IOException e) {
             JOptionPane.showMessageDialog(this,
@@ -374,24 +428,16 @@ public class Client extends JFrame {
     }
 
     /**
-     * Gère la réception des messages du serveur
+     * Signale la perte de connexion et quitte
      */
-    private void receiveMessages() {
-        try {
-            String message;
-            while ((message = in.readLine()) != null) {
-                final String finalMessage = message;
-                SwingUtilities.invokeLater(() -> processMessage(finalMessage));
-            }
-        } catch (IOException e) {
-            SwingUtilities.invokeLater(() -> {
-                JOptionPane.showMessageDialog(this,
-                    "Connexion perdue avec le serveur: " + e.getMessage(),
-                    "Erreur réseau",
-                    JOptionPane.ERROR_MESSAGE);
-                System.exit(1);
-            });
-        }
+    private void afficherConnexionPerdue(IOException e) {
+        SwingUtilities.invokeLater(() -> {
+            JOptionPane.showMessageDialog(this,
+                "Connexion perdue avec le serveur: " + e.getMessage(),
+                "Erreur réseau",
+                JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+        });
     }
 
     /**
@@ -401,10 +447,8 @@ public class Client extends JFrame {
         String message = chatInput.getText().trim();
         if (!message.isEmpty()) {
             try {
-                synchronized(out) {
-                    out.write("CHAT:" + message + "\n");
-                    out.flush();
-                }
+                // "/podium" et "/classement" demandent un classement au lieu d'envoyer un message
+                connexion.envoyer(commandeChat(message));
                 chatInput.setText("");
             } catch (IOException e) {
                 System.err.println("Erreur d'envoi: " + e.getMessage());
@@ -412,19 +456,129 @@ public class Client extends JFrame {
         }
     }
 
+    /**
+     * Traduit une saisie du chat en message du protocole
+     * @param message Texte saisi
+     * @return La requête de classement correspondante ou un message CHAT
+     */
+    private String commandeChat(String message) {
+        switch (message) {
+            case "/podium": return "PODIUM:";
+            case "/classement": return "CLASSEMENT_GENERAL:";
+            default: return "CHAT:" + message;
+        }
+    }
+
     //==========================================================================
     // Méthodes de traitement des messages
     //==========================================================================
     /**
-     * Traite les messages reçus du serveur
+     * Message reçu et déjà décodé, en attente d'application sur l'EDT
      */
-    private void processMessage(String message) {
-        // Ne logger que les messages non-DRAW
-        if (!message.startsWith("DRAW:")) {
-            System.out.println("DEBUG - Message reçu : " + message);
+    private static final class Evenement {
+        final String message;                         // Message brut (null pour un trait ou un canevas)
+        final LineData ligne;                         // Trait décodé d'un message DRAW
+        final CanevasTuiles.Instantane canevas;       // Image décodée d'un message CANEVAS
+        final CanevasTuiles.Retouche retouche;        // Tuiles décodées d'un message TUILES
+
+        Evenement(String message, LineData ligne, CanevasTuiles.Instantane canevas) {
+            this(message, ligne, canevas, null);
+        }
+
+        Evenement(String message, LineData ligne, CanevasTuiles.Instantane canevas, CanevasTuiles.Retouche retouche) {
+            this.message = message;
+            this.ligne = ligne;
+            this.canevas = canevas;
+            this.retouche = retouche;
+        }
+    }
+
+    /**
+     * Décode un message sur le thread de réception et le met en attente du prochain lot
+     * Un trait qui prolonge le trait en attente le remplace : seul le plus complet est appliqué
+     * @param message Le message reçu
+     */
+    private void recevoirMessage(String message) {
+        Evenement evenement;
+        // REDO rétablit un trait annulé : il se traite comme un trait reçu
+        if (message.startsWith("DRAW:") || message.startsWith("REDO:")) {
+            try {
+                evenement = new Evenement(null, LineData.decoder(message.substring(5)), null);
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la réception des données de dessin: " + e.getMessage());
+                return;
+            }
+        } else if (message.startsWith("CANEVAS:")) {
+            try {
+                evenement = new Evenement(null, null, CanevasTuiles.decoder(message.substring(8)));
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la réception du canevas: " + e.getMessage());
+                return;
+            }
+        } else if (message.startsWith("TUILES:")) {
+            try {
+                evenement = new Evenement(null, null, null, CanevasTuiles.decoderTuiles(message.substring(7)));
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la réception des tuiles: " + e.getMessage());
+                return;
+            }
+        } else {
+            evenement = new Evenement(message, null, null);
         }
 
-        if (message.startsWith("La partie commence dans")) {
+        synchronized (evenementsEnAttente) {
+            int dernier = evenementsEnAttente.size() - 1;
+            if (evenement.ligne != null && dernier >= 0
+                    && evenementsEnAttente.get(dernier).ligne != null
+                    && prolonge(evenement.ligne, evenementsEnAttente.get(dernier).ligne)) {
+                evenementsEnAttente.set(dernier, evenement);
+            } else {
+                evenementsEnAttente.add(evenement);
+            }
+            if (!lotPlanifie) {
+                lotPlanifie = true;
+                SwingUtilities.invokeLater(minuterieLot::start);
+            }
+        }
+    }
+
+    /**
+     * Applique sur l'EDT tous les messages reçus depuis le lot précédent
+     * Les zones des nouveaux traits sont réunies en un seul repaint
+     */
+    private void traiterLot() {
+        List<Evenement> lot;
+        synchronized (evenementsEnAttente) {
+            lot = new ArrayList<>(evenementsEnAttente);
+            evenementsEnAttente.clear();
+            lotPlanifie = false;
+        }
+
+        Rectangle zone = null;
+        for (Evenement evenement : lot) {
+            if (evenement.ligne != null) {
+                LineData ligne = evenement.ligne;
+                int debut = ajouterLigneRecue(ligne);
+                Rectangle ajout = DrawingPanel.zoneAjout(ligne, debut);
+                if (ajout != null) zone = zone == null ? ajout : zone.union(ajout);
+            } else if (evenement.canevas != null) {
+                appliquerCanevas(evenement.canevas);
+            } else if (evenement.retouche != null) {
+                appliquerRetouche(evenement.retouche);
+            } else {
+                processMessage(evenement.message);
+            }
+        }
+        if (zone != null) drawingPanel.repaint(zone);
+    }
+
+    /**
+     * Traite un message reçu du serveur (les traits DRAW passent par traiterLot)
+     */
+    private void processMessage(String message) {
+        System.out.println("DEBUG - Message reçu : " + message);
+
+        if (message.startsWith("La partie commence")) {
             // Remplacer le panneau d'attente par le panneau de jeu
             SwingUtilities.invokeLater(() -> {
                 getContentPane().removeAll();
@@ -443,13 +597,13 @@ public class Client extends JFrame {
             revealedIndices.clear(); // Réinitialiser les lettres révélées
 
             if (playerRole.equals("dessinateur")) {
-                chatArea.append("Vous êtes le dessinateur pour ce tour!\n");
+                chatArea.ajouterLigne("Vous êtes le dessinateur pour ce tour!");
                 currentWordLabel.setText("En attente du choix du mot...");
                 colorPanel.setVisible(true);
                 // Ne pas manipuler wordChoicePanel ici, il sera géré par CHOIX_MOTS
                 System.out.println("DEBUG - Rôle dessinateur assigné");
             } else {
-                chatArea.append("Vous devez deviner le mot!\n");
+                chatArea.ajouterLigne("Vous devez deviner le mot!");
                 currentWordLabel.setText(formatMotCache(null));
                 wordChoicePanel.setVisible(false);
                 topPanel.setPreferredSize(new Dimension(800, 50)); // Réduire la taille pour les devineurs
@@ -498,10 +652,7 @@ public class Client extends JFrame {
 
                             button.addActionListener(e -> {
                                 try {
-                                    synchronized(out) {
-                                        out.write("CHOSEN_WORD:" + word + "\n");
-                                        out.flush();
-                                    }
+                                    connexion.envoyer("CHOSEN_WORD:" + word);
                                     wordChoicePanel.setVisible(false);
                                     currentWordLabel.setText("Mot à dessiner : " + word);
                                 } catch (IOException ex) {
@@ -533,9 +684,8 @@ public class Client extends JFrame {
         }
         else if (message.startsWith("NOUVEAU_DESSINATEUR:")) {
             String dessinateur = message.substring(19);
-            chatArea.append(">> " + dessinateur + " est le nouveau dessinateur!\n");
-            lines.clear();
-            drawingPanel.repaint();
+            chatArea.ajouterLigne(">> " + dessinateur + " est le nouveau dessinateur!");
+            effacerDessin();
         } else if (message.startsWith("CHOSEN_WORD_CONFIRMED:")) {
             if (playerRole.equals("dessinateur")) {
                 canDraw = true;
@@ -560,30 +710,23 @@ public class Client extends JFrame {
         } else if (message.startsWith("TEMPS:")) {
             timerLabel.setText("Temps: " + message.substring(6) + "s");
         } else if (message.startsWith("CLEAR:")) {
-            lines.clear();
-            drawingPanel.repaint();
-        } else if (message.startsWith("DRAW:")) {
+            effacerDessin();
+        } else if (message.startsWith("UNDO:")) {
             try {
-                byte[] data = Base64.getDecoder().decode(message.substring(5));
-                ByteArrayInputStream bais = new ByteArrayInputStream(data);
-                ObjectInputStream ois = new ObjectInputStream(bais);
-                LineData receivedLine = (LineData) ois.readObject();
-                lines.add(receivedLine);
-                drawingPanel.repaint();
-            } catch (IOException | ClassNotFoundException e) {
-                System.err.println("Erreur lors de la réception des données de dessin: " + e.getMessage());
+                retirerTrait(Integer.parseInt(message.substring(5)));
+            } catch (NumberFormatException e) {
+                System.err.println("Trait annulé invalide: " + message);
             }
         } else if (message.startsWith("CHAT:")) {
-            chatArea.append(message.substring(5) + "\n");
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
+            chatArea.ajouterLigne(message.substring(5));
         }
         // Nouveau traitement pour les messages de bonne réponse
         else if (message.startsWith("GUESS_CORRECT:")) {
             String contenu = message.substring(14);
             if (playerRole.equals("dessinateur")) {
-                chatArea.append("[Dessinateur] " + contenu + "\n");
+                chatArea.ajouterLigne("[Dessinateur] " + contenu);
             } else {
-                chatArea.append("[Succès] " + contenu + "\n");
+                chatArea.ajouterLigne("[Succès] " + contenu);
                 if (contenu.contains("Vous avez trouvé le mot")) {
                     hasFoundWord = true;
                     if (motActuel != null) {
@@ -591,20 +734,138 @@ public class Client extends JFrame {
                     }
                 }
             }
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
         }
         else if (message.startsWith("REVEAL_LETTER:")) {
             revealNewLetter();
         }
+        else if (message.startsWith("SCORE:")) {
+            // Format : SCORE:rang:points:nom
+            String[] parts = message.substring(6).split(":", 3);
+            if (parts.length == 3) {
+                chatArea.ajouterLigne("[Score] " + parts[2] + " : " + parts[1] + " points (" + parts[0] + "e)");
+            }
+        }
         else if (message.startsWith("NOTIFICATION:")) {
             String notification = message.substring(13);
-            chatArea.append("[Notification] " + notification + "\n");
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
+            chatArea.ajouterLigne("[Notification] " + notification);
+        }
+        else if (message.startsWith(Partie.FIN_PARTIE)) {
+            // Rien à afficher : le podium ou l'abandon l'a déjà annoncé
         }
         else {
-            chatArea.append(message + "\n");
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
+            chatArea.ajouterLigne(message);
+        }
+    }
+
+    /**
+     * Ajoute un trait reçu du dessinateur
+     * Le dessinateur renvoie tout le trait à chaque mouvement de souris :
+     * un trait qui prolonge le dernier reçu le remplace au lieu de s'y ajouter.
+     * Un trait plus ancien complété après coup (renvoi d'un datagramme perdu),
+     * ou dont les points déjà dessinés ont changé (dernier point provisoire
+     * d'une version décimée, version entière qui la remplace), quitte sa place
+     * et est redessiné au-dessus, sans laisser de doublon
+     * @param ligne Le trait reçu
+     * @return Index du premier point du premier segment nouveau
+     */
+    private int ajouterLigneRecue(LineData ligne) {
+        synchronized (lines) {
+            int dernier = lines.size() - 1;
+            if (dernier >= 0 && prolonge(ligne, lines.get(dernier)) && gardeDebut(ligne, lines.get(dernier))) {
+                int debut = lines.get(dernier).getNbPoints() - 1;
+                lines.set(dernier, ligne);
+                return debut;
+            }
+            for (int i = dernier; i >= Math.max(0, dernier - PROFONDEUR_RENVOI); i--) {
+                if (prolonge(ligne, lines.get(i))) {
+                    drawingPanel.ligneRetiree(i, lines.remove(i));
+                    break;
+                }
+            }
+            lines.add(ligne);
+            return 0;
+        }
+    }
+
+    /**
+     * Retire un trait annulé, seule la zone qu'il couvrait est redessinée
+     * Si le trait fait partie de l'image reçue à l'arrivée, une nouvelle image est demandée
+     * @param identifiant Numéro du trait
+     */
+    private void retirerTrait(int identifiant) {
+        synchronized (lines) {
+            for (int i = lines.size() - 1; i >= 0; i--) {
+                if (lines.get(i).getIdentifiant() == identifiant) {
+                    LineData ligne = lines.remove(i);
+                    drawingPanel.ligneRetiree(i, ligne);
+                    return;
+                }
+            }
+        }
+        if (traitsDuFond.contains(identifiant)) {
+            try {
+                connexion.envoyer("CANEVAS:");
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la demande du canevas: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Remplace le dessin par l'image reçue du serveur
+     * Les traits reçus ensuite se dessinent par-dessus
+     * @param canevas Image et traits qu'elle contient
+     */
+    private void appliquerCanevas(CanevasTuiles.Instantane canevas) {
+        lines.clear();
+        traitsDuFond.clear();
+        for (int identifiant : canevas.getIdentifiants()) {
+            traitsDuFond.add(identifiant);
+        }
+        imageTribune = canevas.getImage();     // Base des tuiles qui suivront (connexion lente)
+        drawingPanel.setFond(imageTribune);
+    }
+
+    /**
+     * Recopie les tuiles reçues (spectateur, ou joueur dont la connexion est
+     * trop lente pour recevoir les traits) dans l'image du dessin et l'affiche
+     * L'image est gardée d'un envoi à l'autre : chaque message ne contient que
+     * les tuiles modifiées depuis le précédent
+     * @param retouche Tuiles modifiées
+     */
+    private void appliquerRetouche(CanevasTuiles.Retouche retouche) {
+        if (imageTribune == null) imageTribune = CanevasTuiles.imageBlanche();
+        retouche.appliquer(imageTribune);
+        drawingPanel.setFond(imageTribune);
+    }
+
+    /**
+     * Efface tout le dessin, image reçue à l'arrivée comprise
+     */
+    private void effacerDessin() {
+        lines.clear();
+        traitsDuFond.clear();
+        imageTribune = null;
+        drawingPanel.setFond(null);
+    }
+
+    /**
+     * Indique si un trait est une version plus complète d'un trait précédent (même numéro)
+     */
+    private static boolean prolonge(LineData ligne, LineData precedente) {
+        return ligne.getIdentifiant() == precedente.getIdentifiant()
+            && ligne.getNbPoints() >= precedente.getNbPoints();
+    }
+
+    /**
+     * Indique si un trait commence par tous les points d'une version précédente :
+     * seuls ses nouveaux segments sont alors à dessiner
+     */
+    private static boolean gardeDebut(LineData ligne, LineData precedente) {
+        for (int i = 0; i < precedente.getNbPoints(); i++) {
+            if (ligne.getX(i) != precedente.getX(i) || ligne.getY(i) != precedente.getY(i)) return false;
         }
+        return true;
     }
 
     //==========================================================================
@@ -657,8 +918,7 @@ public class Client extends JFrame {
 
             // Mettre à jour l'affichage
             currentWordLabel.setText(formatMotCache(motActuel));
-            chatArea.append("[Indice] Une nouvelle lettre a été révélée!\n");
-            chatArea.setCaretPosition(chatArea.getDocument().getLength());
+            chatArea.ajouterLigne("[Indice] Une nouvelle lettre a été révélée!");
         }
     }
 
@@ -686,16 +946,14 @@ public class Client extends JFrame {
     // Getters statiques
     //==========================================================================
     public static List<LineData> getLines() { return lines; }
-    public static ArrayList<Point> getCurrentLine() { return currentLine; }
-    public static Color getCurrentColor() { return currentColor; }
-    public static int getCurrentStrokeWidth() { return currentStrokeWidth; }
+    public static LineData getCurrentLine() { return currentLine; }
 
     //==========================================================================
     // Point d'entrée
     //==========================================================================
     /**
      * Point d'entrée principal
-     * Gère les arguments de ligne de commande pour host/port
+     * Usage : java Client [hôte] [port] [joueur|spectateur] [salle]
      */
     public static void main(String[] args) {
         String host = HOST;
@@ -715,6 +973,8 @@ public class Client extends JFrame {
 
         final String finalHost = host;
         final int finalPort = port;
+        final boolean spectateur = args.length > 2 && args[2].equalsIgnoreCase("spectateur");
+        final String salle = args.length > 3 ? args[3] : null;
 
         SwingUtilities.invokeLater(() -> {
             try {
@@ -722,7 +982,7 @@ public class Client extends JFrame {
             } catch (ClassNotFoundException | InstantiationException | IllegalAccessException | UnsupportedLookAndFeelException e) {
                 JOptionPane.showMessageDialog(null, "Erreur lors de la configuration de l'apparence: " + e.getMessage(), "Erreur", JOptionPane.ERROR_MESSAGE);
             }
-            new Client(finalHost, finalPort).setVisible(true);
+            new Client(finalHost, finalPort, spectateur, salle).setVisible(true);
         });
     }
 }
\ No newline at end of file
@@ -6,14 +6,26 @@
  * - La connexion individuelle d'un client
  * - La communication bidirectionnelle
  * - Le traitement des messages asynchrones
+ * - Les commandes de dessin (UNDO, REDO, CLEAR) traitées sur le thread de
+ *   lecture dans l'ordre des DRAW, et seulement venant du dessinateur
+ * - Le relais des traits en octets : une ligne DRAW n'est ni décodée ni
+ *   réencodée, la même copie part vers tous les destinataires
+ * - Des tampons de lecture et d'écriture empruntés à la réserve commune
+ *   seulement pendant un échange : une connexion inactive n'en tient aucun
  * - La gestion du cycle de vie de la connexion
  *****************************************************************************/
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Gère une connexion client individuelle
@@ -26,10 +38,20 @@ public class ClientHandler implements Runnable {
     private final Socket socket;                        // Socket de connexion
     private final Serveur serveur;                     // Référence au serveur principal
     private final ExecutorService messageExecutor;      // Exécuteur pour messages asynchrones
-    private final BufferedWriter out;                  // Flux de sortie
-    private BufferedReader in;                         // Flux d'entrée
+    private final SortieTamponnee out;                 // Flux de sortie (tampon emprunté pendant les envois)
+    private LecteurLignes in;                          // Lignes reçues
     private Joueur joueur;                            // Joueur associé
     private volatile boolean isActive = true;          // État de la connexion
+    private volatile boolean spectateur = false;       // Connexion de la tribune, sans joueur dans la partie
+    private volatile boolean admis = false;            // Joueur assis (false : en file d'attente)
+    private final AtomicInteger fileAttente = new AtomicInteger(); // Messages en attente d'envoi
+    private final AtomicLong envois = new AtomicLong();  // Messages mis en file depuis la connexion
+    private final String nomDejaLu;                    // Nom lu par l'accueil du serveur (null : à lire)
+    private volatile long dernierMessage = System.nanoTime(); // Réception du dernier message (signe de vie)
+    private volatile long dernierPing = System.nanoTime();    // Envoi du dernier PING
+    private final Pouls.Rtt rtt = new Pouls.Rtt();      // Temps d'aller-retour mesuré par PING / PONG
+    private final Fidelite fidelite;                   // Niveau de détail du dessin envoyé à ce client
+    private volatile CanalDatagrammes.Destinataire datagrammes; // Canal UDP des traits (null : traits par TCP)
 
     //==========================================================================
     // Constructeur
@@ -40,11 +62,24 @@ public class ClientHandler implements Runnable {
      * @param serveur Référence au serveur principal
      */
     public ClientHandler(Socket socket, Serveur serveur) {
+        this(socket, serveur, null);
+    }
+
+    /**
+     * Initialise un gestionnaire de client dont le nom a déjà été lu
+     * @param socket Socket de connexion du client
+     * @param serveur Serveur de la salle du client
+     * @param nomDejaLu Nom lu par l'accueil du serveur (null : à lire, sans échéance)
+     */
+    public ClientHandler(Socket socket, Serveur serveur, String nomDejaLu) {
         this.socket = socket;
         this.serveur = serveur;
+        this.nomDejaLu = nomDejaLu;
+        this.fidelite = new Fidelite(serveur, this);
         this.messageExecutor = Executors.newSingleThreadExecutor();
         try {
-            this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            this.out = new SortieTamponnee(
+                serveur.getMetriques().compterOctets(socket.getOutputStream()), ReserveTampons.commune());
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -60,23 +95,49 @@ public class ClientHandler implements Runnable {
     @Override
     public void run() {
         try {
-            in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            in = new LecteurLignes(socket.getInputStream(), ReserveTampons.commune());
 
-            String nomJoueur = in.readLine();
+            String nomJoueur = nomDejaLu != null ? nomDejaLu : in.lire() ? in.texte() : null;
+            if (nomJoueur == null) return;
+            serveur.getPouls().ajouter(this);
+            if (nomJoueur.startsWith(Tribune.PREFIXE)) {
+                regarder(nomJoueur.substring(Tribune.PREFIXE.length()));
+                return;
+            }
             joueur = new Joueur(nomJoueur);
-            System.out.println("Nouveau joueur connecté : " + nomJoueur);
-
-            serveur.getPartie().ajouterJoueur(joueur);
-            serveur.playerNameSet(nomJoueur); // Ajouter cette ligne pour notifier le serveur
-            if (serveur.getClients().size() >= 3) {
-                serveur.broadcast(nomJoueur + " a rejoint la partie!", this);
+            if (!serveur.getAppariement().arriver(this)) {
+                synchronized (out) {
+                    ecrire(serveur.getAppariement().messagePartiePleine());
+                    out.flush();
+                }
+                return;
             }
 
-            String message;
-            while (isActive && (message = in.readLine()) != null) {
+            while (isActive && in.lire()) {
+                if (in.commencePar("DRAW:")) {
+                    // Trait relayé en octets : seule sa charge utile devient texte (historique, UDP...)
+                    dernierMessage = System.nanoTime();
+                    if (!admis) continue;
+                    serveur.getMetriques().messageRecu("DRAW:");
+                    Fidelite.Trait trait = new Fidelite.Trait(in.donnees(5), in.trame());
+                    if (serveur.getPartie().getHistorique().tracer(trait.getDonnees())) {
+                        serveur.broadcastDrawing(trait, this);
+                    }
+                    continue;
+                }
+                String message = in.texte();
+                if (signeDeVie(message)) continue;
+                if (message.startsWith(CanalDatagrammes.DEMANDE)) {
+                    demanderDatagrammes();
+                    continue;
+                }
+                if (!admis) continue;   // En file d'attente : le joueur ne participe pas encore
+                serveur.getMetriques().messageRecu(message);
                 final String finalMessage = message;
-                if (message.startsWith("DRAW:")) {
-                    serveur.broadcastDrawing(message.substring(5), this);
+                if (message.startsWith(CanalDatagrammes.RENVOI)) {
+                    renvoyerTraits(message.substring(CanalDatagrammes.RENVOI.length()));
+                } else if (message.startsWith("UNDO:") || message.startsWith("REDO:") || message.startsWith("CLEAR:")) {
+                    commanderDessin(message);   // Dans l'ordre des DRAW, sur ce même thread
                 } else {
                     CompletableFuture.runAsync(() -> processMessage(finalMessage));
                 }
@@ -84,10 +145,61 @@ public class ClientHandler implements Runnable {
         } catch (IOException e) {
             System.err.println("Erreur avec le client " + (joueur != null ? joueur.getNom() : "inconnu") + ": " + e.getMessage());
         } finally {
+            if (in != null) in.fermer();   // Tampon de lecture rendu par le thread qui le tient
             closeConnection();
         }
     }
 
+    /**
+     * Fait entrer dans la partie un joueur auquel l'appariement donne une place
+     * Appelée sur le thread du client ou, pour un joueur sorti de la file,
+     * sur celui de la fin de partie
+     * @param partieEnCours true si la partie a déjà commencé
+     */
+    void entrerEnJeu(boolean partieEnCours) {
+        admis = true;
+        System.out.println("Nouveau joueur connecté : " + joueur.getNom());
+
+        serveur.getPartie().ajouterJoueur(joueur);
+        if (partieEnCours) {
+            envoyerMessageAsync("La partie commence maintenant!");   // Arrivée en cours de partie
+        }
+        if (!serveur.getPartie().getHistorique().estVide()) {
+            serveur.getPartie().envoyerCanevas(this);   // Arrivée en cours de manche : le dessin actuel
+        }
+        if (serveur.getDiffusion().getNombre(Diffusion.SALLE) >= Appariement.MIN_JOUEURS) {
+            serveur.broadcast(joueur.getNom() + " a rejoint la partie!", this);
+        }
+    }
+
+    /**
+     * Connexion d'un spectateur : il est confié à la tribune et tout ce qu'il
+     * envoie ensuite est ignoré
+     * @param nom Nom du spectateur
+     * @throws IOException en cas d'erreur de lecture
+     */
+    private void regarder(String nom) throws IOException {
+        spectateur = true;
+        joueur = new Joueur(nom);
+        System.out.println("Nouveau spectateur : " + nom);
+        serveur.getTribune().ajouter(this);
+        while (isActive && in.lire()) {
+            signeDeVie(in.texte());   // Un spectateur ne joue pas : seuls les PONG comptent
+        }
+    }
+
+    /**
+     * Note la réception d'un message et traite la réponse à un PING
+     * @param message Message reçu
+     * @return true si c'était un PONG, sans autre traitement à faire
+     */
+    private boolean signeDeVie(String message) {
+        dernierMessage = System.nanoTime();
+        if (!message.startsWith(Pouls.PONG)) return false;
+        serveur.getPouls().pong(this, message);
+        return true;
+    }
+
     /**
      * Traite les messages reçus du client
      * @param message Message à traiter
@@ -104,13 +216,105 @@ public class ClientHandler implements Runnable {
         }
         if (message.startsWith("CHAT:")) {
             String chatText = message.substring(5).trim();
-            boolean trouve = serveur.getPartie().verifierMot(joueur, chatText);
-            if (!trouve) {
-                serveur.broadcast("CHAT:" + joueur.getNom() + ": " + chatText, null);
+            Diffusion diffusion = serveur.getDiffusion();
+            if (diffusion.estAbonne(Diffusion.TROUVE, this)) {
+                // Le mot est connu : seuls ceux qui le connaissent aussi lisent la suite
+                String discussion = "CHAT:" + joueur.getNom() + ": " + chatText;
+                diffusion.publier(Diffusion.TROUVE, discussion, null);
+                diffusion.publier(Diffusion.DESSINATEUR, discussion, null);
+            } else {
+                boolean trouve = serveur.getPartie().verifierMot(joueur, chatText);
+                if (!trouve) {
+                    serveur.broadcast("CHAT:" + joueur.getNom() + ": " + chatText, null);
+                }
             }
         }
+        if (message.startsWith("CANEVAS:")) {
+            serveur.getPartie().envoyerCanevas(this);
+        }
+
+        if (message.startsWith("PODIUM:")) {
+            serveur.getPartie().envoyerPodium(this);
+        }
+        if (message.startsWith("CLASSEMENT_GENERAL:")) {
+            envoyerMessageAsync(serveur.getClassementGeneral()
+                .message(ClassementGeneral.NB_MEILLEURS, joueur.getNom()));
+        }
+    }
+
+    /**
+     * Traite une commande de dessin (UNDO, REDO, CLEAR) sur le thread de
+     * lecture, comme les DRAW : un trait suivi d'une annulation est toujours
+     * tracé puis annulé, jamais l'inverse
+     * Seul le dessinateur de la manche peut modifier le dessin
+     * @param message Commande reçue
+     */
+    private void commanderDessin(String message) {
+        if (!serveur.getDiffusion().estAbonne(Diffusion.DESSINATEUR, this)) return;
+        HistoriqueTraits historique = serveur.getPartie().getHistorique();
         if (message.startsWith("CLEAR:")) {
+            historique.effacer();
             serveur.broadcast("CLEAR:", null);
+        } else if (message.startsWith("UNDO:")) {
+            // Tout le monde, dessinateur compris, retire le trait annoncé
+            HistoriqueTraits.Trait trait = historique.annuler();
+            if (trait != null) {
+                serveur.broadcast("UNDO:" + trait.getIdentifiant(), null);
+            }
+        } else {
+            HistoriqueTraits.Trait trait = historique.refaire();
+            if (trait != null) {
+                serveur.broadcast("REDO:" + trait.getDonnees(), null);
+            }
+        }
+    }
+
+    //==========================================================================
+    // Canal UDP des traits
+    //==========================================================================
+    /**
+     * Répond à une demande de canal UDP par le jeton à envoyer en datagramme
+     * Sans canal sur ce serveur, la demande reste sans réponse : les traits
+     * continuent par TCP
+     */
+    private void demanderDatagrammes() {
+        CanalDatagrammes canal = serveur.getDatagrammes();
+        if (canal == null || datagrammes != null) return;
+        envoyerMessageAsync(CanalDatagrammes.DEMANDE + canal.ouvrir(this));
+    }
+
+    /**
+     * Bascule les traits sur le canal UDP dont le jeton vient d'arriver
+     * @param destinataire Envoi des datagrammes vers l'adresse du client
+     */
+    void activerDatagrammes(CanalDatagrammes.Destinataire destinataire) {
+        datagrammes = destinataire;
+        envoyerMessageAsync(CanalDatagrammes.ACTIF);
+        System.out.println("Canal UDP ouvert pour " + joueur.getNom());
+    }
+
+    /**
+     * Renvoie sur TCP, en entier, les traits des datagrammes perdus
+     * @param bornes "<premier>:<dernier>" numéros des datagrammes manquants
+     */
+    private void renvoyerTraits(String bornes) {
+        CanalDatagrammes.Destinataire canal = datagrammes;
+        if (canal == null) return;
+        Set<Integer> traits;
+        try {
+            int separateur = bornes.indexOf(':');
+            traits = canal.traitsDe(Integer.parseInt(bornes.substring(0, separateur)),
+                                    Integer.parseInt(bornes.substring(separateur + 1)));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            return;
+        }
+        if (traits == null) {
+            serveur.getPartie().envoyerCanevas(this);   // Trop ancien : tout le dessin
+            return;
+        }
+        for (int identifiant : traits) {
+            String donnees = serveur.getPartie().getHistorique().donnees(identifiant);
+            if (donnees != null) envoyerMessageAsync("DRAW:" + donnees);
         }
     }
 
@@ -122,14 +326,27 @@ public class ClientHandler implements Runnable {
      * Nettoie les ressources et notifie le serveur
      */
     private void closeConnection() {
-        isActive = false;
+        synchronized (this) {
+            if (!isActive) return;      // Déjà fermée (erreur d'envoi puis fin de lecture)
+            isActive = false;
+        }
         messageExecutor.shutdown();
+        serveur.getPouls().retirer(this);
+        if (serveur.getDatagrammes() != null) serveur.getDatagrammes().fermer(this);
         try {
             socket.close();
         } catch (IOException e) {
             System.err.println("Erreur lors de la fermeture de la connexion: " + e.getMessage());
         }
-        serveur.removeClient(this);
+        synchronized (out) {
+            out.close();   // Après la socket : un envoi bloqué échoue et libère le verrou
+        }
+        if (spectateur) {
+            serveur.getTribune().retirer(this);
+        } else if (joueur != null) {
+            serveur.getAppariement().quitter(this);
+        }
+        serveur.connexionFermee();
     }
 
     //==========================================================================
@@ -141,19 +358,101 @@ public class ClientHandler implements Runnable {
      */
     public void envoyerMessageAsync(String message) {
         if (!isActive) return;
-        messageExecutor.execute(() -> {
-            try {
-                synchronized(out) {
-                    out.write(message + "\n");
-                    out.flush();
-                }
-            } catch (IOException e) {
-                System.err.println("Erreur envoi message: " + e.getMessage());
-                closeConnection();
-            }
+        serveur.getMetriques().messageEnvoye(message);
+        executerEnvoi(() -> ecrire(message));
+    }
+
+    /**
+     * Envoie un message construit au moment de l'écriture, dans l'ordre de la file
+     * Le message reflète ainsi l'état au moment où il part : les messages mis en
+     * file avant lui sont déjà partis, ceux mis en file après partiront après
+     * @param message Construction du message (appelée sur le thread d'envoi,
+     *                null : rien à envoyer)
+     */
+    public void envoyerCalcule(Supplier<String> message) {
+        if (!isActive) return;
+        executerEnvoi(() -> {
+            String texte = message.get();
+            if (texte == null) return;
+            serveur.getMetriques().messageEnvoye(texte);
+            ecrire(texte);
         });
     }
 
+    /**
+     * Envoie une ligne déjà en octets, partagée avec d'autres destinataires
+     * Elle est copiée dans le tampon d'écriture sans passer par du texte
+     * @param trame Ligne à écrire, fin de ligne comprise (non modifiée)
+     * @param type Préfixe du message, pour les métriques
+     */
+    public void envoyerTrame(byte[] trame, String type) {
+        if (!isActive) return;
+        serveur.getMetriques().messageEnvoye(type);
+        executerEnvoi(() -> out.write(trame));
+    }
+
+    /**
+     * Écriture d'un message sur le thread d'envoi
+     */
+    private interface Ecriture {
+        /**
+         * @throws IOException si la socket est fermée
+         */
+        void ecrire() throws IOException;
+    }
+
+    /**
+     * Met une écriture dans la file d'envoi du client
+     * Le tampon n'est vidé sur la socket qu'une fois la file vide : des
+     * messages en attente partent ensemble, en un seul appel système
+     * @param ecriture Écriture à faire sur le thread d'envoi, sous le verrou de out
+     */
+    private void executerEnvoi(Ecriture ecriture) {
+        fileAttente.incrementAndGet();
+        envois.incrementAndGet();
+        try {
+            messageExecutor.execute(() -> {
+                try {
+                    synchronized(out) {
+                        ecriture.ecrire();
+                        if (fileAttente.get() == 1) out.flush();   // Dernier message en file
+                    }
+                } catch (IOException e) {
+                    System.err.println("Erreur envoi message: " + e.getMessage());
+                    closeConnection();
+                } finally {
+                    fileAttente.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            fileAttente.decrementAndGet();   // Connexion fermée entre-temps
+        }
+    }
+
+    /**
+     * Écrit un message texte et sa fin de ligne dans le tampon (sous le verrou de out)
+     */
+    private void ecrire(String texte) throws IOException {
+        out.write(texte.getBytes(StandardCharsets.UTF_8));
+        out.write('\n');
+    }
+
+    /**
+     * Envoie un PING portant l'instant de son écriture sur la socket
+     * Le temps d'aller-retour mesuré exclut ainsi l'attente dans la file d'envoi
+     */
+    public void envoyerPing() {
+        dernierPing = System.nanoTime();
+        envoyerCalcule(() -> Pouls.PING + System.nanoTime());
+    }
+
+    /**
+     * Ferme une connexion qui ne répond plus (appelée par le pouls)
+     */
+    public void fermer() {
+        closeConnection();
+    }
+
     /**
      * Méthode de compatibilité pour l'envoi de messages
      * @param message Message à envoyer
@@ -180,4 +479,59 @@ public class ClientHandler implements Runnable {
     public boolean isActive() {
         return isActive;
     }
+
+    /**
+     * @return Instant (System.nanoTime) du dernier message reçu
+     */
+    public long getDernierMessage() {
+        return dernierMessage;
+    }
+
+    /**
+     * @return Instant (System.nanoTime) du dernier PING envoyé
+     */
+    public long getDernierPing() {
+        return dernierPing;
+    }
+
+    /**
+     * Temps d'aller-retour de la connexion, pour les métriques et l'adaptation
+     * @return Les mesures de la connexion
+     */
+    public Pouls.Rtt getRtt() {
+        return rtt;
+    }
+
+    /**
+     * Niveau de détail du dessin envoyé à ce client
+     * @return La fidélité de la connexion
+     */
+    public Fidelite getFidelite() {
+        return fidelite;
+    }
+
+    /**
+     * Canal UDP des traits de ce client
+     * @return Le canal, ou null si les traits passent par TCP
+     */
+    public CanalDatagrammes.Destinataire getDatagrammes() {
+        return datagrammes;
+    }
+
+    /**
+     * Numéro du dernier message mis en file : un message construit à
+     * l'écriture sait ainsi si d'autres ont été mis en file après lui
+     * @return Nombre de messages mis en file depuis l'ouverture
+     */
+    public long getNombreEnvois() {
+        return envois.get();
+    }
+
+    /**
+     * Retourne le nombre de messages en attente d'envoi vers ce client
+     * @return Profondeur de la file d'envoi
+     */
+    public int getFileAttente() {
+        return fileAttente.get();
+    }
 }
\ No newline at end of file
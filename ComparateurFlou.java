@@ -0,0 +1,213 @@
+/******************************************************************************
+ * ComparateurFlou.java
+ * Comparaison approximative d'une proposition avec le mot à deviner
+ *
+ * Cette classe gère :
+ * - La normalisation des mots (accents, casse, espaces et tirets)
+ * - Le calcul de la distance d'édition (substitution, insertion,
+ *   suppression et transposition de deux lettres voisines)
+ * - L'arrêt anticipé dès que la distance dépasse le seuil demandé
+ *
+ * Le mot cible est précompilé une seule fois par manche : chaque proposition
+ * est ensuite comparée avec l'algorithme bit-parallèle de Myers (étendu par
+ * Hyyrö aux transpositions), soit un mot machine par caractère proposé et
+ * aucune allocation.
+ *****************************************************************************/
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * Comparateur précompilé pour un mot cible donné
+ */
+class ComparateurFlou {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final Pattern DIACRITIQUES = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern SEPARATEURS = Pattern.compile("[\\s\\-]+");
+    private static final int TAILLE_MOT_MACHINE = 64;   // Longueur max pour la version bit-parallèle
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final String cible;           // Mot cible déjà normalisé
+    private final int longueur;           // Longueur du mot cible
+    private final int seuilMax;           // Distance au-delà de laquelle on abandonne
+
+    // Table de masques Peq (caractère -> positions dans la cible), adressage ouvert
+    private final char[] clesMasques;
+    private final long[] masques;
+    private final int masqueTable;
+
+    // Lignes de programmation dynamique pour les cibles de plus de 64 caractères
+    private final int[] lignePrecedente;
+    private final int[] ligneCourante;
+    private final int[] ligneAvantPrecedente;
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Précompile le mot cible
+     * @param mot Mot à deviner (brut, il sera normalisé)
+     * @param seuilMax Distance maximale utile, au-delà le calcul s'arrête
+     */
+    public ComparateurFlou(String mot, int seuilMax) {
+        this.cible = normaliser(mot);
+        this.longueur = cible.length();
+        this.seuilMax = seuilMax;
+
+        if (longueur <= TAILLE_MOT_MACHINE) {
+            int taille = Integer.highestOneBit(Math.max(1, longueur) * 2) * 2;
+            clesMasques = new char[taille];
+            masques = new long[taille];
+            masqueTable = taille - 1;
+            for (int i = 0; i < longueur; i++) {
+                int index = indexMasque(cible.charAt(i));
+                clesMasques[index] = cible.charAt(i);
+                masques[index] |= 1L << i;
+            }
+            lignePrecedente = null;
+            ligneCourante = null;
+            ligneAvantPrecedente = null;
+        } else {
+            clesMasques = null;
+            masques = null;
+            masqueTable = 0;
+            lignePrecedente = new int[longueur + 1];
+            ligneCourante = new int[longueur + 1];
+            ligneAvantPrecedente = new int[longueur + 1];
+        }
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Normalise un texte pour la comparaison : sans accents, en minuscules,
+     * espaces et tirets réduits à un seul espace
+     * @param texte Texte à normaliser
+     * @return Texte normalisé
+     */
+    public static String normaliser(String texte) {
+        String sansAccents = DIACRITIQUES.matcher(Normalizer.normalize(texte, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATEURS.matcher(sansAccents.toLowerCase().trim()).replaceAll(" ");
+    }
+
+    /**
+     * Calcule la distance entre la cible et une proposition déjà normalisée
+     * @param proposition Proposition normalisée avec {@link #normaliser(String)}
+     * @return La distance, ou seuilMax + 1 si elle dépasse le seuil
+     */
+    public int distance(String proposition) {
+        int n = proposition.length();
+        if (Math.abs(n - longueur) > seuilMax) return seuilMax + 1;
+        if (longueur == 0) return n;
+        int d = longueur <= TAILLE_MOT_MACHINE ? distanceBitParallele(proposition) : distanceClassique(proposition);
+        return Math.min(d, seuilMax + 1);
+    }
+
+    /**
+     * Retourne le mot cible normalisé
+     * @return La cible
+     */
+    public String getCible() {
+        return cible;
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Distance de Myers/Hyyrö sur un seul mot machine
+     */
+    private int distanceBitParallele(String proposition) {
+        long bitHaut = 1L << (longueur - 1);
+        long vp = longueur == TAILLE_MOT_MACHINE ? -1L : (1L << longueur) - 1;
+        long vn = 0;
+        long d0 = 0;
+        long eqPrecedent = 0;
+        int score = longueur;
+        int n = proposition.length();
+
+        for (int j = 0; j < n; j++) {
+            long eq = masque(proposition.charAt(j));
+            long transposition = (((~d0) & eq) << 1) & eqPrecedent;
+            d0 = (((eq & vp) + vp) ^ vp) | eq | vn | transposition;
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+            if ((hp & bitHaut) != 0) score++;
+            else if ((hn & bitHaut) != 0) score--;
+
+            // Borne inférieure : chaque caractère restant fait baisser le score d'au plus 1
+            if (score - (n - j - 1) > seuilMax) return seuilMax + 1;
+
+            hp = (hp << 1) | 1;
+            hn = hn << 1;
+            vp = hn | ~(d0 | hp);
+            vn = hp & d0;
+            eqPrecedent = eq;
+        }
+        return score;
+    }
+
+    /**
+     * Distance par programmation dynamique (cibles très longues)
+     */
+    private int distanceClassique(String proposition) {
+        int[] avantPrecedente = ligneAvantPrecedente;
+        int[] precedente = lignePrecedente;
+        int[] courante = ligneCourante;
+        for (int i = 0; i <= longueur; i++) precedente[i] = i;
+        Arrays.fill(avantPrecedente, 0);
+
+        int n = proposition.length();
+        for (int j = 1; j <= n; j++) {
+            char c = proposition.charAt(j - 1);
+            courante[0] = j;
+            int minimumLigne = j;
+            for (int i = 1; i <= longueur; i++) {
+                int cout = cible.charAt(i - 1) == c ? 0 : 1;
+                int d = Math.min(Math.min(precedente[i] + 1, courante[i - 1] + 1), precedente[i - 1] + cout);
+                if (i > 1 && j > 1 && cible.charAt(i - 1) == proposition.charAt(j - 2)
+                        && cible.charAt(i - 2) == c) {
+                    d = Math.min(d, avantPrecedente[i - 2] + 1);
+                }
+                courante[i] = d;
+                minimumLigne = Math.min(minimumLigne, d);
+            }
+            if (minimumLigne > seuilMax) return seuilMax + 1;
+
+            int[] tmp = avantPrecedente;
+            avantPrecedente = precedente;
+            precedente = courante;
+            courante = tmp;
+        }
+        return precedente[longueur];
+    }
+
+    /**
+     * Retourne le masque Peq d'un caractère (0 s'il n'apparaît pas dans la cible)
+     */
+    private long masque(char c) {
+        int index = (c * 0x9E37) & masqueTable;
+        while (masques[index] != 0) {
+            if (clesMasques[index] == c) return masques[index];
+            index = (index + 1) & masqueTable;
+        }
+        return 0;
+    }
+
+    /**
+     * Retourne la case de la table pour un caractère (existante ou libre)
+     */
+    private int indexMasque(char c) {
+        int index = (c * 0x9E37) & masqueTable;
+        while (masques[index] != 0 && clesMasques[index] != c) {
+            index = (index + 1) & masqueTable;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,198 @@
+/******************************************************************************
+ * ConnexionServeur.java
+ * Connexion d'un client au serveur de jeu, sans interface graphique
+ *
+ * Cette classe gère :
+ * - L'ouverture de la socket et l'envoi du nom du joueur
+ * - L'envoi des messages du protocole (CHAT, DRAW, CLEAR...)
+ * - La réception des messages sur un thread dédié
+ * - La réponse immédiate aux PING du serveur, sur ce même thread : elle ne
+ *   passe pas par l'interface et mesure le seul trajet réseau
+ * - Sur demande, l'ouverture du canal UDP des traits (ReceptionDatagrammes) :
+ *   l'écouteur reçoit les mêmes DRAW, qu'ils viennent de TCP ou d'UDP
+ *
+ * Elle est utilisée par le client Swing et par le générateur de charge.
+ *****************************************************************************/
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Connexion texte ligne par ligne avec le serveur
+ */
+public class ConnexionServeur implements Closeable {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int BUFFER_SIZE = 8192;      // Taille du buffer réseau
+
+    //==========================================================================
+    // Écouteur
+    //==========================================================================
+    /**
+     * Reçoit les événements de la connexion (appelé depuis le thread de réception)
+     */
+    public interface Ecouteur {
+        /**
+         * Un message complet a été reçu
+         * @param message La ligne reçue, sans le retour à la ligne
+         */
+        void messageRecu(String message);
+
+        /**
+         * La connexion est terminée
+         * @param cause L'erreur, ou null si le serveur a fermé proprement
+         */
+        void connexionPerdue(IOException cause);
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Socket socket;                      // Socket de connexion
+    private final BufferedReader in;                  // Flux d'entrée
+    private final BufferedWriter out;                 // Flux de sortie
+    private volatile boolean fermee = false;          // Fermeture demandée localement
+    private volatile ReceptionDatagrammes datagrammes; // Canal UDP des traits (null : tout par TCP)
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Ouvre la connexion avec le serveur
+     * @param host Adresse du serveur
+     * @param port Port du serveur
+     * @throws IOException si la connexion échoue
+     */
+    public ConnexionServeur(String host, int port) throws IOException {
+        socket = new Socket();
+        socket.setTcpNoDelay(true); // Désactiver l'algorithme de Nagle
+        socket.setSendBufferSize(BUFFER_SIZE);
+        socket.setReceiveBufferSize(BUFFER_SIZE);
+        socket.connect(new InetSocketAddress(host, port));
+
+        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Envoie le nom du joueur puis démarre le thread de réception
+     * @param nomJoueur Nom du joueur
+     * @param ecouteur Destinataire des messages reçus
+     * @throws IOException si l'envoi du nom échoue
+     */
+    public void demarrer(String nomJoueur, Ecouteur ecouteur) throws IOException {
+        envoyer(nomJoueur);
+        Thread reception = new Thread(() -> recevoir(ecouteur), "reception-" + nomJoueur);
+        reception.setDaemon(true);
+        reception.start();
+    }
+
+    /**
+     * Envoie le nom de la salle à rejoindre (avant demarrer)
+     * La passerelle s'en sert pour choisir le serveur, un serveur seul l'ignore
+     * @param salle Nom de la salle
+     * @throws IOException si l'envoi échoue
+     */
+    public void choisirSalle(String salle) throws IOException {
+        envoyer(Passerelle.PREFIXE_SALLE + salle);
+    }
+
+    /**
+     * Demande au serveur le canal UDP des traits (après demarrer)
+     * S'il ne peut pas s'ouvrir, les traits continuent d'arriver par TCP
+     * @throws IOException si l'envoi de la demande échoue
+     */
+    public void demanderDatagrammes() throws IOException {
+        envoyer(CanalDatagrammes.DEMANDE);
+    }
+
+    /**
+     * Envoie une ligne au serveur
+     * @param message Le message, sans retour à la ligne
+     * @throws IOException si l'écriture échoue
+     */
+    public void envoyer(String message) throws IOException {
+        synchronized (out) {
+            out.write(message);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Envoie un trait de dessin (message DRAW)
+     * @param ligne Le trait à envoyer
+     * @throws IOException si l'encodage ou l'écriture échoue
+     */
+    public void envoyerDessin(LineData ligne) throws IOException {
+        envoyer("DRAW:" + ligne.encoder());
+    }
+
+    /**
+     * Ferme la connexion
+     */
+    @Override
+    public void close() {
+        fermee = true;
+        if (datagrammes != null) datagrammes.close();
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture de la connexion: " + e.getMessage());
+        }
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Boucle de réception des messages du serveur
+     */
+    private void recevoir(Ecouteur ecouteur) {
+        try {
+            String message;
+            while ((message = in.readLine()) != null) {
+                if (message.startsWith(Pouls.PING)) {
+                    envoyer(Pouls.PONG + message.substring(Pouls.PING.length()));
+                    continue;
+                }
+                if (message.startsWith(CanalDatagrammes.DEMANDE)) {
+                    ouvrirDatagrammes(message.substring(CanalDatagrammes.DEMANDE.length()), ecouteur);
+                    continue;
+                }
+                if (message.startsWith(CanalDatagrammes.ACTIF)) {
+                    if (datagrammes != null) datagrammes.activer();
+                    continue;
+                }
+                if (datagrammes != null) {
+                    datagrammes.transmettre(message);
+                } else {
+                    ecouteur.messageRecu(message);
+                }
+            }
+            if (!fermee) ecouteur.connexionPerdue(null);
+        } catch (IOException e) {
+            if (!fermee) ecouteur.connexionPerdue(e);
+        }
+    }
+
+    /**
+     * Ouvre la socket UDP vers le serveur avec le jeton reçu
+     * Les messages TCP passent ensuite par elle, pour rester dans l'ordre des traits
+     */
+    private void ouvrirDatagrammes(String jeton, Ecouteur ecouteur) {
+        if (datagrammes != null) return;
+        try {
+            datagrammes = new ReceptionDatagrammes(
+                new InetSocketAddress(socket.getInetAddress(), socket.getPort()),
+                Long.parseLong(jeton), this, ecouteur);
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Canal UDP indisponible, traits par TCP: " + e.getMessage());
+        }
+    }
+}
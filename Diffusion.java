@@ -0,0 +1,169 @@
+/******************************************************************************
+ * Diffusion.java
+ * Abonnements des joueurs d'une salle aux messages du serveur
+ *
+ * Cette classe gère :
+ * - Le registre joueur -> connexion, en accès direct
+ * - Les sujets auxquels chaque connexion est abonnée :
+ *     SALLE        tous les joueurs assis
+ *     DESSINATEUR  le dessinateur de la manche
+ *     DEVINEURS    les autres joueurs assis
+ *     TROUVE       les devineurs qui ont trouvé le mot de la manche
+ * - La tenue à jour de ces sujets au fil des événements : arrivée, départ,
+ *   nouvelle manche (seuls l'ancien et le nouveau dessinateur changent de
+ *   sujet), mot trouvé
+ * - La publication d'un message aux seuls abonnés d'un sujet : la discussion
+ *   d'un joueur qui a trouvé le mot ne va qu'à ceux qui le connaissent
+ *   (TROUVE et DESSINATEUR), pour ne pas le souffler aux autres
+ *
+ * Un message pour un joueur ou un rôle ne parcourt plus toute la salle.
+ * Les abonnements changent quelques fois par manche, les publications des
+ * centaines de fois par seconde : les sujets sont des ensembles copiés à
+ * l'écriture, parcourus sans verrou. L'ordre d'arrivée des joueurs y est
+ * conservé (ordre des tours). Les spectateurs n'y sont pas : la tribune
+ * les sert à part.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Sujets de diffusion d'une salle et registre des connexions de ses joueurs
+ */
+public class Diffusion {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final int SALLE = 0;                 // Tous les joueurs assis
+    public static final int DESSINATEUR = 1;           // Le dessinateur de la manche
+    public static final int DEVINEURS = 2;             // Les joueurs assis autres que le dessinateur
+    public static final int TROUVE = 3;                // Les devineurs qui ont trouvé le mot
+    public static final String[] NOMS_SUJETS = {"salle", "dessinateur", "devineurs", "trouve"}; // Noms des sujets (métriques)
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final List<Set<ClientHandler>> sujets = new ArrayList<>();          // Abonnés de chaque sujet
+    private final Map<Joueur, ClientHandler> connexions = new ConcurrentHashMap<>(); // Connexion de chaque joueur assis
+    private ClientHandler dessinateur;                 // Abonné au sujet DESSINATEUR (null : aucun)
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    public Diffusion() {
+        for (int sujet = 0; sujet < NOMS_SUJETS.length; sujet++) {
+            sujets.add(new CopyOnWriteArraySet<>());
+        }
+    }
+
+    //==========================================================================
+    // Abonnements
+    //==========================================================================
+    /**
+     * Inscrit un joueur qui vient d'être assis : il devine jusqu'à son tour
+     * @param client Le client du joueur, nom déjà lu
+     */
+    public synchronized void inscrire(ClientHandler client) {
+        connexions.put(client.getJoueur(), client);
+        sujets.get(SALLE).add(client);
+        sujets.get(DEVINEURS).add(client);
+    }
+
+    /**
+     * Désinscrit un joueur parti de tous les sujets
+     * @param client Le client du joueur
+     */
+    public synchronized void desinscrire(ClientHandler client) {
+        connexions.remove(client.getJoueur(), client);
+        for (Set<ClientHandler> abonnes : sujets) {
+            abonnes.remove(client);
+        }
+        if (dessinateur == client) dessinateur = null;
+    }
+
+    /**
+     * Change de dessinateur et oublie qui avait trouvé le mot
+     * @param joueur Le dessinateur de la nouvelle manche
+     * @return Sa connexion, ou null s'il n'est plus assis
+     */
+    public synchronized ClientHandler nouvelleManche(Joueur joueur) {
+        if (dessinateur != null) {
+            sujets.get(DESSINATEUR).remove(dessinateur);
+            sujets.get(DEVINEURS).add(dessinateur);
+        }
+        dessinateur = connexions.get(joueur);
+        if (dessinateur != null) {
+            sujets.get(DEVINEURS).remove(dessinateur);
+            sujets.get(DESSINATEUR).add(dessinateur);
+        }
+        sujets.get(TROUVE).clear();
+        return dessinateur;
+    }
+
+    /**
+     * Abonne au sujet TROUVE un devineur qui a trouvé le mot
+     * @param client Sa connexion (sans effet si null)
+     */
+    public synchronized void aTrouve(ClientHandler client) {
+        if (client != null) sujets.get(TROUVE).add(client);
+    }
+
+    //==========================================================================
+    // Publication
+    //==========================================================================
+    /**
+     * Envoie un message aux abonnés actifs d'un sujet
+     * @param sujet SALLE, DESSINATEUR, DEVINEURS ou TROUVE
+     * @param message Le message
+     * @param exclu Abonné à qui ne pas l'envoyer (peut être null)
+     */
+    public void publier(int sujet, String message, ClientHandler exclu) {
+        for (ClientHandler client : sujets.get(sujet)) {
+            if (client != exclu && client.isActive()) {
+                client.envoyerMessageAsync(message);
+            }
+        }
+    }
+
+    //==========================================================================
+    // Getters
+    //==========================================================================
+    /**
+     * @param sujet Le sujet
+     * @param client Une connexion
+     * @return true si la connexion est abonnée au sujet
+     */
+    public boolean estAbonne(int sujet, ClientHandler client) {
+        return sujets.get(sujet).contains(client);
+    }
+
+    /**
+     * Connexion d'un joueur assis
+     * @param joueur Le joueur
+     * @return Sa connexion, ou null s'il n'est pas (ou plus) assis
+     */
+    public ClientHandler connexion(Joueur joueur) {
+        return joueur != null ? connexions.get(joueur) : null;
+    }
+
+    /**
+     * Abonnés d'un sujet, dans l'ordre d'abonnement (parcours sans copie)
+     * @param sujet Le sujet
+     * @return Les abonnés, à ne pas modifier
+     */
+    public Iterable<ClientHandler> abonnes(int sujet) {
+        return sujets.get(sujet);
+    }
+
+    /**
+     * @param sujet Le sujet
+     * @return Le nombre d'abonnés du sujet
+     */
+    public int getNombre(int sujet) {
+        return sujets.get(sujet).size();
+    }
+}
@@ -4,12 +4,28 @@
  *
  * Cette classe gère :
  * - L'affichage des dessins
- * - Le rendu des lignes
+ * - Le rendu des lignes dans une image persistante (back buffer)
  * - L'anti-aliasing pour une meilleure qualité
+ *
+ * Les traits déjà dessinés restent dans l'image : à chaque repaint, seuls les
+ * segments arrivés depuis le dernier rendu y sont ajoutés, puis l'image est
+ * copiée à l'écran. Le coût d'une image ne dépend donc plus de la quantité
+ * de dessin accumulée. L'image n'est entièrement refaite qu'après un
+ * effacement ou un redimensionnement ; un trait annulé ne fait refaire que
+ * la zone qu'il couvrait.
+ *
+ * Chaque ajout ne redemande l'affichage que du rectangle qui l'entoure, les
+ * traits sont tracés en un seul chemin (Path2D réutilisé) et les BasicStroke
+ * sont partagés par épaisseur.
  *****************************************************************************/
 
 import java.awt.*;
-import java.util.ArrayList;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import javax.swing.*;
 
 /**
@@ -17,6 +33,27 @@ import javax.swing.*;
  * Hérite de JPanel pour fournir une zone de dessin
  */
 class DrawingPanel extends JPanel {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int MARGE_ZONE = 2;   // Pixels ajoutés autour d'une zone à rafraîchir (anti-aliasing)
+    private static final Map<Integer, BasicStroke> TRAITS = new HashMap<>(); // Un BasicStroke par épaisseur
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Path2D.Float chemin = new Path2D.Float();        // Chemin réutilisé pour le back buffer
+    private final Path2D.Float cheminEnCours = new Path2D.Float(); // Chemin de la ligne en cours de tracé
+    private int nbPointsEnCours = 0;           // Points de la ligne en cours déjà dans cheminEnCours
+    private LineData ligneEnCours;             // Trait dont cheminEnCours est le tracé (détecte un nouveau trait)
+    private BufferedImage tampon;              // Image persistante des traits terminés
+    private double echelle = 1.0;              // Pixels physiques par pixel logique (écrans HiDPI)
+    private int nbLignesRendues = 0;           // Lignes de Client.getLines() déjà dans l'image
+    private int nbPointsDerniereLigne = 0;     // Points déjà rendus de la dernière de ces lignes
+    private boolean aRedessiner = true;        // L'image doit être refaite entièrement
+    private Rectangle zoneARefaire;            // Zone de l'image à refaire (traits retirés), null si aucune
+    private BufferedImage fond;                // Image du canevas reçue en arrivant en cours de manche
+
     //==========================================================================
     // Constructeur
     //==========================================================================
@@ -28,50 +65,240 @@ class DrawingPanel extends JPanel {
         setBackground(Color.WHITE);
     }
 
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Demande un rendu complet au prochain affichage
+     * A appeler quand des lignes sont retirées (effacement, nouvelle manche)
+     */
+    public void toutRedessiner() {
+        aRedessiner = true;
+        repaint();
+    }
+
+    /**
+     * Définit l'image placée sous les traits et refait tout le rendu
+     * @param fond Image du canevas (CanevasTuiles), ou null pour un fond uni
+     */
+    public void setFond(BufferedImage fond) {
+        this.fond = fond;
+        toutRedessiner();
+    }
+
+    /**
+     * Signale qu'une ligne a été retirée de Client.getLines() (trait annulé)
+     * Seule la zone qu'elle couvrait sera refaite dans l'image
+     * A appeler en tenant le verrou de Client.getLines(), juste après le retrait
+     * @param index Ancien index de la ligne
+     * @param ligne La ligne retirée
+     */
+    public void ligneRetiree(int index, LineData ligne) {
+        if (index >= nbLignesRendues) return;   // Pas encore dans l'image
+        nbLignesRendues--;
+        if (index == nbLignesRendues) {
+            // La ligne précédente devient la dernière rendue, elle l'a été en entier
+            nbPointsDerniereLigne = nbLignesRendues > 0
+                ? Client.getLines().get(nbLignesRendues - 1).getNbPoints() : 0;
+        }
+        Rectangle zone = zoneAjout(ligne, 0);
+        if (zone == null) return;
+        zoneARefaire = zoneARefaire == null ? zone : zoneARefaire.union(zone);
+        repaint(zone);
+    }
+
+    /**
+     * Demande l'affichage de la seule zone couverte par de nouveaux segments
+     * @param ligne Le trait
+     * @param debut Index du premier point du premier segment ajouté
+     */
+    public void afficherAjout(LineData ligne, int debut) {
+        Rectangle zone = zoneAjout(ligne, debut);
+        if (zone != null) repaint(zone);
+    }
+
+    /**
+     * Calcule la zone couverte par de nouveaux segments d'un trait
+     * @param ligne Le trait
+     * @param debut Index du premier point du premier segment ajouté
+     * @return Le rectangle à rafraîchir, ou null s'il n'y a aucun point
+     */
+    public static Rectangle zoneAjout(LineData ligne, int debut) {
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (int i = Math.max(0, debut); i < ligne.getNbPoints(); i++) {
+            minX = Math.min(minX, ligne.getX(i));
+            minY = Math.min(minY, ligne.getY(i));
+            maxX = Math.max(maxX, ligne.getX(i));
+            maxY = Math.max(maxY, ligne.getY(i));
+        }
+        if (minX > maxX) return null;
+        int marge = (ligne.getStrokeWidth() + 1) / 2 + MARGE_ZONE;
+        return new Rectangle(minX - marge, minY - marge, maxX - minX + 2 * marge, maxY - minY + 2 * marge);
+    }
+
     //==========================================================================
     // Méthodes de rendu
     //==========================================================================
     /**
      * Méthode de dessin principale
-     * Gère le rendu de toutes les lignes avec anti-aliasing
+     * Complète l'image persistante puis la copie à l'écran,
+     * la ligne en cours de tracé est dessinée par-dessus
      * @param g Le contexte graphique
      */
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g.create();
-        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
+        preparerTampon(g2.getTransform());
         synchronized (Client.getLines()) {
-            // Dessiner les lignes existantes
-            for (LineData lineData : Client.getLines()) {
-                drawLine(g2, lineData);
+            mettreAJourTampon(Client.getLines());
+        }
+        g2.drawImage(tampon, 0, 0, getWidth(), getHeight(), null);
+
+        // Dessiner la ligne en cours (le dessinateur local)
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        synchronized (Client.getLines()) {
+            LineData enCours = Client.getCurrentLine();
+            if (mettreAJourCheminEnCours(enCours)) {
+                g2.setColor(enCours.getColor());
+                g2.setStroke(trait(enCours.getStrokeWidth()));
+                g2.draw(cheminEnCours);
             }
+        }
+        g2.dispose();
+    }
+
+    /**
+     * (Re)crée l'image si la taille du panneau ou l'échelle de l'écran a changé
+     * @param transformation Transformation de l'écran (contient l'échelle HiDPI)
+     */
+    private void preparerTampon(AffineTransform transformation) {
+        double nouvelleEchelle = Math.max(1.0, transformation.getScaleX());
+        int largeur = Math.max(1, (int) Math.ceil(getWidth() * nouvelleEchelle));
+        int hauteur = Math.max(1, (int) Math.ceil(getHeight() * nouvelleEchelle));
+
+        if (tampon == null || tampon.getWidth() != largeur || tampon.getHeight() != hauteur
+                || nouvelleEchelle != echelle) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            tampon = configuration != null
+                ? configuration.createCompatibleImage(largeur, hauteur)
+                : new BufferedImage(largeur, hauteur, BufferedImage.TYPE_INT_RGB);
+            echelle = nouvelleEchelle;
+            aRedessiner = true;
+        }
+    }
+
+    /**
+     * Ajoute à l'image les segments arrivés depuis le dernier rendu
+     * @param lignes Lignes reçues ou terminées (verrou déjà pris)
+     */
+    private void mettreAJourTampon(List<LineData> lignes) {
+        Graphics2D g2 = tampon.createGraphics();
+        g2.scale(echelle, echelle);
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-            // Dessiner la ligne en cours
-            if (!Client.getCurrentLine().isEmpty()) {
-                drawLine(g2, new LineData(Client.getCurrentLine(),
-                                        Client.getCurrentColor(),
-                                        Client.getCurrentStrokeWidth()));
+        if (aRedessiner || lignes.size() < nbLignesRendues) {
+            g2.setColor(getBackground());
+            g2.fillRect(0, 0, getWidth(), getHeight());
+            if (fond != null) g2.drawImage(fond, 0, 0, null);
+            nbLignesRendues = 0;
+            nbPointsDerniereLigne = 0;
+            aRedessiner = false;
+            zoneARefaire = null;
+        }
+
+        // Zone libérée par des traits retirés : refaire ce qui se trouve dessous
+        if (zoneARefaire != null) {
+            Graphics2D zone = (Graphics2D) g2.create();
+            zone.clip(zoneARefaire);
+            zone.setColor(getBackground());
+            zone.fill(zoneARefaire);
+            if (fond != null) zone.drawImage(fond, 0, 0, null);
+            for (int i = 0; i < nbLignesRendues; i++) {
+                LineData ligne = lignes.get(i);
+                drawLine(zone, ligne, 0, i == nbLignesRendues - 1 ? nbPointsDerniereLigne : ligne.getNbPoints());
             }
+            zone.dispose();
+            zoneARefaire = null;
+        }
+
+        // La dernière ligne rendue a pu s'allonger (trait reçu en cours de tracé)
+        if (nbLignesRendues > 0) {
+            LineData derniere = lignes.get(nbLignesRendues - 1);
+            if (derniere.getNbPoints() > nbPointsDerniereLigne) {
+                drawLine(g2, derniere, nbPointsDerniereLigne - 1, derniere.getNbPoints());
+                nbPointsDerniereLigne = derniere.getNbPoints();
+            }
+        }
+
+        // Lignes nouvelles
+        for (int i = nbLignesRendues; i < lignes.size(); i++) {
+            drawLine(g2, lignes.get(i), 0, lignes.get(i).getNbPoints());
+        }
+        if (lignes.size() > nbLignesRendues) {
+            nbLignesRendues = lignes.size();
+            nbPointsDerniereLigne = lignes.get(nbLignesRendues - 1).getNbPoints();
         }
         g2.dispose();
     }
 
     /**
-     * Dessine une ligne individuelle
+     * Complète le chemin de la ligne en cours avec les points ajoutés depuis le dernier affichage
+     * Le chemin est recommencé quand un nouveau trait a débuté
+     * @param ligne Ligne en cours (null hors tracé)
+     * @return true s'il y a quelque chose à dessiner
+     */
+    private boolean mettreAJourCheminEnCours(LineData ligne) {
+        if (ligne == null || ligne.getNbPoints() == 0) {
+            nbPointsEnCours = 0;
+            ligneEnCours = null;
+            return false;
+        }
+        if (ligne != ligneEnCours || ligne.getNbPoints() < nbPointsEnCours) {
+            cheminEnCours.reset();
+            nbPointsEnCours = 0;
+            ligneEnCours = ligne;
+        }
+        for (int i = nbPointsEnCours; i < ligne.getNbPoints(); i++) {
+            if (i == 0) cheminEnCours.moveTo(ligne.getX(i), ligne.getY(i));
+            else cheminEnCours.lineTo(ligne.getX(i), ligne.getY(i));
+        }
+        nbPointsEnCours = ligne.getNbPoints();
+        return true;
+    }
+
+    /**
+     * Dessine une partie d'une ligne, en un seul chemin
      * @param g2d Le contexte graphique 2D
      * @param lineData Les données de la ligne à dessiner
+     * @param debut Index du premier point du premier segment à dessiner
+     * @param fin Nombre de points à prendre en compte
      */
-    private void drawLine(Graphics2D g2d, LineData lineData) {
-        g2d.setColor(lineData.getColor());
-        g2d.setStroke(new BasicStroke(lineData.getStrokeWidth()));
+    private void drawLine(Graphics2D g2d, LineData lineData, int debut, int fin) {
+        int premier = Math.max(0, debut);
+        int dernier = Math.min(fin, lineData.getNbPoints());
+        if (dernier - premier < 2) return;
 
-        ArrayList<Point> points = lineData.getLine(); // Utiliser le getter correctement défini
-        for (int i = 0; i < points.size() - 1; i++) {
-            Point p1 = points.get(i);
-            Point p2 = points.get(i + 1);
-            g2d.drawLine(p1.x, p1.y, p2.x, p2.y);
+        chemin.reset();
+        chemin.moveTo(lineData.getX(premier), lineData.getY(premier));
+        for (int i = premier + 1; i < dernier; i++) {
+            chemin.lineTo(lineData.getX(i), lineData.getY(i));
         }
+        g2d.setColor(lineData.getColor());
+        g2d.setStroke(trait(lineData.getStrokeWidth()));
+        g2d.draw(chemin);
+    }
+
+    /**
+     * Retourne le BasicStroke partagé pour une épaisseur donnée
+     * Bouts et jointures arrondis : les morceaux d'un trait rendus en plusieurs fois se raccordent sans marche
+     * @param epaisseur Épaisseur en pixels
+     * @return Le trait correspondant
+     */
+    private static BasicStroke trait(int epaisseur) {
+        return TRAITS.computeIfAbsent(epaisseur,
+            e -> new BasicStroke(e, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,473 @@
+/******************************************************************************
+ * EnregistreurPartie.java
+ * Enregistrement du déroulement des parties pour les revoir ensuite
+ *
+ * Cette classe gère :
+ * - La capture des messages diffusés pendant une partie (rôles, mot choisi,
+ *   traits, propositions, temps...) sans bloquer le fil du jeu
+ * - L'écriture sur un thread dédié, dans un fichier compact par partie
+ * - La relecture d'un enregistrement, message par message
+ *
+ * Les producteurs ne font que ranger une référence et un instant dans un
+ * tampon circulaire préalloué : aucune allocation, aucune entrée/sortie.
+ * Si le tampon est plein, l'événement est perdu et compté, le jeu continue.
+ *
+ * Format d'un fichier (un par partie, dans le dossier parties/) :
+ *   [octets "PXREC"][byte version][long horodatage du début]
+ *   puis des événements [varint ms depuis le précédent][byte type][contenu] :
+ *   - TEXTE : [varint longueur][message UTF-8]
+ *   - TRAIT : [varint numéro][varint longueur][trait décodé de la Base64]
+ *   - SUITE : [varint longueur][octets ajoutés au trait précédent]
+ * Un trait qui s'allonge n'est écrit qu'une fois, puis par ses seuls
+ * nouveaux points : le fichier grandit avec le nombre de points et non
+ * avec le nombre de messages DRAW.
+ *****************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * Enregistreur des parties du serveur (thread-safe)
+ */
+public class EnregistreurPartie {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final byte[] MAGIQUE = {'P', 'X', 'R', 'E', 'C'};
+    private static final byte VERSION = 1;
+    private static final byte TYPE_TEXTE = 0;                  // Message texte quelconque
+    private static final byte TYPE_TRAIT = 1;                  // Message DRAW complet
+    private static final byte TYPE_SUITE = 2;                  // Prolongement du trait précédent
+
+    private static final byte SORTE_TEXTE = 0;                 // Message diffusé
+    private static final byte SORTE_TRAIT = 1;                 // Charge utile DRAW diffusée
+    private static final byte SORTE_DEBUT = 2;                 // Début de partie : nouveau fichier
+    private static final byte SORTE_FIN = 3;                   // Fin de partie : fermeture du fichier
+
+    private static final int CAPACITE = 1 << 14;               // Événements en attente d'écriture (puissance de 2)
+    private static final int RESERVE = 4;                      // Places gardées pour les débuts et fins de partie
+    private static final int PERIODE_ECRITURE_MS = 50;         // Intervalle entre deux écritures groupées
+    private static final int TAILLE_ENTETE_TRAIT = 12;         // Couleur, épaisseur et nombre de points
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Path dossier;                                // Dossier des enregistrements
+
+    // Tampon circulaire partagé, protégé par this
+    private final long[] instants = new long[CAPACITE];        // Instant de chaque événement (nanoTime)
+    private final String[] messages = new String[CAPACITE];    // Message de chaque événement
+    private final byte[] sortes = new byte[CAPACITE];          // Sorte de chaque événement
+    private int tete = 0;                                      // Index du plus ancien événement
+    private int nombre = 0;                                    // Événements en attente
+    private long perdus = 0;                                   // Événements perdus, tampon plein
+    private volatile boolean enCours = false;                  // Une partie est enregistrée
+    private boolean actif = true;                              // Enregistreur ouvert
+
+    // Utilisés par le seul thread d'écriture
+    private final Thread ecrivain;                             // Thread d'écriture groupée
+    private final long[] lotInstants = new long[CAPACITE];
+    private final String[] lotMessages = new String[CAPACITE];
+    private final byte[] lotSortes = new byte[CAPACITE];
+    private ByteBuffer tampon = ByteBuffer.allocate(64 * 1024); // Tampon d'encodage réutilisé
+    private FileChannel fichier;                               // Enregistrement ouvert, null entre deux parties
+    private long debutFichier;                                 // Instant du début de partie (nanoTime)
+    private long dernierMs;                                    // Instant du dernier événement écrit, en ms
+    private byte[] dernierTrait;                               // Dernier trait écrit, décodé
+    private int numeroDernierTrait = -1;                       // Numéro du dernier trait écrit
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Prépare l'enregistreur et démarre son thread d'écriture
+     * Les dossiers et fichiers ne sont créés qu'au premier début de partie
+     * @param dossier Dossier des enregistrements
+     */
+    public EnregistreurPartie(String dossier) {
+        this.dossier = Paths.get(dossier);
+        ecrivain = new Thread(this::boucleEcriture, "enregistreur-partie");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+    }
+
+    //==========================================================================
+    // Méthodes d'enregistrement (appelées par le jeu, non bloquantes)
+    //==========================================================================
+    /**
+     * Commence l'enregistrement d'une nouvelle partie (dans un nouveau fichier)
+     */
+    public void commencer() {
+        ajouter(SORTE_DEBUT, null, true);
+        enCours = true;
+    }
+
+    /**
+     * Termine l'enregistrement de la partie en cours
+     */
+    public void terminer() {
+        if (!enCours) return;
+        enCours = false;
+        ajouter(SORTE_FIN, null, true);
+    }
+
+    /**
+     * Note un message diffusé à tous les joueurs
+     * @param message Le message tel qu'il est envoyé
+     */
+    public void noter(String message) {
+        if (enCours) ajouter(SORTE_TEXTE, message, false);
+    }
+
+    /**
+     * Note un trait diffusé à tous les joueurs
+     * @param donnees Charge utile du message DRAW
+     */
+    public void noterTrait(String donnees) {
+        if (enCours) ajouter(SORTE_TRAIT, donnees, false);
+    }
+
+    /**
+     * Retourne le nombre d'événements perdus faute de place
+     * @return Événements perdus depuis le démarrage
+     */
+    public synchronized long getPerdus() {
+        return perdus;
+    }
+
+    private void ajouter(byte sorte, String message, boolean marqueur) {
+        long instant = System.nanoTime();
+        synchronized (this) {
+            if (nombre >= (marqueur ? CAPACITE : CAPACITE - RESERVE)) {
+                perdus++;
+                return;
+            }
+            int i = (tete + nombre) & (CAPACITE - 1);
+            instants[i] = instant;
+            messages[i] = message;
+            sortes[i] = sorte;
+            nombre++;
+        }
+    }
+
+    //==========================================================================
+    // Fermeture
+    //==========================================================================
+    /**
+     * Écrit les événements en attente puis ferme l'enregistrement en cours
+     */
+    public void fermer() {
+        synchronized (this) {
+            actif = false;
+            notifyAll();
+        }
+        try {
+            ecrivain.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //==========================================================================
+    // Écriture groupée
+    //==========================================================================
+    /**
+     * Boucle du thread d'écriture : toutes les PERIODE_ECRITURE_MS, vide le
+     * tampon circulaire d'un coup et l'écrit en une seule opération
+     */
+    private void boucleEcriture() {
+        boolean continuer = true;
+        while (continuer) {
+            int n;
+            synchronized (this) {
+                try {
+                    if (actif) wait(PERIODE_ECRITURE_MS);
+                } catch (InterruptedException e) {
+                    actif = false;
+                }
+                continuer = actif;
+                n = nombre;
+                for (int k = 0; k < n; k++) {
+                    int i = (tete + k) & (CAPACITE - 1);
+                    lotInstants[k] = instants[i];
+                    lotMessages[k] = messages[i];
+                    lotSortes[k] = sortes[i];
+                    messages[i] = null;
+                }
+                tete = (tete + n) & (CAPACITE - 1);
+                nombre = 0;
+            }
+            try {
+                ecrireLot(n);
+            } catch (IOException e) {
+                System.err.println("Erreur d'écriture de l'enregistrement de partie: " + e.getMessage());
+                fermerFichier();
+            }
+            Arrays.fill(lotMessages, 0, n, null);
+        }
+        fermerFichier();
+    }
+
+    private void ecrireLot(int n) throws IOException {
+        for (int k = 0; k < n; k++) {
+            switch (lotSortes[k]) {
+                case SORTE_DEBUT:
+                    ouvrirFichier(lotInstants[k]);
+                    break;
+                case SORTE_FIN:
+                    fermerFichier();
+                    break;
+                case SORTE_TEXTE:
+                    if (fichier != null) encoderTexte(lotInstants[k], lotMessages[k]);
+                    break;
+                default:
+                    if (fichier != null) encoderTrait(lotInstants[k], lotMessages[k]);
+                    break;
+            }
+        }
+        vider();
+    }
+
+    /**
+     * Ferme l'enregistrement précédent s'il y en a un et en crée un nouveau
+     */
+    private void ouvrirFichier(long instant) throws IOException {
+        fermerFichier();
+        Files.createDirectories(dossier);
+        String base = "partie-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        Path chemin = dossier.resolve(base + ".rec");
+        for (int i = 2; Files.exists(chemin); i++) {
+            chemin = dossier.resolve(base + "-" + i + ".rec");
+        }
+        fichier = FileChannel.open(chemin, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        debutFichier = instant;
+        dernierMs = 0;
+        dernierTrait = null;
+        numeroDernierTrait = -1;
+
+        tampon.clear();
+        tampon.put(MAGIQUE).put(VERSION).putLong(System.currentTimeMillis());
+        System.out.println("Enregistrement de la partie dans " + chemin);
+    }
+
+    private void fermerFichier() {
+        if (fichier == null) return;
+        try {
+            vider();
+            fichier.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture de l'enregistrement: " + e.getMessage());
+        }
+        fichier = null;
+        long nbPerdus = getPerdus();
+        if (nbPerdus > 0) {
+            System.err.println("Enregistrement de partie : " + nbPerdus + " événements perdus depuis le démarrage");
+        }
+    }
+
+    private void vider() throws IOException {
+        tampon.flip();
+        while (fichier != null && tampon.hasRemaining()) {
+            fichier.write(tampon);
+        }
+        tampon.clear();
+    }
+
+    private void encoderTexte(long instant, String message) {
+        byte[] octets = message.getBytes(StandardCharsets.UTF_8);
+        assurerCapacite(16 + octets.length);
+        ecrireDelai(instant);
+        tampon.put(TYPE_TEXTE);
+        ecrireVarint(octets.length);
+        tampon.put(octets);
+    }
+
+    /**
+     * Encode un trait : en entier s'il est nouveau, sinon ses seuls points ajoutés
+     */
+    private void encoderTrait(long instant, String donnees) {
+        int numero = LineData.identifiantDe(donnees);
+        byte[] trait;
+        try {
+            trait = Base64.getDecoder().decode(donnees.substring(donnees.indexOf(':') + 1));
+        } catch (IllegalArgumentException e) {
+            trait = null;
+        }
+        if (numero < 0 || trait == null || trait.length < TAILLE_ENTETE_TRAIT) {
+            encoderTexte(instant, "DRAW:" + donnees);   // Relayé tel quel par le serveur, rejoué tel quel
+            return;
+        }
+
+        if (numero == numeroDernierTrait && prolonge(dernierTrait, trait)) {
+            int ajout = trait.length - dernierTrait.length;
+            assurerCapacite(16 + ajout);
+            ecrireDelai(instant);
+            tampon.put(TYPE_SUITE);
+            ecrireVarint(ajout);
+            tampon.put(trait, dernierTrait.length, ajout);
+        } else {
+            assurerCapacite(21 + trait.length);
+            ecrireDelai(instant);
+            tampon.put(TYPE_TRAIT);
+            ecrireVarint(numero);
+            ecrireVarint(trait.length);
+            tampon.put(trait);
+        }
+        dernierTrait = trait;
+        numeroDernierTrait = numero;
+    }
+
+    /**
+     * Indique si un trait reprend la couleur, l'épaisseur et tous les points du précédent
+     */
+    private static boolean prolonge(byte[] precedent, byte[] trait) {
+        return trait.length >= precedent.length
+            && Arrays.equals(precedent, 0, 8, trait, 0, 8)
+            && Arrays.equals(precedent, TAILLE_ENTETE_TRAIT, precedent.length,
+                             trait, TAILLE_ENTETE_TRAIT, precedent.length);
+    }
+
+    private void ecrireDelai(long instant) {
+        long ms = Math.max(dernierMs, (instant - debutFichier) / 1_000_000);
+        ecrireVarint(ms - dernierMs);
+        dernierMs = ms;
+    }
+
+    private void ecrireVarint(long valeur) {
+        while ((valeur & ~0x7FL) != 0) {
+            tampon.put((byte) ((valeur & 0x7F) | 0x80));
+            valeur >>>= 7;
+        }
+        tampon.put((byte) valeur);
+    }
+
+    private void assurerCapacite(int besoin) {
+        if (tampon.remaining() < besoin) {
+            ByteBuffer plusGrand = ByteBuffer.allocate(Math.max(tampon.capacity() * 2, tampon.position() + besoin));
+            tampon.flip();
+            plusGrand.put(tampon);
+            tampon = plusGrand;
+        }
+    }
+
+    //==========================================================================
+    // Relecture
+    //==========================================================================
+    /**
+     * Lecture séquentielle d'un enregistrement
+     * S'arrête proprement sur un événement tronqué (serveur arrêté en pleine partie)
+     */
+    public static class Lecteur implements Closeable {
+        private final DataInputStream entree;          // Fichier lu
+        private final long horodatage;                 // Début de la partie (ms depuis l'epoch)
+        private long instant = 0;                      // Instant du dernier message lu, en ms depuis le début
+        private byte[] dernierTrait;                   // Dernier trait lu, décodé
+        private int numeroDernierTrait;                // Numéro du dernier trait lu
+
+        /**
+         * Ouvre un enregistrement et vérifie son en-tête
+         * @param chemin Fichier .rec
+         * @throws IOException si le fichier est illisible ou n'est pas un enregistrement
+         */
+        public Lecteur(Path chemin) throws IOException {
+            entree = new DataInputStream(new BufferedInputStream(Files.newInputStream(chemin), 64 * 1024));
+            byte[] magique = new byte[MAGIQUE.length];
+            try {
+                entree.readFully(magique);
+                if (!Arrays.equals(magique, MAGIQUE) || entree.readByte() != VERSION) {
+                    throw new IOException("Ce fichier n'est pas un enregistrement de partie: " + chemin);
+                }
+                horodatage = entree.readLong();
+            } catch (IOException e) {
+                entree.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Lit le message suivant
+         * @return Le message tel qu'il a été diffusé, ou null à la fin de l'enregistrement
+         * @throws IOException en cas d'erreur de lecture ou de données invalides
+         */
+        public String suivant() throws IOException {
+            try {
+                int premier = entree.read();
+                if (premier < 0) return null;
+                instant += lireVarint(premier);
+                byte type = entree.readByte();
+                switch (type) {
+                    case TYPE_TEXTE:
+                        return new String(lireOctets((int) lireVarint(entree.readUnsignedByte())), StandardCharsets.UTF_8);
+                    case TYPE_TRAIT:
+                        numeroDernierTrait = (int) lireVarint(entree.readUnsignedByte());
+                        dernierTrait = lireOctets((int) lireVarint(entree.readUnsignedByte()));
+                        return messageTrait();
+                    case TYPE_SUITE:
+                        if (dernierTrait == null) throw new IOException("Suite de trait sans trait");
+                        byte[] ajout = lireOctets((int) lireVarint(entree.readUnsignedByte()));
+                        byte[] trait = Arrays.copyOf(dernierTrait, dernierTrait.length + ajout.length);
+                        System.arraycopy(ajout, 0, trait, dernierTrait.length, ajout.length);
+                        ByteBuffer.wrap(trait).putInt(8, (trait.length - TAILLE_ENTETE_TRAIT) / 4); // Nombre de points
+                        dernierTrait = trait;
+                        return messageTrait();
+                    default:
+                        throw new IOException("Type d'événement inconnu: " + type);
+                }
+            } catch (EOFException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Retourne l'instant du dernier message lu
+         * @return Millisecondes écoulées depuis le début de la partie
+         */
+        public long getInstant() {
+            return instant;
+        }
+
+        /**
+         * Retourne le début de la partie enregistrée
+         * @return Horodatage en millisecondes depuis l'epoch
+         */
+        public long getHorodatage() {
+            return horodatage;
+        }
+
+        @Override
+        public void close() throws IOException {
+            entree.close();
+        }
+
+        private String messageTrait() {
+            return "DRAW:" + numeroDernierTrait + ":" + Base64.getEncoder().encodeToString(dernierTrait);
+        }
+
+        private byte[] lireOctets(int longueur) throws IOException {
+            if (longueur < 0) throw new IOException("Longueur invalide: " + longueur);
+            byte[] octets = new byte[longueur];
+            entree.readFully(octets);
+            return octets;
+        }
+
+        private long lireVarint(int premier) throws IOException {
+            long valeur = premier & 0x7F;
+            int decalage = 7;
+            int octet = premier;
+            while ((octet & 0x80) != 0) {
+                if (decalage > 56) throw new IOException("Entier trop long");
+                octet = entree.readUnsignedByte();
+                valeur |= (long) (octet & 0x7F) << decalage;
+                decalage += 7;
+            }
+            return valeur;
+        }
+    }
+}
@@ -0,0 +1,372 @@
+/******************************************************************************
+ * Fidelite.java
+ * Fidélité du dessin envoyé à un joueur, selon la qualité de sa connexion
+ *
+ * Cette classe gère :
+ * - Le choix d'un niveau par destinataire, d'après la profondeur de sa file
+ *   d'envoi et son temps d'aller-retour lissé (Pouls) :
+ *     PLEIN      chaque version de chaque trait, comme avant (ou ses seuls
+ *                points nouveaux par datagrammes, si le canal UDP est ouvert)
+ *     DECIME     un point sur deux, et seule la dernière version de chaque
+ *                trait au moment où le message part ; la version finale
+ *                d'un trait part entière quand le trait suivant commence
+ *     INSTANTANE plus de traits, seulement les tuiles du dessin modifiées,
+ *                au plus toutes les PERIODE_INSTANTANE_MS
+ * - Le passage d'un niveau à l'autre, au début d'un trait seulement, avec
+ *   hystérésis : on se dégrade dès qu'un seuil est franchi, on ne remonte
+ *   qu'un niveau à la fois, après DUREE_MIN_MS, une fois nettement sous les
+ *   seuils
+ * - Le rattrapage en sortie du niveau INSTANTANE (dernières tuiles) et
+ *   l'image complète (CANEVAS) en y entrant
+ * - Le dessin des tuiles sur le thread de l'horloge, hors du verrou : un
+ *   instantané en cours ne retient pas les traits des autres niveaux
+ *
+ * Le client remplace un trait par toute version plus complète du même
+ * numéro, et le redessine en entier si les points déjà dessinés ont changé
+ * (dernier point provisoire d'une version décimée, puis version entière) :
+ * une version manquée ou décimée ne laisse pas de trou, le trait final est
+ * le bon. Un joueur lent reste ainsi à quelques centaines de
+ * millisecondes du dessin au lieu d'accumuler du retard ; un joueur rapide
+ * ne voit aucune différence.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Niveau de fidélité du dessin pour une connexion et envoi des traits à ce niveau
+ */
+public class Fidelite {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final int PLEIN = 0;                 // Toutes les versions de tous les traits
+    public static final int DECIME = 1;                // Versions regroupées, un point sur deux
+    public static final int INSTANTANE = 2;            // Tuiles du dessin, périodiquement
+    private static final int[] SEUIL_FILE = {0, 8, 32};        // Messages en attente à partir desquels on passe à chaque niveau
+    private static final long[] SEUIL_RTT_MS = {0, 150, 400};  // Temps d'aller-retour lissé à partir duquel on passe à chaque niveau
+    private static final long DUREE_MIN_MS = 2000;     // Temps passé à un niveau dégradé avant de pouvoir remonter
+    private static final long PERIODE_INSTANTANE_MS = 500;     // Intervalle minimal entre deux envois de tuiles
+
+    private static final ScheduledExecutorService HORLOGE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "fidelite");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });                                                // Instantanés de toutes les salles
+
+    //==========================================================================
+    // Trait diffusé
+    //==========================================================================
+    /**
+     * Version d'un trait reçue du dessinateur, partagée par tous les destinataires
+     * La trame TCP et la version décimée ne sont calculées qu'une fois, et
+     * seulement si un destinataire en a besoin
+     */
+    public static class Trait {
+        private final String donnees;                  // Charge utile DRAW reçue
+        private final int identifiant;                 // Numéro du trait (-1 si illisible)
+        private byte[] trame;                          // Ligne DRAW en octets, écrite telle quelle (null : pas encore construite)
+        private LineData ligne;                        // Trait décodé (null : pas encore décodé)
+        private boolean illisible = false;             // Décodage impossible
+        private String decimees;                       // Charge utile décimée (null : pas encore calculée)
+
+        /**
+         * @param donnees Charge utile reçue après "DRAW:"
+         */
+        public Trait(String donnees) {
+            this(donnees, null);
+        }
+
+        /**
+         * @param donnees Charge utile reçue après "DRAW:"
+         * @param trame Ligne reçue, fin de ligne comprise (null : construite au besoin)
+         */
+        public Trait(String donnees, byte[] trame) {
+            this.donnees = donnees;
+            this.trame = trame;
+            this.identifiant = LineData.identifiantDe(donnees);
+        }
+
+        /**
+         * @return La charge utile reçue après "DRAW:"
+         */
+        public String getDonnees() {
+            return donnees;
+        }
+
+        /**
+         * Ligne DRAW prête à écrire, partagée par tous les destinataires TCP
+         * @return Les octets de "DRAW:<données>\n"
+         */
+        byte[] getTrame() {
+            if (trame == null) {
+                trame = ("DRAW:" + donnees + "\n").getBytes(StandardCharsets.ISO_8859_1);
+            }
+            return trame;
+        }
+
+        /**
+         * @return Le trait décodé, ou null s'il est illisible
+         */
+        LineData getLigne() {
+            if (ligne == null && !illisible) {
+                try {
+                    ligne = LineData.decoder(donnees);
+                } catch (IOException e) {
+                    illisible = true;
+                }
+            }
+            return ligne;
+        }
+
+        /**
+         * @return La charge utile avec un point sur deux (l'original si illisible)
+         */
+        String getDecimees() {
+            if (decimees == null) {
+                decimees = getLigne() == null ? donnees : ligne.decimee().encoder();
+            }
+            return decimees;
+        }
+    }
+
+    /**
+     * Traits en attente d'un même message DRAW regroupé
+     */
+    private static class Lot {
+        final Map<Integer, String> traits = new LinkedHashMap<>(); // Dernière version de chaque trait, dans l'ordre
+        boolean parti = false;                         // Message écrit : le lot est fermé
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Serveur serveur;                     // Serveur de la salle (canevas, métriques)
+    private final ClientHandler client;                // Connexion du destinataire
+    private int niveau = PLEIN;                        // Niveau courant
+    private long depuis = System.nanoTime();           // Entrée dans le niveau courant
+    private int traitCourant = -1;                     // Trait envoyé au niveau courant
+    private int traitDecime = -1;                      // DECIME : trait courant envoyé décimé (-1 : aucun)
+    private Lot lot;                                   // DECIME : lot en file d'envoi (null : aucun)
+    private long numeroLot;                            // Numéro d'envoi du lot (ClientHandler.getNombreEnvois)
+    private long version = -1;                         // INSTANTANE : version du canevas envoyée (-1 : image complète)
+    private boolean instantanePrevu = false;           // INSTANTANE : envoi planifié ou en file
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param serveur Serveur de la salle
+     * @param client Connexion du destinataire
+     */
+    public Fidelite(Serveur serveur, ClientHandler client) {
+        this.serveur = serveur;
+        this.client = client;
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Envoie une version de trait au niveau du destinataire
+     * Le niveau est réévalué au début de chaque nouveau trait : les versions
+     * d'un même trait restent ainsi de plus en plus complètes. Au niveau
+     * DECIME, le trait précédent, terminé, part alors en entier, s'il est
+     * encore affiché (ni annulé ni effacé entre-temps)
+     * @param trait Version reçue du dessinateur
+     */
+    public synchronized void tracer(Trait trait) {
+        if (trait.identifiant != traitCourant) {
+            if (traitDecime >= 0) {
+                String entier = serveur.getPartie().getHistorique().donnees(traitDecime);
+                if (entier != null) regrouper(traitDecime, entier);
+                traitDecime = -1;
+            }
+            traitCourant = trait.identifiant;
+            reevaluer();
+        }
+        if (niveau == PLEIN) {
+            CanalDatagrammes.Destinataire datagrammes = client.getDatagrammes();
+            if (datagrammes == null || !datagrammes.tracer(trait.getLigne())) {
+                client.envoyerTrame(trait.getTrame(), "DRAW:");
+            }
+        } else if (niveau == DECIME) {
+            regrouper(trait.identifiant, trait.getDecimees());
+            traitDecime = trait.identifiant;
+        } else {
+            planifierInstantane();
+        }
+    }
+
+    /**
+     * @return Le niveau courant (PLEIN, DECIME ou INSTANTANE)
+     */
+    public synchronized int getNiveau() {
+        return niveau;
+    }
+
+    //==========================================================================
+    // Choix du niveau (sous le verrou)
+    //==========================================================================
+    /**
+     * Change de niveau si la connexion s'est dégradée ou nettement améliorée
+     */
+    private void reevaluer() {
+        int cible = choisir();
+        if (cible == niveau) return;
+        int ancien = niveau;
+        niveau = cible;
+        depuis = System.nanoTime();
+        serveur.getMetriques().compterChangementFidelite();
+        if (cible == INSTANTANE) {
+            version = -1;                              // Image complète : elle remplace les traits déjà reçus
+        } else if (ancien == INSTANTANE) {
+            rattraper();                               // Les traits suivants se dessinent sur une image à jour
+        }
+    }
+
+    /**
+     * Niveau visé d'après la file d'envoi et le temps d'aller-retour lissé
+     */
+    private int choisir() {
+        int file = client.getFileAttente();
+        long rttMs = client.getRtt().getLisseMicros() / 1000;     // 0 sans mesure
+        int cible = PLEIN;
+        while (cible < INSTANTANE && (file >= SEUIL_FILE[cible + 1] || rttMs >= SEUIL_RTT_MS[cible + 1])) {
+            cible++;
+        }
+        if (cible >= niveau) return cible;
+
+        // Remonter : un niveau à la fois, sous la moitié des seuils du niveau courant
+        boolean stable = System.nanoTime() - depuis >= TimeUnit.MILLISECONDS.toNanos(DUREE_MIN_MS);
+        boolean degage = file < SEUIL_FILE[niveau] / 2 && rttMs < SEUIL_RTT_MS[niveau] / 2;
+        return stable && degage ? niveau - 1 : niveau;
+    }
+
+    //==========================================================================
+    // Niveau DECIME
+    //==========================================================================
+    /**
+     * Ajoute la version décimée au lot en file d'envoi, ou ouvre un nouveau lot
+     * Un lot n'est complété que s'il est encore le dernier message en file :
+     * rien (CLEAR, nouvelle manche...) ne doit passer avant un trait plus récent
+     * @param identifiant Numéro du trait
+     * @param donnees Charge utile à envoyer (décimée, ou entière pour la version finale)
+     */
+    private void regrouper(int identifiant, String donnees) {
+        if (lot == null || lot.parti || client.getNombreEnvois() != numeroLot) {
+            Lot nouveau = new Lot();
+            lot = nouveau;
+            long avant = client.getNombreEnvois();
+            client.envoyerCalcule(() -> vider(nouveau));
+            numeroLot = avant + 1;                     // Un envoi concurrent ferme le lot : c'est sans danger
+        }
+        if (lot.traits.put(identifiant, donnees) != null) {
+            serveur.getMetriques().compterTraitFusionne();
+        }
+    }
+
+    /**
+     * Construit le message d'un lot au moment de l'écrire (thread d'envoi)
+     * @return Un DRAW par trait du lot, séparés par des fins de ligne
+     */
+    private synchronized String vider(Lot lot) {
+        lot.parti = true;
+        StringBuilder texte = new StringBuilder();
+        for (String donnees : lot.traits.values()) {
+            if (texte.length() > 0) texte.append('\n');
+            texte.append("DRAW:").append(donnees);
+        }
+        return texte.length() > 0 ? texte.toString() : null;
+    }
+
+    //==========================================================================
+    // Niveau INSTANTANE
+    //==========================================================================
+    /**
+     * Planifie l'envoi des tuiles modifiées, s'il n'y en a pas déjà un en attente
+     * Le suivant n'est planifié qu'une fois celui-ci écrit : un destinataire
+     * lent reçoit moins d'envois, jamais une file qui s'allonge
+     */
+    private void planifierInstantane() {
+        if (instantanePrevu) return;
+        instantanePrevu = true;
+        HORLOGE.schedule(this::envoyerInstantane, PERIODE_INSTANTANE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Construit les tuiles sur le thread de l'horloge et les met en file
+     */
+    private void envoyerInstantane() {
+        synchronized (this) {
+            if (niveau != INSTANTANE || !client.isActive()) {
+                instantanePrevu = false;
+                return;
+            }
+        }
+        try {
+            String message = tuiles();
+            client.envoyerCalcule(() -> {
+                synchronized (this) {
+                    instantanePrevu = false;
+                }
+                return message;
+            });
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                instantanePrevu = false;
+            }
+            System.err.println("Erreur lors de l'instantané du dessin: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Dernières tuiles en quittant le niveau INSTANTANE (sous le verrou)
+     * Leur place est prise tout de suite dans la file, pour passer avant les
+     * traits suivants ; elles sont dessinées sur le thread de l'horloge et le
+     * thread d'envoi les attend
+     */
+    private void rattraper() {
+        CompletableFuture<String> message = CompletableFuture.supplyAsync(this::tuiles, HORLOGE);
+        client.envoyerCalcule(() -> {
+            try {
+                return message.join();
+            } catch (CompletionException e) {
+                System.err.println("Erreur lors du rattrapage du dessin: " + e.getCause().getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Message des tuiles modifiées depuis le dernier envoi (thread de l'horloge)
+     * Seule la version envoyée est lue et notée sous le verrou, le dessin se
+     * fait hors du verrou
+     * @return CANEVAS si le destinataire n'a pas encore d'image, TUILES
+     *         sinon, null si rien n'a changé
+     */
+    private String tuiles() {
+        long envoyee;
+        synchronized (this) {
+            envoyee = version;
+        }
+        Partie partie = serveur.getPartie();
+        CanevasTuiles canevas = partie.getCanevas();
+        List<HistoriqueTraits.Trait> traits = partie.getHistorique().copie();
+        long courante = canevas.actualiser(traits);
+        String message = envoyee < 0 ? canevas.instantane(traits) : canevas.tuiles(envoyee);
+        synchronized (this) {
+            if (version == envoyee) version = courante;   // Sinon une image complète a été redemandée entre-temps
+        }
+        return message;
+    }
+}
@@ -0,0 +1,260 @@
+/******************************************************************************
+ * GenerateurCharge.java
+ * Générateur de charge : des robots joueurs sans interface graphique
+ *
+ * Cet outil :
+ * - Connecte des robots dessinateurs et devineurs au serveur
+ * - Fait rejouer aux dessinateurs des traits réalistes (trait envoyé en
+ *   entier à chaque mouvement de souris, comme le client Swing)
+ * - Fait envoyer aux devineurs des propositions fausses et justes
+ * - Affiche chaque seconde les débits, la latence de bout en bout et les
+ *   déconnexions
+ *
+ * - Peut faire recevoir les traits par le canal UDP (dernier argument "udp")
+ *
+ * Usage : java GenerateurCharge [hôte] [port] [dessinateurs] [devineurs] [durée s] [salle|-] [tcp|udp]
+ *****************************************************************************/
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class GenerateurCharge {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final String HOST = "localhost";       // Hôte par défaut
+    private static final int PORT = 12345;                // Port par défaut
+    private static final int NB_DESSINATEURS = 1;         // Robots dessinateurs par défaut
+    private static final int NB_DEVINEURS = 20;           // Robots devineurs par défaut
+    private static final int DUREE = 60;                  // Durée du test en secondes
+    private static final int PERIODE_SOURIS_MS = 16;      // Un mouvement de souris toutes les ~16 ms
+    private static final int PERIODE_PROPOSITION_MS = 500; // Une proposition par devineur toutes les 500 ms
+    private static final double PROBA_BONNE_REPONSE = 0.05; // Part des propositions justes
+    private static final int NB_OBSERVATEURS = 5;         // Robots qui décodent les messages pour la latence
+    private static final long GRAINE = 42L;               // Graine des traits et propositions
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final String host;
+    private final int port;
+    private final String salle;                           // Salle demandée à la passerelle (null : aucune)
+    private final boolean datagrammes;                    // Traits reçus par le canal UDP
+    private final ScheduledExecutorService planificateur =
+        Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors());
+    private final List<ConnexionServeur> connexions = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Long> envoisDessin = new ConcurrentHashMap<>(); // Empreinte DRAW -> instant d'envoi
+    private final LongAdder envoyes = new LongAdder();
+    private final LongAdder recus = new LongAdder();
+    private final LongAdder deconnexions = new LongAdder();
+    private final Metriques.Histogramme latenceChat = new Metriques.Histogramme();
+    private final Metriques.Histogramme latenceDessin = new Metriques.Histogramme();
+    private volatile String motActuel;                    // Mot connu des robots (CHOSEN_WORD_CONFIRMED)
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    public GenerateurCharge(String host, int port, String salle, boolean datagrammes) {
+        this.host = host;
+        this.port = port;
+        this.salle = salle;
+        this.datagrammes = datagrammes;
+    }
+
+    //==========================================================================
+    // Robots
+    //==========================================================================
+    /**
+     * Connecte un robot qui dessine en continu
+     */
+    private void lancerDessinateur(int numero) throws IOException {
+        ConnexionServeur connexion = connecter("dessinateur" + numero, numero < NB_OBSERVATEURS);
+        Random aleatoire = new Random(GRAINE + numero);
+        LineData[] trait = {new LineData(0, Color.BLACK, 4)};
+        int[] longueurVisee = {0};
+
+        planificateur.scheduleAtFixedRate(() -> {
+            LineData ligne = trait[0];
+            if (ligne.getNbPoints() >= longueurVisee[0]) {
+                // Nouveau trait : 20 à 80 points à partir d'un endroit au hasard
+                ligne = trait[0] = new LineData(ligne.getIdentifiant() + 1, Color.BLACK, 4);
+                ligne.ajouterPoint(aleatoire.nextInt(800), aleatoire.nextInt(600));
+                longueurVisee[0] = 20 + aleatoire.nextInt(60);
+            } else {
+                int dernier = ligne.getNbPoints() - 1;
+                ligne.ajouterPoint(ligne.getX(dernier) + aleatoire.nextInt(11) - 5,
+                                   ligne.getY(dernier) + aleatoire.nextInt(11) - 5);
+            }
+            try {
+                String donnees = ligne.encoder();
+                envoisDessin.put(donnees.hashCode(), System.nanoTime());
+                connexion.envoyer("DRAW:" + donnees);
+                envoyes.increment();
+            } catch (IOException e) {
+                // La déconnexion est comptée par le thread de réception
+            }
+        }, aleatoire.nextInt(PERIODE_SOURIS_MS), PERIODE_SOURIS_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Connecte un robot qui propose des mots en continu
+     */
+    private void lancerDevineur(int numero) throws IOException {
+        ConnexionServeur connexion = connecter("devineur" + numero, numero < NB_OBSERVATEURS);
+        Random aleatoire = new Random(GRAINE * 31 + numero);
+
+        planificateur.scheduleAtFixedRate(() -> {
+            String mot = motActuel;
+            String proposition = mot != null && aleatoire.nextDouble() < PROBA_BONNE_REPONSE
+                ? mot
+                : "essai t" + System.nanoTime();    // L'instant d'envoi sert à mesurer la latence
+            try {
+                connexion.envoyer("CHAT:" + proposition);
+                envoyes.increment();
+            } catch (IOException e) {
+                // La déconnexion est comptée par le thread de réception
+            }
+        }, aleatoire.nextInt(PERIODE_PROPOSITION_MS), PERIODE_PROPOSITION_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ouvre la connexion d'un robot
+     * @param observateur true si le robot mesure la latence des messages reçus
+     */
+    private ConnexionServeur connecter(String nom, boolean observateur) throws IOException {
+        ConnexionServeur connexion = new ConnexionServeur(host, port);
+        if (salle != null) connexion.choisirSalle(salle);
+        connexions.add(connexion);
+        connexion.demarrer(nom, new ConnexionServeur.Ecouteur() {
+            @Override
+            public void messageRecu(String message) {
+                recus.increment();
+                if (message.startsWith("CHOSEN_WORD_CONFIRMED:")) {
+                    motActuel = message.substring(22);
+                } else if (message.startsWith("CHOIX_MOTS:")) {
+                    choisirMot(connexion, message);
+                } else if (observateur) {
+                    mesurerLatence(message);
+                }
+            }
+
+            @Override
+            public void connexionPerdue(IOException cause) {
+                deconnexions.increment();
+            }
+        });
+        if (datagrammes) connexion.demanderDatagrammes();
+        return connexion;
+    }
+
+    /**
+     * Un robot désigné dessinateur choisit le premier mot proposé
+     */
+    private void choisirMot(ConnexionServeur connexion, String message) {
+        try {
+            connexion.envoyer("CHOSEN_WORD:" + message.substring(11).split(",")[0]);
+        } catch (IOException e) {
+            // La déconnexion est comptée par le thread de réception
+        }
+    }
+
+    /**
+     * Calcule la latence d'un message envoyé par un robot
+     */
+    private void mesurerLatence(String message) {
+        long maintenant = System.nanoTime();
+        if (message.startsWith("DRAW:")) {
+            Long envoi = envoisDessin.get(message.substring(5).hashCode());
+            if (envoi != null) latenceDessin.enregistrer(maintenant - envoi);
+        } else if (message.startsWith("CHAT:")) {
+            int marque = message.lastIndexOf(" t");
+            if (marque > 0) {
+                try {
+                    latenceChat.enregistrer(maintenant - Long.parseLong(message.substring(marque + 2)));
+                } catch (NumberFormatException e) {
+                    // Message de chat d'un vrai joueur
+                }
+            }
+        }
+    }
+
+    //==========================================================================
+    // Déroulement
+    //==========================================================================
+    /**
+     * Connecte les robots puis affiche les statistiques pendant la durée donnée
+     */
+    public void executer(int nbDessinateurs, int nbDevineurs, int duree) throws InterruptedException {
+        for (int i = 0; i < nbDessinateurs; i++) {
+            try {
+                lancerDessinateur(i);
+            } catch (IOException e) {
+                System.err.println("Connexion du dessinateur " + i + " impossible: " + e.getMessage());
+                deconnexions.increment();
+            }
+        }
+        for (int i = 0; i < nbDevineurs; i++) {
+            try {
+                lancerDevineur(i);
+            } catch (IOException e) {
+                System.err.println("Connexion du devineur " + i + " impossible: " + e.getMessage());
+                deconnexions.increment();
+            }
+        }
+        System.out.println(connexions.size() + " robots connectés à " + host + ":" + port);
+
+        long envoyesPrecedent = 0, recusPrecedent = 0;
+        for (int seconde = 1; seconde <= duree; seconde++) {
+            Thread.sleep(1000);
+            long envoyesTotal = envoyes.sum();
+            long recusTotal = recus.sum();
+            System.out.printf("t=%3ds  envoyés %7d/s  reçus %8d/s  déconnexions %d  |  %s  |  %s%n",
+                seconde, envoyesTotal - envoyesPrecedent, recusTotal - recusPrecedent, deconnexions.sum(),
+                resume("CHAT", latenceChat), resume("DRAW", latenceDessin));
+            envoyesPrecedent = envoyesTotal;
+            recusPrecedent = recusTotal;
+            oublierVieuxDessins();
+        }
+
+        planificateur.shutdownNow();
+        for (ConnexionServeur connexion : connexions) {
+            connexion.close();
+        }
+        System.out.println("Bilan : " + envoyes.sum() + " envoyés, " + recus.sum() + " reçus, "
+            + deconnexions.sum() + " déconnexions");
+        System.out.println(resume("CHAT", latenceChat));
+        System.out.println(resume("DRAW", latenceDessin));
+    }
+
+    /**
+     * Retire les empreintes DRAW de plus de 10 secondes
+     */
+    private void oublierVieuxDessins() {
+        long limite = System.nanoTime() - TimeUnit.SECONDS.toNanos(10);
+        envoisDessin.values().removeIf(envoi -> envoi < limite);
+    }
+
+    private static String resume(String nom, Metriques.Histogramme histogramme) {
+        return String.format("%s p50 %.2f ms  p99 %.2f ms  p99.9 %.2f ms", nom,
+            histogramme.centile(0.50) / 1e6, histogramme.centile(0.99) / 1e6, histogramme.centile(0.999) / 1e6);
+    }
+
+    //==========================================================================
+    // Point d'entrée
+    //==========================================================================
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : HOST;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : PORT;
+        int nbDessinateurs = args.length > 2 ? Integer.parseInt(args[2]) : NB_DESSINATEURS;
+        int nbDevineurs = args.length > 3 ? Integer.parseInt(args[3]) : NB_DEVINEURS;
+        int duree = args.length > 4 ? Integer.parseInt(args[4]) : DUREE;
+        String salle = args.length > 5 && !args[5].equals("-") ? args[5] : null;
+        boolean datagrammes = args.length > 6 && args[6].equalsIgnoreCase("udp");
+
+        new GenerateurCharge(host, port, salle, datagrammes).executer(nbDessinateurs, nbDevineurs, duree);
+        System.exit(0);
+    }
+}
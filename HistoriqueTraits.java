@@ -0,0 +1,133 @@
+/******************************************************************************
+ * HistoriqueTraits.java
+ * Historique des traits de la manche en cours, côté serveur
+ *
+ * Cette classe gère :
+ * - Les traits affichés, dans l'ordre du dessin, identifiés par leur numéro
+ * - La pile des traits annulés, pour pouvoir les refaire
+ * - La remise à zéro sur effacement ou nouvelle manche
+ *
+ * Un trait est conservé sous sa dernière forme reçue (message DRAW complet) :
+ * annuler ou refaire ne renvoie qu'un seul trait aux clients, jamais tout le
+ * dessin.
+ *****************************************************************************/
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Journal des commandes de dessin d'une manche (thread-safe)
+ */
+public class HistoriqueTraits {
+    //==========================================================================
+    // Trait
+    //==========================================================================
+    /**
+     * Un trait de la manche
+     */
+    public static class Trait {
+        private final int identifiant;        // Numéro donné par le dessinateur
+        private String donnees;               // Charge utile du dernier message DRAW reçu
+
+        private Trait(int identifiant, String donnees) {
+            this.identifiant = identifiant;
+            this.donnees = donnees;
+        }
+
+        public int getIdentifiant() { return identifiant; }
+        public String getDonnees() { return donnees; }
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final List<Trait> traits = new ArrayList<>();      // Traits affichés, du plus ancien au plus récent
+    private final Deque<Trait> annules = new ArrayDeque<>();   // Traits annulés, le dernier annulé en tête
+
+    //==========================================================================
+    // Commandes
+    //==========================================================================
+    /**
+     * Enregistre un message DRAW : prolonge le dernier trait s'il porte le même
+     * numéro, sinon commence un nouveau trait (et oublie les traits annulés)
+     * @param donnees Charge utile du message DRAW
+     * @return false si le numéro du trait est illisible ou son épaisseur hors
+     *         bornes : le trait n'est ni gardé ni relayé
+     */
+    public synchronized boolean tracer(String donnees) {
+        int identifiant = LineData.identifiantDe(donnees);
+        if (identifiant < 0 || !LineData.epaisseurValide(LineData.epaisseurDe(donnees))) return false;
+
+        Trait dernier = traits.isEmpty() ? null : traits.get(traits.size() - 1);
+        if (dernier != null && dernier.identifiant == identifiant) {
+            dernier.donnees = donnees;
+        } else {
+            traits.add(new Trait(identifiant, donnees));
+            annules.clear();
+        }
+        return true;
+    }
+
+    /**
+     * Annule le trait le plus récent
+     * @return Le trait annulé, ou null s'il n'y en a aucun
+     */
+    public synchronized Trait annuler() {
+        if (traits.isEmpty()) return null;
+        Trait trait = traits.remove(traits.size() - 1);
+        annules.push(trait);
+        return trait;
+    }
+
+    /**
+     * Rétablit le dernier trait annulé
+     * @return Le trait rétabli, ou null s'il n'y en a aucun
+     */
+    public synchronized Trait refaire() {
+        Trait trait = annules.poll();
+        if (trait != null) traits.add(trait);
+        return trait;
+    }
+
+    /**
+     * Copie les traits affichés, dans l'ordre du dessin
+     * Chaque copie garde la charge utile du moment : elle ne change plus ensuite
+     * @return Les traits affichés
+     */
+    public synchronized List<Trait> copie() {
+        List<Trait> copie = new ArrayList<>(traits.size());
+        for (Trait trait : traits) {
+            copie.add(new Trait(trait.identifiant, trait.donnees));
+        }
+        return copie;
+    }
+
+    /**
+     * Dernière version d'un trait affiché
+     * @param identifiant Numéro du trait
+     * @return La charge utile DRAW, ou null si le trait n'est pas affiché
+     */
+    public synchronized String donnees(int identifiant) {
+        for (int i = traits.size() - 1; i >= 0; i--) {
+            if (traits.get(i).identifiant == identifiant) return traits.get(i).donnees;
+        }
+        return null;
+    }
+
+    /**
+     * Indique si aucun trait n'est affiché
+     */
+    public synchronized boolean estVide() {
+        return traits.isEmpty();
+    }
+
+    /**
+     * Oublie tous les traits (effacement ou nouvelle manche)
+     */
+    public synchronized void effacer() {
+        traits.clear();
+        annules.clear();
+    }
+}
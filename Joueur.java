@@ -52,4 +52,11 @@ public class Joueur {
     public void ajouterPoints(int points) {
         this.points += points;
     }
+
+    /**
+     * Remet le score à zéro pour une nouvelle partie
+     */
+    public void reinitialiserPoints() {
+        this.points = 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,555 @@
+/******************************************************************************
+ * JournalResultats.java
+ * Enregistrement durable des résultats des manches et des parties
+ *
+ * Cette classe gère :
+ * - Un journal en ajout seul, découpé en segments de taille fixe
+ * - L'écriture groupée (group commit) sur un thread dédié
+ * - La relecture des segments par projection mémoire (mmap)
+ * - Le compactage en arrière-plan des petits segments
+ * - La reprise au démarrage d'une fusion interrompue par un arrêt brutal
+ * - Le verrou du dossier (fichier "verrou") : un seul journal ouvert par
+ *   dossier, sans quoi deux écrivains et deux compactages se mélangeraient
+ *
+ * Une fusion est écrite sous un nom que la lecture ignore (fusion-*.tmp),
+ * puis validée par renommage (fusion-<premier>-<dernier>.log). Ensuite
+ * seulement, ses sources sont supprimées et elle prend la place du premier
+ * segment. Ces deux étapes se refont sans risque : une fusion validée trouvée
+ * au démarrage est menée à son terme. Un enregistrement n'est donc jamais
+ * lu deux fois, même après un arrêt au milieu d'une fusion.
+ *
+ * Format d'un enregistrement :
+ *   [int longueur][int crc32][byte type][long horodatage]
+ *   [chaîne mot][chaîne dessinateur][short n] puis n x ([chaîne nom][int points])
+ *   [chaîne salle]
+ * Les chaînes sont codées en UTF-8 précédées de leur longueur sur un short.
+ * Un enregistrement sans salle (écrit avant les salles) vient de la salle
+ * principale.
+ *****************************************************************************/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Journal persistant des résultats de jeu
+ */
+class JournalResultats {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final byte TYPE_MANCHE = 1;                  // Résultat d'une manche
+    public static final byte TYPE_PARTIE = 2;                  // Scores finaux d'une partie
+
+    private static final long TAILLE_SEGMENT = 16L * 1024 * 1024;   // Taille avant rotation
+    private static final long TAILLE_PETIT_SEGMENT = 1024 * 1024;   // En dessous, le segment est fusionné
+    private static final int TAILLE_LOT_MAX = 1024;            // Enregistrements max par écriture groupée
+    private static final int INTERVALLE_COMPACTAGE = 10;       // Minutes entre deux compactages
+    private static final String PREFIXE = "segment-";
+    private static final String SUFFIXE = ".log";
+    private static final String PREFIXE_FUSION = "fusion-";     // Segments fusionnés, pas encore en place
+    private static final String SUFFIXE_TEMPORAIRE = ".tmp";    // Fusion en cours d'écriture
+    private static final String VERROU = "verrou";              // Fichier verrouillé tant que le journal est ouvert
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Path dossier;                                // Dossier des segments
+    private final FileChannel fichierVerrou;                   // Fichier du verrou du dossier
+    private final BlockingQueue<Enregistrement> aEcrire = new LinkedBlockingQueue<>();
+    private final Object lockSegments = new Object();          // Protège la liste des segments
+    private final Thread ecrivain;                             // Thread d'écriture groupée
+    private final ScheduledExecutorService compacteur;         // Tâche de compactage
+    private final CRC32 crc = new CRC32();                     // Utilisé par le seul thread d'écriture
+    private ByteBuffer tampon = ByteBuffer.allocate(64 * 1024); // Tampon d'encodage réutilisé
+    private FileChannel segmentCourant;                        // Segment ouvert en écriture
+    private long numeroCourant;                                // Numéro du segment ouvert
+    private volatile boolean actif = true;                     // Journal ouvert
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Ouvre (ou crée) le journal dans le dossier donné
+     * @param dossier Dossier des segments
+     * @throws IOException si le dossier ou le segment ne peut être ouvert, ou
+     *         si un autre journal (de ce processus ou d'un autre) l'a ouvert
+     */
+    public JournalResultats(String dossier) throws IOException {
+        this.dossier = Paths.get(dossier);
+        Files.createDirectories(this.dossier);
+        fichierVerrou = verrouiller(this.dossier.resolve(VERROU));
+        try {
+            reprendreFusions();
+            List<Long> numeros = listerSegments();
+            numeroCourant = numeros.isEmpty() ? 1 : numeros.get(numeros.size() - 1) + 1;
+            ouvrirSegment();
+        } catch (IOException e) {
+            fichierVerrou.close();
+            throw e;
+        }
+
+        ecrivain = new Thread(this::boucleEcriture, "journal-resultats");
+        ecrivain.setDaemon(true);
+        ecrivain.start();
+
+        compacteur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-compactage");
+            t.setDaemon(true);
+            return t;
+        });
+        compacteur.scheduleWithFixedDelay(this::compacterSilencieusement,
+            INTERVALLE_COMPACTAGE, INTERVALLE_COMPACTAGE, TimeUnit.MINUTES);
+    }
+
+    //==========================================================================
+    // Méthodes d'enregistrement (appelées par le thread de jeu)
+    //==========================================================================
+    /**
+     * Enregistre le résultat d'une manche (non bloquant)
+     * @param salle Salle de la manche (null : salle principale)
+     * @param mot Mot à deviner
+     * @param dessinateur Nom du dessinateur
+     * @param pointsGagnes Points gagnés pendant la manche, par joueur
+     */
+    public void enregistrerManche(String salle, String mot, String dessinateur, Map<String, Integer> pointsGagnes) {
+        soumettre(new Enregistrement(TYPE_MANCHE, System.currentTimeMillis(), mot, dessinateur, pointsGagnes, salle));
+    }
+
+    /**
+     * Enregistre les scores finaux d'une partie (non bloquant)
+     * @param salle Salle de la partie (null : salle principale)
+     * @param scores Score final de chaque joueur
+     */
+    public void enregistrerPartie(String salle, Map<String, Integer> scores) {
+        soumettre(new Enregistrement(TYPE_PARTIE, System.currentTimeMillis(), "", "", scores, salle));
+    }
+
+    private void soumettre(Enregistrement enregistrement) {
+        if (actif) {
+            aEcrire.offer(enregistrement);
+        }
+    }
+
+    //==========================================================================
+    // Méthodes de lecture
+    //==========================================================================
+    /**
+     * Relit tous les enregistrements, du plus ancien au plus récent
+     * Les segments sont projetés en mémoire en lecture seule
+     * @param consommateur Reçoit chaque enregistrement valide
+     * @throws IOException en cas d'erreur de lecture
+     */
+    public void lire(Consumer<Enregistrement> consommateur) throws IOException {
+        synchronized (lockSegments) {
+            for (long numero : listerSegments()) {
+                lireSegment(cheminSegment(numero), consommateur);
+            }
+        }
+    }
+
+    //==========================================================================
+    // Fermeture
+    //==========================================================================
+    /**
+     * Vide la file d'attente sur disque puis ferme le journal
+     */
+    public void fermer() {
+        actif = false;
+        compacteur.shutdown();
+        try {
+            ecrivain.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //==========================================================================
+    // Écriture groupée
+    //==========================================================================
+    /**
+     * Boucle du thread d'écriture : attend un enregistrement puis écrit d'un
+     * coup tout ce qui s'est accumulé, avec un seul force() par lot
+     */
+    private void boucleEcriture() {
+        List<Enregistrement> lot = new ArrayList<>(TAILLE_LOT_MAX);
+        while (actif || !aEcrire.isEmpty()) {
+            try {
+                // Pas d'interruption ici : elle fermerait le FileChannel en cours d'écriture
+                Enregistrement premier = aEcrire.poll(200, TimeUnit.MILLISECONDS);
+                if (premier == null) continue;
+                lot.add(premier);
+            } catch (InterruptedException e) {
+                continue;
+            }
+            aEcrire.drainTo(lot, TAILLE_LOT_MAX - lot.size());
+            try {
+                ecrireLot(lot);
+            } catch (IOException e) {
+                System.err.println("Erreur d'écriture du journal des résultats: " + e.getMessage());
+            }
+            lot.clear();
+        }
+        synchronized (lockSegments) {
+            try {
+                segmentCourant.close();
+                fichierVerrou.close();                         // Libère le dossier
+            } catch (IOException e) {
+                System.err.println("Erreur lors de la fermeture du journal: " + e.getMessage());
+            }
+        }
+    }
+
+    private void ecrireLot(List<Enregistrement> lot) throws IOException {
+        tampon.clear();
+        for (Enregistrement enregistrement : lot) {
+            encoder(enregistrement);
+        }
+        tampon.flip();
+        synchronized (lockSegments) {
+            if (segmentCourant.size() + tampon.remaining() > TAILLE_SEGMENT && segmentCourant.size() > 0) {
+                segmentCourant.close();
+                numeroCourant++;
+                ouvrirSegment();
+            }
+            while (tampon.hasRemaining()) {
+                segmentCourant.write(tampon);
+            }
+            segmentCourant.force(false);
+        }
+    }
+
+    /**
+     * Encode un enregistrement à la suite du tampon, en l'agrandissant si besoin
+     */
+    private void encoder(Enregistrement e) {
+        byte[] mot = e.mot.getBytes(StandardCharsets.UTF_8);
+        byte[] dessinateur = e.dessinateur.getBytes(StandardCharsets.UTF_8);
+        byte[] salle = e.salle.getBytes(StandardCharsets.UTF_8);
+        byte[][] noms = new byte[e.noms.length][];
+        int longueur = 1 + 8 + 2 + mot.length + 2 + dessinateur.length + 2 + 2 + salle.length;
+        for (int i = 0; i < noms.length; i++) {
+            noms[i] = e.noms[i].getBytes(StandardCharsets.UTF_8);
+            longueur += 2 + noms[i].length + 4;
+        }
+
+        assurerCapacite(8 + longueur);
+        int debut = tampon.position();
+        tampon.putInt(longueur).putInt(0);
+        tampon.put(e.type).putLong(e.horodatage);
+        ecrireChaine(mot);
+        ecrireChaine(dessinateur);
+        tampon.putShort((short) noms.length);
+        for (int i = 0; i < noms.length; i++) {
+            ecrireChaine(noms[i]);
+            tampon.putInt(e.points[i]);
+        }
+        ecrireChaine(salle);
+
+        crc.reset();
+        crc.update(tampon.array(), debut + 8, longueur);
+        tampon.putInt(debut + 4, (int) crc.getValue());
+    }
+
+    private void ecrireChaine(byte[] octets) {
+        tampon.putShort((short) octets.length).put(octets);
+    }
+
+    private void assurerCapacite(int besoin) {
+        if (tampon.remaining() < besoin) {
+            ByteBuffer plusGrand = ByteBuffer.allocate(Math.max(tampon.capacity() * 2, tampon.position() + besoin));
+            tampon.flip();
+            plusGrand.put(tampon);
+            tampon = plusGrand;
+        }
+    }
+
+    //==========================================================================
+    // Lecture des segments
+    //==========================================================================
+    /**
+     * Décode un segment projeté en mémoire
+     * S'arrête au premier enregistrement tronqué ou corrompu (écriture interrompue)
+     * @return Nombre d'octets valides en tête du segment
+     */
+    private static long lireSegment(Path chemin, Consumer<Enregistrement> consommateur) throws IOException {
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ)) {
+            long taille = canal.size();
+            if (taille == 0) return 0;
+            MappedByteBuffer donnees = canal.map(FileChannel.MapMode.READ_ONLY, 0, taille);
+            CRC32 controle = new CRC32();
+            while (donnees.remaining() >= 8) {
+                int debut = donnees.position();
+                int longueur = donnees.getInt();
+                int attendu = donnees.getInt();
+                if (longueur <= 0 || longueur > donnees.remaining()) {
+                    return debut;
+                }
+                ByteBuffer corps = donnees.slice();
+                corps.limit(longueur);
+                controle.reset();
+                controle.update(corps.duplicate());
+                if ((int) controle.getValue() != attendu) {
+                    return debut;
+                }
+                consommateur.accept(decoder(corps));
+                donnees.position(debut + 8 + longueur);
+            }
+            return donnees.position();
+        }
+    }
+
+    private static Enregistrement decoder(ByteBuffer corps) {
+        byte type = corps.get();
+        long horodatage = corps.getLong();
+        String mot = lireChaine(corps);
+        String dessinateur = lireChaine(corps);
+        int n = corps.getShort();
+        String[] noms = new String[n];
+        int[] points = new int[n];
+        for (int i = 0; i < n; i++) {
+            noms[i] = lireChaine(corps);
+            points[i] = corps.getInt();
+        }
+        String salle = corps.hasRemaining() ? lireChaine(corps) : "";
+        return new Enregistrement(type, horodatage, mot, dessinateur, noms, points, salle);
+    }
+
+    private static String lireChaine(ByteBuffer corps) {
+        byte[] octets = new byte[corps.getShort() & 0xFFFF];
+        corps.get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
+    //==========================================================================
+    // Compactage
+    //==========================================================================
+    private void compacterSilencieusement() {
+        try {
+            compacter();
+        } catch (IOException e) {
+            System.err.println("Erreur lors du compactage du journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Fusionne les petits segments fermés consécutifs en un seul et retire
+     * les fins de segments tronquées. Le segment ouvert n'est jamais touché.
+     * @throws IOException en cas d'erreur disque
+     */
+    public void compacter() throws IOException {
+        List<Long> fermes;
+        synchronized (lockSegments) {
+            fermes = new ArrayList<>(listerSegments());
+            fermes.remove(Long.valueOf(numeroCourant));
+        }
+
+        List<Long> groupe = new ArrayList<>();
+        for (long numero : fermes) {
+            long taille = Files.size(cheminSegment(numero));
+            if (taille == 0) {
+                // Segment laissé vide par un redémarrage
+                synchronized (lockSegments) {
+                    Files.deleteIfExists(cheminSegment(numero));
+                }
+            } else if (taille < TAILLE_PETIT_SEGMENT) {
+                groupe.add(numero);
+            } else {
+                fusionner(groupe);
+                groupe.clear();
+            }
+        }
+        fusionner(groupe);
+    }
+
+    /**
+     * Réécrit un groupe de segments consécutifs dans le premier d'entre eux
+     */
+    private void fusionner(List<Long> groupe) throws IOException {
+        if (groupe.size() < 2) return;
+        long premier = groupe.get(0);
+        long dernier = groupe.get(groupe.size() - 1);
+        Path temporaire = cheminFusion(premier, dernier, SUFFIXE_TEMPORAIRE);
+
+        try (FileChannel sortie = FileChannel.open(temporaire, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (long numero : groupe) {
+                Path source = cheminSegment(numero);
+                long valides = lireSegment(source, e -> { });
+                try (FileChannel entree = FileChannel.open(source, StandardOpenOption.READ)) {
+                    long copie = 0;
+                    while (copie < valides) {
+                        copie += entree.transferTo(copie, valides - copie, sortie);
+                    }
+                }
+            }
+            sortie.force(true);
+        }
+
+        // Validation : à partir d'ici, la fusion sera menée à son terme, au besoin au redémarrage
+        Files.move(temporaire, cheminFusion(premier, dernier, SUFFIXE), StandardCopyOption.ATOMIC_MOVE);
+        forcerDossier();
+        synchronized (lockSegments) {
+            mettreEnPlace(premier, dernier);
+        }
+    }
+
+    /**
+     * Termine une fusion validée : supprime ses sources puis la met à la
+     * place du premier segment (sous le verrou, ou avant toute lecture)
+     * Sans effet sur ce qui est déjà fait : peut être rejouée après un arrêt
+     */
+    private void mettreEnPlace(long premier, long dernier) throws IOException {
+        for (long numero : listerSegments()) {
+            if (numero > premier && numero <= dernier) {
+                Files.deleteIfExists(cheminSegment(numero));
+            }
+        }
+        Files.move(cheminFusion(premier, dernier, SUFFIXE), cheminSegment(premier),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forcerDossier();
+    }
+
+    /**
+     * Au démarrage : jette les fusions inachevées (leurs sources sont
+     * intactes) et termine les fusions validées
+     */
+    private void reprendreFusions() throws IOException {
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(dossier, PREFIXE_FUSION + "*" + SUFFIXE_TEMPORAIRE)) {
+            for (Path chemin : flux) {
+                Files.deleteIfExists(chemin);
+            }
+        }
+        List<Path> validees = new ArrayList<>();
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(dossier, PREFIXE_FUSION + "*" + SUFFIXE)) {
+            for (Path chemin : flux) {
+                validees.add(chemin);
+            }
+        }
+        for (Path chemin : validees) {
+            String nom = chemin.getFileName().toString();
+            String[] bornes = nom.substring(PREFIXE_FUSION.length(), nom.length() - SUFFIXE.length()).split("-");
+            try {
+                long premier = Long.parseLong(bornes[0]);
+                long dernier = Long.parseLong(bornes[1]);
+                System.out.println("Reprise de la fusion des segments " + premier + " à " + dernier);
+                mettreEnPlace(premier, dernier);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Fusion ignorée: " + nom);
+            }
+        }
+    }
+
+    //==========================================================================
+    // Gestion des fichiers de segment
+    //==========================================================================
+    private void ouvrirSegment() throws IOException {
+        segmentCourant = FileChannel.open(cheminSegment(numeroCourant), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private Path cheminSegment(long numero) {
+        return dossier.resolve(String.format("%s%08d%s", PREFIXE, numero, SUFFIXE));
+    }
+
+    private Path cheminFusion(long premier, long dernier, String suffixe) {
+        return dossier.resolve(String.format("%s%08d-%08d%s", PREFIXE_FUSION, premier, dernier, suffixe));
+    }
+
+    /**
+     * Verrouille le dossier pour ce journal seul
+     * @param chemin Fichier du verrou
+     * @return Le fichier, à fermer pour libérer le dossier
+     * @throws IOException si le dossier est déjà verrouillé
+     */
+    private static FileChannel verrouiller(Path chemin) throws IOException {
+        FileChannel canal = FileChannel.open(chemin, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock verrou;
+        try {
+            verrou = canal.tryLock();
+        } catch (OverlappingFileLockException e) {
+            verrou = null;                                 // Déjà tenu dans ce processus
+        }
+        if (verrou == null) {
+            canal.close();
+            throw new IOException("Dossier " + chemin.getParent() + " déjà utilisé par un autre journal");
+        }
+        return canal;
+    }
+
+    /**
+     * Rend durables les renommages et suppressions du dossier
+     * (sans effet là où un dossier ne peut pas être synchronisé)
+     */
+    private void forcerDossier() {
+        try (FileChannel canal = FileChannel.open(dossier, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Système sans synchronisation de dossier : le renommage reste atomique
+        }
+    }
+
+    /**
+     * Liste les numéros de segments présents, triés
+     */
+    private List<Long> listerSegments() throws IOException {
+        List<Long> numeros = new ArrayList<>();
+        try (DirectoryStream<Path> flux = Files.newDirectoryStream(dossier, PREFIXE + "*" + SUFFIXE)) {
+            for (Path chemin : flux) {
+                String nom = chemin.getFileName().toString();
+                try {
+                    numeros.add(Long.parseLong(nom.substring(PREFIXE.length(), nom.length() - SUFFIXE.length())));
+                } catch (NumberFormatException e) {
+                    System.err.println("Segment ignoré: " + nom);
+                }
+            }
+        }
+        Collections.sort(numeros);
+        return numeros;
+    }
+
+    //==========================================================================
+    // Enregistrement
+    //==========================================================================
+    /**
+     * Un résultat de manche ou de partie
+     */
+    static class Enregistrement {
+        final byte type;            // TYPE_MANCHE ou TYPE_PARTIE
+        final long horodatage;      // Date en millisecondes
+        final String mot;           // Mot de la manche (vide pour une partie)
+        final String dessinateur;   // Dessinateur de la manche (vide pour une partie)
+        final String[] noms;        // Joueurs concernés
+        final int[] points;         // Points associés à chaque joueur
+        final String salle;         // Salle de la manche ou de la partie (vide : salle principale)
+
+        Enregistrement(byte type, long horodatage, String mot, String dessinateur, String[] noms, int[] points, String salle) {
+            this.type = type;
+            this.horodatage = horodatage;
+            this.mot = mot;
+            this.dessinateur = dessinateur;
+            this.noms = noms;
+            this.points = points;
+            this.salle = salle != null ? salle : "";
+        }
+
+        Enregistrement(byte type, long horodatage, String mot, String dessinateur, Map<String, Integer> points, String salle) {
+            this(type, horodatage, mot, dessinateur, new String[points.size()], new int[points.size()], salle);
+            int i = 0;
+            for (Map.Entry<String, Integer> entree : points.entrySet()) {
+                this.noms[i] = entree.getKey();
+                this.points[i] = entree.getValue();
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/******************************************************************************
+ * LecteurLignes.java
+ * Lecture des lignes d'une connexion, en octets
+ *
+ * Cette classe gère :
+ * - Le découpage du flux en lignes dans un tampon emprunté à la réserve
+ *   (ReserveTampons) seulement pendant qu'une ligne arrive : il est rendu
+ *   dès que tout ce qui a été lu est consommé, avant d'attendre la suite
+ * - L'échange pour un tampon plus grand quand une ligne ne tient pas
+ *   (traits très longs), jusqu'à LONGUEUR_MAX : au-delà la ligne est
+ *   refusée et la connexion fermée, un client ne peut pas faire grossir
+ *   le tampon sans limite
+ * - Le test du préfixe d'une ligne sans la décoder
+ * - La ligne décodée en texte (UTF-8) pour les messages à interpréter
+ * - La ligne copiée telle quelle, fin de ligne comprise, pour les messages
+ *   relayés sans être compris (DRAW)
+ *
+ * Un trait reçu n'est ainsi décodé ni réencodé : ses octets sont copiés une
+ * fois hors du tampon et cette copie part vers tous les destinataires.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lignes d'un flux d'entrée, lues dans un tampon d'octets emprunté
+ */
+public class LecteurLignes {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int TAILLE_TAMPON = 4096;     // Taille demandée au premier emprunt
+    public static final int LONGUEUR_MAX = 1 << 20;    // Octets au plus d'une ligne (le plus long trait en fait moins de 400 Ko)
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final InputStream entree;                  // Flux de la socket
+    private final ReserveTampons reserve;              // Réserve des tampons
+    private ReserveTampons.Tampon tampon;              // Tampon emprunté (null : rien en cours de lecture)
+    private byte[] octets;                             // Octets du tampon (plaque partagée)
+    private int rempli = 0;                            // Fin des octets valides dans octets
+    private int debut = 0;                             // Début de la ligne courante
+    private int fin = 0;                               // Fin de la ligne courante (sans \r ni \n)
+    private int suivante = 0;                          // Début de la ligne suivante
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param entree Flux à découper en lignes
+     * @param reserve Réserve où emprunter les tampons
+     */
+    public LecteurLignes(InputStream entree, ReserveTampons reserve) {
+        this.entree = entree;
+        this.reserve = reserve;
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Lit la ligne suivante ; la précédente n'est plus accessible
+     * Sans octet en attente, le tampon est rendu pendant l'attente
+     * @return false en fin de flux (une dernière ligne sans fin de ligne est rendue)
+     * @throws IOException en cas d'erreur de lecture ou de ligne plus longue que LONGUEUR_MAX
+     */
+    public boolean lire() throws IOException {
+        if (tampon != null && suivante == rempli) {
+            fermer();                                  // Tout est consommé : rien n'est en cours
+        }
+        if (tampon == null) {
+            int octet = entree.read();                 // Attente sans tampon
+            if (octet < 0) return false;
+            emprunter(TAILLE_TAMPON);
+            octets[rempli++] = (byte) octet;
+        }
+        int recherche = suivante;
+        while (true) {
+            for (int i = recherche; i < rempli; i++) {
+                if (octets[i] == '\n') {
+                    debut = suivante;
+                    fin = i > debut && octets[i - 1] == '\r' ? i - 1 : i;
+                    suivante = i + 1;
+                    return true;
+                }
+            }
+            if (suivante > tampon.getDebut()) {
+                // Ligne incomplète ramenée au début du tampon
+                System.arraycopy(octets, suivante, octets, tampon.getDebut(), rempli - suivante);
+                rempli -= suivante - tampon.getDebut();
+                suivante = tampon.getDebut();
+            }
+            recherche = rempli;
+            if (rempli == tampon.getFin()) {
+                if (tampon.getCapacite() >= LONGUEUR_MAX) throw new IOException("Ligne trop longue");
+                agrandir();
+                recherche = rempli;
+            }
+            int lus = entree.read(octets, rempli, tampon.getFin() - rempli);
+            if (lus < 0) {
+                if (rempli == suivante) return false;
+                debut = suivante;
+                fin = rempli;
+                suivante = rempli;
+                return true;
+            }
+            rempli += lus;
+        }
+    }
+
+    /**
+     * @param prefixe Préfixe ASCII
+     * @return true si la ligne courante commence par ce préfixe
+     */
+    public boolean commencePar(String prefixe) {
+        int n = prefixe.length();
+        if (fin - debut < n) return false;
+        for (int i = 0; i < n; i++) {
+            if (octets[debut + i] != prefixe.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return La ligne courante décodée (UTF-8)
+     */
+    public String texte() {
+        return new String(octets, debut, fin - debut, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fin de la ligne courante, un caractère par octet : copie directe pour
+     * une charge utile ASCII (base64), et les octets reviennent à l'identique
+     * @param decalage Octets à sauter (longueur du préfixe)
+     * @return La fin de la ligne
+     */
+    public String donnees(int decalage) {
+        return new String(octets, debut + decalage, fin - debut - decalage, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * @return Copie de la ligne courante, terminée par '\n', prête à être écrite
+     */
+    public byte[] trame() {
+        byte[] trame = Arrays.copyOfRange(octets, debut, fin + 1);
+        trame[fin - debut] = '\n';
+        return trame;
+    }
+
+    /**
+     * Rend le tampon à la réserve (fin de connexion, sur le thread de lecture)
+     */
+    public void fermer() {
+        reserve.rendre(tampon);
+        tampon = null;
+        octets = null;
+        rempli = debut = fin = suivante = 0;
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    private void emprunter(int taille) {
+        tampon = reserve.emprunter(taille);
+        octets = tampon.getOctets();
+        rempli = debut = fin = suivante = tampon.getDebut();
+    }
+
+    /**
+     * Échange le tampon plein (une ligne incomplète, au début) pour un deux fois plus grand
+     */
+    private void agrandir() {
+        ReserveTampons.Tampon ancien = tampon;
+        int longueur = rempli - suivante;
+        emprunter(2 * ancien.getCapacite());
+        System.arraycopy(ancien.getOctets(), ancien.getDebut(), octets, rempli, longueur);
+        rempli += longueur;
+        reserve.rendre(ancien);
+    }
+}
@@ -4,44 +4,116 @@
  *
  * Cette classe :
  * - Stocke les informations d'une ligne de dessin
- * - Est sérialisable pour la transmission réseau
+ * - S'encode en binaire compact pour la transmission réseau
  * - Gère la couleur et l'épaisseur du trait
+ *
+ * Les points sont rangés dans un tableau d'entiers extensible (x0, y0, x1,
+ * y1...) : 8 octets par point au lieu d'un objet Point par point, et un
+ * parcours sans allocation ni indirection.
  *****************************************************************************/
 
 import java.awt.*;
-import java.io.*;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
 
 /**
  * Classe représentant une ligne de dessin avec ses propriétés
- * Implémente Serializable pour permettre la transmission réseau
  */
-public class LineData implements Serializable {
+public class LineData {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int CAPACITE_INITIALE = 32;  // Points réservés pour un nouveau trait
+    private static final int TAILLE_ENTETE = 12;      // Couleur, épaisseur et nombre de points encodés
+    private static final int ENTETE_BASE64 = 16;      // Caractères base64 de l'en-tête (12 octets)
+    public static final int EPAISSEUR_MIN = 1;        // Épaisseur minimale d'un trait
+    public static final int EPAISSEUR_MAX = 64;       // Épaisseur maximale (boutons du client, gomme comprise)
+
     //==========================================================================
     // Variables membres
     //==========================================================================
-    private final ArrayList<Point> line;      // Points constituant la ligne
-    private final Color color;                // Couleur de la ligne
+    private final int identifiant;            // Numéro du trait dans la manche (annuler / refaire)
+    private int[] coordonnees;                // Coordonnées des points : x0, y0, x1, y1...
+    private int nbPoints;                     // Nombre de points du trait
+    private final int couleur;                // Couleur de la ligne (ARGB)
     private final int strokeWidth;            // Épaisseur du trait
+    private Color color;                      // Couleur AWT, créée à la première demande
 
     //==========================================================================
-    // Constructeur
+    // Constructeurs
     //==========================================================================
     /**
-     * Crée une nouvelle ligne avec ses propriétés
-     * @param line Liste des points constituant la ligne
+     * Crée un trait vide, à compléter avec ajouterPoint
+     * @param identifiant Numéro du trait, croissant pour un même dessinateur
      * @param color Couleur de la ligne
      * @param strokeWidth Épaisseur du trait
      */
-    public LineData(ArrayList<Point> line, Color color, int strokeWidth) {
-        this.line = line;
+    public LineData(int identifiant, Color color, int strokeWidth) {
+        this(identifiant, new int[2 * CAPACITE_INITIALE], 0, color.getRGB(), strokeWidth);
         this.color = color;
+    }
+
+    /**
+     * Crée un trait à partir des premiers points d'un tableau de coordonnées
+     * (points reçus par datagrammes)
+     * @param identifiant Numéro du trait
+     * @param couleur Couleur ARGB
+     * @param strokeWidth Épaisseur du trait
+     * @param coordonnees Coordonnées x0, y0, x1, y1... (copiées)
+     * @param nbPoints Nombre de points à reprendre
+     * @return Le trait
+     */
+    public static LineData depuisCoordonnees(int identifiant, int couleur, int strokeWidth, int[] coordonnees, int nbPoints) {
+        return new LineData(identifiant, Arrays.copyOf(coordonnees, 2 * nbPoints), nbPoints, couleur, strokeWidth);
+    }
+
+    /**
+     * Crée une ligne à partir de coordonnées déjà rangées
+     * @param identifiant Numéro du trait
+     * @param coordonnees Coordonnées x0, y0, x1, y1... (le tableau est conservé tel quel)
+     * @param nbPoints Nombre de points utilisés dans le tableau
+     * @param couleur Couleur ARGB
+     * @param strokeWidth Épaisseur du trait
+     */
+    private LineData(int identifiant, int[] coordonnees, int nbPoints, int couleur, int strokeWidth) {
+        this.identifiant = identifiant;
+        this.coordonnees = coordonnees;
+        this.nbPoints = nbPoints;
+        this.couleur = couleur;
         this.strokeWidth = strokeWidth;
     }
 
+    //==========================================================================
+    // Modification
+    //==========================================================================
+    /**
+     * Ajoute un point à la fin du trait
+     * @param x Abscisse
+     * @param y Ordonnée
+     */
+    public void ajouterPoint(int x, int y) {
+        if (2 * nbPoints == coordonnees.length) {
+            coordonnees = Arrays.copyOf(coordonnees, Math.max(2 * CAPACITE_INITIALE, 2 * coordonnees.length));
+        }
+        coordonnees[2 * nbPoints] = x;
+        coordonnees[2 * nbPoints + 1] = y;
+        nbPoints++;
+    }
+
     //==========================================================================
     // Getters
     //==========================================================================
+    /**
+     * Retourne le numéro du trait
+     * @return Identifiant donné par le dessinateur
+     */
+    public int getIdentifiant() {
+        return identifiant;
+    }
+
     /**
      * Retourne l'épaisseur du trait
      * @return Épaisseur en pixels
@@ -55,14 +127,160 @@ public class LineData implements Serializable {
      * @return Couleur du trait
      */
     public Color getColor() {
+        if (color == null) color = new Color(couleur, true);
         return color;
     }
 
     /**
-     * Retourne la liste des points constituant la ligne
-     * @return Liste des points
+     * Retourne la couleur de la ligne sous forme d'entier
+     * @return Couleur ARGB
+     */
+    public int getCouleur() {
+        return couleur;
+    }
+
+    /**
+     * Retourne le nombre de points du trait
+     * @return Nombre de points
+     */
+    public int getNbPoints() {
+        return nbPoints;
+    }
+
+    /**
+     * Retourne l'abscisse d'un point
+     * @param i Index du point
+     * @return Abscisse
      */
-    public ArrayList<Point> getLine() {
-        return line;
+    public int getX(int i) {
+        return coordonnees[2 * i];
+    }
+
+    /**
+     * Retourne l'ordonnée d'un point
+     * @param i Index du point
+     * @return Ordonnée
+     */
+    public int getY(int i) {
+        return coordonnees[2 * i + 1];
+    }
+
+    //==========================================================================
+    // Encodage réseau
+    //==========================================================================
+    /**
+     * Encode la ligne pour le message DRAW
+     * Format : numéro du trait en décimal, ':', puis en Base64 la couleur,
+     * l'épaisseur, le nombre de points (int) et x, y de chaque point (short,
+     * bornés à la plage d'un short)
+     * @return La charge utile du message DRAW
+     */
+    public String encoder() {
+        ByteBuffer tampon = ByteBuffer.allocate(TAILLE_ENTETE + 4 * nbPoints);
+        tampon.putInt(couleur).putInt(strokeWidth).putInt(nbPoints);
+        for (int i = 0; i < 2 * nbPoints; i++) {
+            tampon.putShort(enShort(coordonnees[i]));
+        }
+        return identifiant + ":" + Base64.getEncoder().encodeToString(tampon.array());
+    }
+
+    /**
+     * Lit le numéro du trait d'une charge utile DRAW sans la décoder
+     * @param donnees Charge utile reçue après "DRAW:"
+     * @return Le numéro du trait, ou -1 s'il est illisible
+     */
+    public static int identifiantDe(String donnees) {
+        int separateur = donnees.indexOf(':');
+        if (separateur <= 0 || separateur > 9) return -1;       // 9 chiffres au plus : pas de dépassement
+        int identifiant = 0;
+        for (int i = 0; i < separateur; i++) {
+            char c = donnees.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            identifiant = identifiant * 10 + (c - '0');
+        }
+        return identifiant;
+    }
+
+    /**
+     * Lit l'épaisseur d'une charge utile DRAW en ne décodant que son en-tête
+     * @param donnees Charge utile reçue après "DRAW:"
+     * @return L'épaisseur annoncée, ou -1 si l'en-tête est illisible
+     */
+    public static int epaisseurDe(String donnees) {
+        int debut = donnees.indexOf(':') + 1;
+        if (debut <= 0 || donnees.length() < debut + ENTETE_BASE64) return -1;
+        try {
+            byte[] entete = Base64.getDecoder().decode(donnees.substring(debut, debut + ENTETE_BASE64));
+            return ByteBuffer.wrap(entete).getInt(4);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param strokeWidth Épaisseur annoncée par un trait reçu
+     * @return true si elle est dans les bornes de l'interface
+     */
+    public static boolean epaisseurValide(int strokeWidth) {
+        return strokeWidth >= EPAISSEUR_MIN && strokeWidth <= EPAISSEUR_MAX;
+    }
+
+    /**
+     * Décode la charge utile d'un message DRAW
+     * @param donnees Texte reçu après "DRAW:"
+     * @return La ligne décodée
+     * @throws IOException en cas de données invalides (épaisseur hors bornes comprise)
+     */
+    public static LineData decoder(String donnees) throws IOException {
+        int identifiant = identifiantDe(donnees);
+        if (identifiant < 0) throw new IOException("Trait sans numéro");
+        try {
+            ByteBuffer tampon = ByteBuffer.wrap(Base64.getDecoder().decode(donnees.substring(donnees.indexOf(':') + 1)));
+            int couleur = tampon.getInt();
+            int strokeWidth = tampon.getInt();
+            int nbPoints = tampon.getInt();
+            if (!epaisseurValide(strokeWidth)) {
+                throw new IOException("Trait invalide: épaisseur " + strokeWidth);
+            }
+            if (nbPoints < 0 || tampon.remaining() != 4L * nbPoints) {
+                throw new IOException("Trait invalide: " + nbPoints + " points annoncés");
+            }
+            int[] coordonnees = new int[2 * nbPoints];
+            for (int i = 0; i < coordonnees.length; i++) {
+                coordonnees[i] = tampon.getShort();
+            }
+            return new LineData(identifiant, coordonnees, nbPoints, couleur, strokeWidth);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Trait invalide: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Version allégée du trait pour une connexion lente : les points d'index
+     * pair, plus le dernier point s'il est d'index impair, pour que le trait
+     * finisse au bon endroit
+     * Les points pairs ne changent pas quand le trait s'allonge ; seul ce
+     * dernier point est provisoire (remplacé par le point pair suivant), et
+     * le client redessine le trait quand il change. Le nombre de points ne
+     * décroît jamais d'une version à la suivante
+     * @return Un nouveau trait de même numéro, couleur et épaisseur
+     */
+    public LineData decimee() {
+        int garde = (nbPoints + 1) / 2 + (nbPoints > 0 && nbPoints % 2 == 0 ? 1 : 0);
+        int[] points = new int[2 * garde];
+        int n = 0;
+        for (int i = 0; i < nbPoints; i += 2) {
+            points[n++] = coordonnees[2 * i];
+            points[n++] = coordonnees[2 * i + 1];
+        }
+        if (n < points.length) {
+            points[n++] = coordonnees[2 * nbPoints - 2];
+            points[n] = coordonnees[2 * nbPoints - 1];
+        }
+        return new LineData(identifiant, points, garde, couleur, strokeWidth);
+    }
+
+    private static short enShort(int valeur) {
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, valeur));
     }
-}
\ No newline at end of file
+}
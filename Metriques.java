@@ -0,0 +1,406 @@
+/******************************************************************************
+ * Metriques.java
+ * Instrumentation du serveur
+ *
+ * Cette classe gère :
+ * - Les compteurs de messages entrants et sortants par type (DRAW, CHAT...),
+ *   limités aux types du protocole : tout autre préfixe compte dans AUTRE
+ * - Le nombre d'octets envoyés
+ * - Les histogrammes de durée (verifierMot, broadcast, changement de manche,
+ *   temps d'aller-retour des clients)
+ * - La profondeur des files d'envoi de chaque client
+ * - Le niveau de fidélité du dessin de chaque client et ses changements
+ * - Les datagrammes du canal UDP des traits et les renvois demandés
+ * - L'exposition via JMX et via un petit point d'accès HTTP local
+ * - Un seul registre par processus : les salles hébergées par le serveur
+ *   principal y comptent toutes, et leurs clients sont additionnés
+ *
+ * L'enregistrement n'utilise que des LongAdder et des tableaux atomiques :
+ * aucun verrou n'est pris sur le chemin du jeu, les métriques peuvent rester
+ * actives en permanence.
+ *****************************************************************************/
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.ObjectName;
+
+/**
+ * Registre des métriques du serveur
+ */
+public class Metriques implements MetriquesMBean {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final String NOM_JMX = "ProjectX:type=Metriques";
+    private static final String TYPE_TEXTE = "TEXTE";     // Messages sans préfixe de protocole
+    private static final String TYPE_AUTRE = "AUTRE";     // Préfixes hors protocole (choisis par un client)
+    private static final int LONGUEUR_TYPE_MAX = 24;      // Au-delà, ce n'est pas un préfixe de protocole
+    private static final Set<String> TYPES = Set.of(     // Préfixes du protocole, seuls comptés à part
+        "DRAW", "CHAT", "CHOSEN_WORD", "CHOSEN_WORD_CONFIRMED", "CHOIX_MOTS", "CLEAR", "UNDO", "REDO",
+        "CANEVAS", "TUILES", "PODIUM", "CLASSEMENT_GENERAL", "ROLE", "NOUVEAU_DESSINATEUR",
+        "GUESS_CORRECT", "REVEAL_LETTER", "TEMPS", "TEMPS_ECOULE", "FIN_MANCHE", "FIN_PARTIE", "SCORE",
+        "NOTIFICATION", "SALLE", "SPECTATEUR", "PING", "PONG", "UDP", "UDP_OK", "UDP_SEQ", "RENVOI");
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Serveur serveur;                                         // Serveur principal, pour lire ses salles
+    private final Map<String, LongAdder> recus = new ConcurrentHashMap<>();    // Messages reçus par type
+    private final Map<String, LongAdder> envoyes = new ConcurrentHashMap<>();  // Messages envoyés par type
+    private final LongAdder octetsEnvoyes = new LongAdder();                   // Octets écrits sur les sockets
+    private final LongAdder traitsFusionnes = new LongAdder();                 // Versions de traits remplacées avant envoi (DECIME)
+    private final LongAdder changementsFidelite = new LongAdder();             // Changements de niveau de fidélité
+    private final Histogramme verifierMot = new Histogramme();                 // Durée de Partie.verifierMot
+    private final Histogramme broadcast = new Histogramme();                   // Durée d'une diffusion
+    private final Histogramme changementManche = new Histogramme();            // Durée de lancerManche
+    private final Histogramme rtt = new Histogramme();                         // Temps d'aller-retour PING / PONG
+    private HttpServer http;                                                   // Point d'accès texte
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Crée le registre de métriques
+     * @param serveur Serveur principal dont on observe les clients de toutes les salles
+     */
+    public Metriques(Serveur serveur) {
+        this.serveur = serveur;
+    }
+
+    //==========================================================================
+    // Exposition
+    //==========================================================================
+    /**
+     * Enregistre le MBean et démarre le point d'accès HTTP sur l'interface locale
+     * @param port Port HTTP (0 pour ne pas démarrer le point d'accès)
+     */
+    public void exposer(int port) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(NOM_JMX));
+        } catch (Exception e) {
+            System.err.println("Impossible d'enregistrer le MBean des métriques: " + e.getMessage());
+        }
+        if (port <= 0) return;
+        try {
+            http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            http.createContext("/metriques", echange -> {
+                byte[] corps = getRapport().getBytes(StandardCharsets.UTF_8);
+                echange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                echange.sendResponseHeaders(200, corps.length);
+                try (OutputStream os = echange.getResponseBody()) {
+                    os.write(corps);
+                }
+            });
+            http.start();
+            System.out.println("Métriques disponibles sur http://localhost:" + port + "/metriques");
+        } catch (IOException e) {
+            System.err.println("Impossible de démarrer le point d'accès des métriques: " + e.getMessage());
+        }
+    }
+
+    //==========================================================================
+    // Enregistrement
+    //==========================================================================
+    /**
+     * Compte un message reçu d'un client
+     * @param message Le message brut
+     */
+    public void messageRecu(String message) {
+        compter(recus, message);
+    }
+
+    /**
+     * Compte un message mis en file vers un client
+     * @param message Le message brut
+     */
+    public void messageEnvoye(String message) {
+        compter(envoyes, message);
+    }
+
+    /**
+     * Compte une version de trait remplacée par une plus récente avant son envoi
+     */
+    public void compterTraitFusionne() {
+        traitsFusionnes.increment();
+    }
+
+    /**
+     * Compte un changement de niveau de fidélité d'un client
+     */
+    public void compterChangementFidelite() {
+        changementsFidelite.increment();
+    }
+
+    /**
+     * Enveloppe un flux de sortie pour compter les octets réellement écrits
+     * @param flux Flux de la socket
+     * @return Flux comptant les octets
+     */
+    public OutputStream compterOctets(OutputStream flux) {
+        return new FilterOutputStream(flux) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                octetsEnvoyes.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                octetsEnvoyes.add(len);
+            }
+        };
+    }
+
+    public Histogramme getVerifierMot() { return verifierMot; }
+    public Histogramme getBroadcast() { return broadcast; }
+    public Histogramme getChangementManche() { return changementManche; }
+    public Histogramme getRtt() { return rtt; }
+
+    //==========================================================================
+    // Attributs JMX
+    //==========================================================================
+    @Override
+    public long getMessagesRecus() { return total(recus); }
+
+    @Override
+    public long getMessagesEnvoyes() { return total(envoyes); }
+
+    @Override
+    public long getOctetsEnvoyes() { return octetsEnvoyes.sum(); }
+
+    @Override
+    public long getFileAttenteTotale() {
+        long total = 0;
+        for (Serveur salle : serveur.getSalles()) {
+            for (ClientHandler client : salle.getDiffusion().abonnes(Diffusion.SALLE)) {
+                total += client.getFileAttente();
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long getFileAttenteMax() {
+        long max = 0;
+        for (Serveur salle : serveur.getSalles()) {
+            for (ClientHandler client : salle.getDiffusion().abonnes(Diffusion.SALLE)) {
+                max = Math.max(max, client.getFileAttente());
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long getVerifierMotP99Micros() { return verifierMot.centile(0.99) / 1000; }
+
+    @Override
+    public long getBroadcastP99Micros() { return broadcast.centile(0.99) / 1000; }
+
+    /**
+     * Construit le rapport texte de toutes les métriques
+     * @return Une métrique par ligne, au format "nom valeur"
+     */
+    @Override
+    public String getRapport() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(recus).entrySet()) {
+            sb.append("messages_recus{type=").append(e.getKey()).append("} ").append(e.getValue().sum()).append('\n');
+        }
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(envoyes).entrySet()) {
+            sb.append("messages_envoyes{type=").append(e.getKey()).append("} ").append(e.getValue().sum()).append('\n');
+        }
+        sb.append("octets_envoyes ").append(getOctetsEnvoyes()).append('\n');
+        List<Serveur> salles = serveur.getSalles();
+        long[] abonnes = new long[Diffusion.NOMS_SUJETS.length];
+        long spectateurs = 0, enFile = 0, surveillees = 0, sansReponse = 0;
+        int[] parNiveau = new int[Fidelite.INSTANTANE + 1];
+        for (Serveur salle : salles) {
+            for (int sujet = 0; sujet < abonnes.length; sujet++) {
+                abonnes[sujet] += salle.getDiffusion().getNombre(sujet);
+            }
+            spectateurs += salle.getTribune().getNombre();
+            enFile += salle.getAppariement().getNombreEnFile();
+            surveillees += salle.getPouls().getNombre();
+            sansReponse += salle.getPouls().getDeconnectes();
+            for (ClientHandler client : salle.getDiffusion().abonnes(Diffusion.SALLE)) {
+                parNiveau[client.getFidelite().getNiveau()]++;
+            }
+        }
+        sb.append("salles_ouvertes ").append(salles.size()).append('\n');
+        sb.append("clients ").append(abonnes[Diffusion.SALLE]).append('\n');
+        for (int sujet = 0; sujet < Diffusion.NOMS_SUJETS.length; sujet++) {
+            sb.append("abonnes{sujet=").append(Diffusion.NOMS_SUJETS[sujet]).append("} ")
+              .append(abonnes[sujet]).append('\n');
+        }
+        sb.append("spectateurs ").append(spectateurs).append('\n');
+        sb.append("joueurs_en_file ").append(enFile).append('\n');
+        sb.append("accueils_en_cours ").append(serveur.getAccueil().getEnCours()).append('\n');
+        sb.append("accueils_refuses ").append(serveur.getAccueil().getRefusees()).append('\n');
+        sb.append("accueils_expires ").append(serveur.getAccueil().getExpirees()).append('\n');
+        sb.append("connexions_surveillees ").append(surveillees).append('\n');
+        sb.append("deconnexions_sans_reponse ").append(sansReponse).append('\n');
+        sb.append("file_attente_totale ").append(getFileAttenteTotale()).append('\n');
+        sb.append("file_attente_max ").append(getFileAttenteMax()).append('\n');
+        CanalDatagrammes datagrammes = serveur.getDatagrammes();
+        if (datagrammes != null) {
+            sb.append("canaux_udp ").append(datagrammes.getNombre()).append('\n');
+            sb.append("datagrammes_envoyes ").append(datagrammes.getEnvoyes()).append('\n');
+            sb.append("datagrammes_jetes ").append(datagrammes.getJetes()).append('\n');
+            sb.append("renvois_udp ").append(datagrammes.getRenvois()).append('\n');
+        }
+        ReserveTampons reserve = ReserveTampons.commune();
+        sb.append("tampons_en_cours ").append(reserve.getEnCours()).append('\n');
+        sb.append("tampons_empruntes ").append(reserve.getEmprunts()).append('\n');
+        sb.append("tampons_hors_classe ").append(reserve.getHorsClasse()).append('\n');
+        sb.append("tampons_octets_reserves ").append(reserve.getOctetsReserves()).append('\n');
+        sb.append("tampons_fuites ").append(reserve.getFuites()).append('\n');
+        sb.append("fidelite{niveau=plein} ").append(parNiveau[Fidelite.PLEIN]).append('\n');
+        sb.append("fidelite{niveau=decime} ").append(parNiveau[Fidelite.DECIME]).append('\n');
+        sb.append("fidelite{niveau=instantane} ").append(parNiveau[Fidelite.INSTANTANE]).append('\n');
+        sb.append("changements_fidelite ").append(changementsFidelite.sum()).append('\n');
+        sb.append("traits_fusionnes ").append(traitsFusionnes.sum()).append('\n');
+        verifierMot.rapport(sb, "verifier_mot");
+        broadcast.rapport(sb, "broadcast");
+        changementManche.rapport(sb, "changement_manche");
+        rtt.rapport(sb, "rtt");
+        return sb.toString();
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    private static void compter(Map<String, LongAdder> compteurs, String message) {
+        compteurs.computeIfAbsent(typeDe(message), t -> new LongAdder()).increment();
+    }
+
+    /**
+     * Extrait le type d'un message : le préfixe en majuscules avant ':'
+     * Un préfixe inconnu du protocole (un client peut en envoyer autant qu'il
+     * veut, un nom de joueur en produire) tombe dans AUTRE : le nombre de
+     * compteurs reste borné
+     */
+    private static String typeDe(String message) {
+        int fin = Math.min(message.length(), LONGUEUR_TYPE_MAX);
+        for (int i = 0; i < fin; i++) {
+            char c = message.charAt(i);
+            if (c == ':') {
+                if (i == 0) return TYPE_TEXTE;
+                String type = message.substring(0, i);
+                return TYPES.contains(type) ? type : TYPE_AUTRE;
+            }
+            if ((c < 'A' || c > 'Z') && c != '_') return TYPE_TEXTE;
+        }
+        return TYPE_TEXTE;
+    }
+
+    private static long total(Map<String, LongAdder> compteurs) {
+        long total = 0;
+        for (LongAdder compteur : compteurs.values()) {
+            total += compteur.sum();
+        }
+        return total;
+    }
+
+    //==========================================================================
+    // Histogramme
+    //==========================================================================
+    /**
+     * Histogramme de durées à seaux logarithmiques : chaque puissance de deux
+     * est découpée en 16 sous-seaux, soit une précision d'environ 6 %
+     * Sans verrou : un incrément atomique par mesure
+     */
+    public static class Histogramme {
+        private static final int BITS_SOUS_SEAUX = 4;
+        private static final int NB_SOUS_SEAUX = 1 << BITS_SOUS_SEAUX;
+        private static final int NB_SEAUX = (64 - BITS_SOUS_SEAUX + 1) * NB_SOUS_SEAUX;
+        private final AtomicLongArray seaux = new AtomicLongArray(NB_SEAUX);
+        private final LongAdder somme = new LongAdder();
+
+        /**
+         * Enregistre une durée mesurée depuis un instant donné
+         * @param debutNanos Valeur de System.nanoTime() au début
+         */
+        public void depuis(long debutNanos) {
+            enregistrer(System.nanoTime() - debutNanos);
+        }
+
+        /**
+         * Enregistre une durée
+         * @param nanos Durée en nanosecondes
+         */
+        public void enregistrer(long nanos) {
+            long valeur = Math.max(0, nanos);
+            seaux.incrementAndGet(index(valeur));
+            somme.add(valeur);
+        }
+
+        /**
+         * Retourne la borne haute du seau contenant le centile demandé
+         * @param fraction Centile entre 0 et 1
+         * @return Durée en nanosecondes (0 si aucune mesure)
+         */
+        public long centile(double fraction) {
+            long[] copie = new long[NB_SEAUX];
+            long total = 0;
+            for (int i = 0; i < NB_SEAUX; i++) {
+                copie[i] = seaux.get(i);
+                total += copie[i];
+            }
+            if (total == 0) return 0;
+            long cible = (long) Math.ceil(total * fraction);
+            long cumul = 0;
+            for (int i = 0; i < NB_SEAUX; i++) {
+                cumul += copie[i];
+                if (cumul >= cible) return borneHaute(i);
+            }
+            return Long.MAX_VALUE;
+        }
+
+        private static int index(long valeur) {
+            if (valeur < NB_SOUS_SEAUX) return (int) valeur;
+            int exposant = 63 - Long.numberOfLeadingZeros(valeur);
+            int sousSeau = (int) (valeur >>> (exposant - BITS_SOUS_SEAUX)) & (NB_SOUS_SEAUX - 1);
+            return ((exposant - BITS_SOUS_SEAUX + 1) << BITS_SOUS_SEAUX) + sousSeau;
+        }
+
+        private static long borneHaute(int index) {
+            if (index < NB_SOUS_SEAUX) return index;
+            int exposant = (index >> BITS_SOUS_SEAUX) + BITS_SOUS_SEAUX - 1;
+            int sousSeau = index & (NB_SOUS_SEAUX - 1);
+            if (exposant == 63) return Long.MAX_VALUE;
+            return ((long) (NB_SOUS_SEAUX + sousSeau + 1) << (exposant - BITS_SOUS_SEAUX)) - 1;
+        }
+
+        /**
+         * Nombre de mesures enregistrées
+         */
+        public long nombre() {
+            long total = 0;
+            for (int i = 0; i < NB_SEAUX; i++) {
+                total += seaux.get(i);
+            }
+            return total;
+        }
+
+        private void rapport(StringBuilder sb, String nom) {
+            long n = nombre();
+            sb.append(nom).append("_nombre ").append(n).append('\n');
+            sb.append(nom).append("_moyenne_us ").append(n == 0 ? 0 : somme.sum() / n / 1000).append('\n');
+            sb.append(nom).append("_p50_us ").append(centile(0.50) / 1000).append('\n');
+            sb.append(nom).append("_p99_us ").append(centile(0.99) / 1000).append('\n');
+            sb.append(nom).append("_p999_us ").append(centile(0.999) / 1000).append('\n');
+        }
+    }
+}
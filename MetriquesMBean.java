@@ -0,0 +1,32 @@
+/******************************************************************************
+ * MetriquesMBean.java
+ * Interface JMX des métriques du serveur
+ *
+ * Attributs visibles dans JConsole / VisualVM sous "ProjectX:type=Metriques"
+ *****************************************************************************/
+
+public interface MetriquesMBean {
+    /** @return Le rapport complet en texte brut */
+    String getRapport();
+
+    /** @return Nombre total de messages reçus des clients */
+    long getMessagesRecus();
+
+    /** @return Nombre total de messages mis en file vers les clients */
+    long getMessagesEnvoyes();
+
+    /** @return Nombre total d'octets écrits sur les sockets clients */
+    long getOctetsEnvoyes();
+
+    /** @return Somme des files d'envoi de tous les clients */
+    long getFileAttenteTotale();
+
+    /** @return Plus longue file d'envoi parmi les clients */
+    long getFileAttenteMax();
+
+    /** @return 99e centile de la durée de verifierMot, en microsecondes */
+    long getVerifierMotP99Micros();
+
+    /** @return 99e centile de la durée d'un broadcast, en microsecondes */
+    long getBroadcastP99Micros();
+}
@@ -9,17 +9,20 @@
  * - La gestion des joueurs
  *****************************************************************************/
 
-import java.text.Normalizer;
 import java.util.*;
-import java.util.regex.Pattern;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 public class Partie {
     //==========================================================================
     // Constantes
     //==========================================================================
+    public static final String FIN_PARTIE = "FIN_PARTIE:";   // Diffusé quand une partie se termine ou est abandonnée
     private static final int DUREE_MANCHE = 60;     // Durée d'une manche en secondes
     private static final int NB_MOTS_CHOIX = 2;     // Nombre de mots proposés au dessinateur
+    private static final int SEUIL_PRESQUE = 1;     // Distance d'édition pour "C'est presque ça"
+    private static final int SEUIL_PROCHE = 2;      // Distance d'édition pour "Tu chauffes"
+    private static final int LONGUEUR_MIN_PROCHE = 6; // Longueur minimale du mot pour l'indice "Tu chauffes"
 
     //==========================================================================
     // Variables membres
@@ -30,10 +33,16 @@ public class Partie {
     private final Object lockPartie = new Object();                       // Verrou de synchronisation
     private final Set<String> motsUtilises = new HashSet<>();                // Mots déjà utilisés
     private final List<Joueur> devineursQuiOntTrouve = new ArrayList<>();     // Ordre des joueurs ayant trouvé
+    private final Classement classement = new Classement();                  // Classement trié des joueurs
+    private final Map<String, Integer> pointsManche = new LinkedHashMap<>();  // Points gagnés dans la manche
+    private final HistoriqueTraits historique = new HistoriqueTraits();       // Traits de la manche (annuler / refaire)
+    private final CanevasTuiles canevas = new CanevasTuiles();                // Image des traits pour les arrivants
 
     private int tourActuel = 0;                                // Tour de jeu actuel
     private Joueur dessinateur;                           // Joueur dessinateur actuel
     private Mots motCourant;                              // Mot à deviner actuel
+    private ComparateurFlou comparateur;                  // Mot courant précompilé (null : aucun mot en jeu)
+    private boolean mancheEnCours = false;                // Manche lancée et pas encore terminée (protégé par lockPartie)
     private volatile boolean partieEnCours = false;               // État de la partie
     private Timer currentTimer;  // Remplacer timerManche par currentTimer
     private int tempsRestant;                             // Temps restant
@@ -57,7 +66,7 @@ public class Partie {
 
     /**
      * Démarre une nouvelle partie
-     * @param clients Liste des clients connectés
+     * @param clients Liste des clients connectés (déjà inscrits à la diffusion)
      */
     public void demarrerPartie(List<ClientHandler> clients) {
         System.out.println("DemarrerPartie: Démarrage de la partie");
@@ -66,25 +75,34 @@ public class Partie {
                 partieEnCours = true;
                 tourActuel = 0;
 
+                EnregistreurPartie enregistreur = serveur.getEnregistreur();
+                if (enregistreur != null) enregistreur.commencer();
+
                 // Nettoyer l'interface pour tous les clients
+                historique.effacer();
                 serveur.broadcast("CLEAR:", null);
 
                 // Démarrer la première manche
-                lancerManche(clients);
+                lancerManche();
             }
         }
     }
 
     /**
      * Lance une nouvelle manche
-     * @param clients Liste des clients actifs
+     * Les rôles sont publiés par sujet : seuls l'ancien et le nouveau
+     * dessinateur changent d'abonnement
      */
-    private void lancerManche(List<ClientHandler> clients) {
+    private void lancerManche() {
+        long debut = System.nanoTime();
         synchronized (lockPartie) {
             if (!partieEnCours) return;
 
             dessinateur = joueurs.get(tourActuel % joueurs.size());
             tempsRestant = DUREE_MANCHE;
+            motCourant = null;
+            comparateur = null;   // Aucun mot tant que le dessinateur n'a pas choisi
+            mancheEnCours = true;
             System.out.println("Nouveau dessinateur : " + dessinateur.getNom()); // Log pour le débogage
 
             serveur.broadcast("NOUVEAU_DESSINATEUR:" + dessinateur.getNom(), null);
@@ -94,10 +112,8 @@ public class Partie {
                 .map(Mots::getMot)
                 .collect(Collectors.joining(", "))); // Log pour le débogage
 
-            ClientHandler dessinateurHandler = clients.stream()
-                .filter(c -> c.getJoueur().equals(dessinateur))
-                .findFirst()
-                .orElse(null);
+            Diffusion diffusion = serveur.getDiffusion();
+            ClientHandler dessinateurHandler = diffusion.nouvelleManche(dessinateur);
 
             if (dessinateurHandler != null) {
                 String motsMessage = "CHOIX_MOTS:" + choixMots.stream()
@@ -105,35 +121,52 @@ public class Partie {
                     .collect(Collectors.joining(","));
                 System.out.println("Envoi des mots au dessinateur : " + motsMessage); // Log pour le débogage
 
-                for (ClientHandler client : clients) {
-                    if (client.getJoueur().equals(dessinateur)) {
-                        client.envoyerMessageAsync("ROLE:dessinateur");
-                    } else {
-                        client.envoyerMessageAsync("ROLE:devineur");
-                    }
-                }
+                diffusion.publier(Diffusion.DESSINATEUR, "ROLE:dessinateur", null);
+                diffusion.publier(Diffusion.DEVINEURS, "ROLE:devineur", null);
                 dessinateurHandler.envoyerMessageAsync(motsMessage);
             } else {
                 System.err.println("Dessinateur non trouvé dans la liste des clients"); // Log pour le débogage
             }
             devineursQuiOntTrouve.clear();
+            pointsManche.clear();
+            historique.effacer();
         }
+        serveur.getMetriques().getChangementManche().depuis(debut);
     }
 
     /**
      * Termine la manche en cours et prépare la suivante
+     * Sans effet si elle est déjà terminée (fin du temps et départ du
+     * dessinateur en même temps). Une manche dont le dessinateur est parti
+     * avant de choisir son mot n'est pas enregistrée
      */
     public void terminerManche() {
+        boolean finDePartie = false;
         // Arrêter le timer immédiatement
         if (currentTimer != null) {
             currentTimer.stopTimer();
         }
-        // Arrêter aussi le timer du serveur
-        serveur.getCurrentTimer().stopTimer();
+        // Arrêter aussi le timer du serveur (aucun si aucun mot n'a été choisi)
+        if (serveur.getCurrentTimer() != null) {
+            serveur.getCurrentTimer().stopTimer();
+        }
+
+        // Plus aucune proposition n'est comparée au mot qui va être révélé
+        Mots mot;
+        synchronized (lockPartie) {
+            if (!mancheEnCours) return;
+            mancheEnCours = false;
+            comparateur = null;
+            mot = motCourant;
+        }
 
         // Pause pour laisser le temps de voir le résultat
-        serveur.broadcast("FIN_MANCHE:Le mot était : " + motCourant.getMot(), null);
-        afficherPodium();
+        if (mot != null) {
+            serveur.broadcast("FIN_MANCHE:Le mot était : " + mot.getMot(), null);
+            enregistrerManche();
+        } else {
+            serveur.broadcast("FIN_MANCHE:Le dessinateur est parti sans choisir de mot", null);
+        }
 
         try {
             Thread.sleep(3000);
@@ -151,12 +184,19 @@ public class Partie {
                 if (serveur.getCurrentTimer() != null) {
                     serveur.getCurrentTimer().stopTimer();
                 }
-                lancerManche(serveur.getClients());
-            } else {
+                lancerManche();
+            } else if (partieEnCours) {   // Dernière manche (une partie abandonnée a déjà été annoncée)
+                finDePartie = true;
                 afficherPodium();
+                enregistrerPartie();
                 partieEnCours = false;
+                serveur.broadcast(FIN_PARTIE, null);
+                terminerEnregistrement();
             }
         }
+        if (finDePartie) {
+            serveur.getAppariement().finDePartie();   // Hors du verrou : la partie suivante peut démarrer
+        }
     }
 
     //==========================================================================
@@ -186,30 +226,36 @@ public class Partie {
      * @return true si le mot est correct
      */
     public boolean verifierMot(Joueur joueur, String proposition) {
+        long debut = System.nanoTime();
+        boolean trouve = false;
+        boolean mancheFinie = false;
         synchronized(lockPartie) {
-            String motNormalise = enleverAccents(motCourant.getMot()).toLowerCase();
-            String propositionNormalisee = enleverAccents(proposition).toLowerCase();
+            if (comparateur == null) return false;   // Aucun mot choisi pour l'instant
+            String propositionNormalisee = ComparateurFlou.normaliser(proposition);
+            int distance = comparateur.distance(propositionNormalisee);
 
-            if (motNormalise.equals(propositionNormalisee) && !joueur.equals(dessinateur)) {
+            if (distance == 0 && !joueur.equals(dessinateur)) {
                 // Calcul des points en fonction de l'ordre
                 int ordre = devineursQuiOntTrouve.size() + 1;
                 int points = calculerPoints(tempsRestant, ordre);
-                joueur.ajouterPoints(points);
+                int rang = classement.ajouterPoints(joueur, points);
                 // Le dessinateur ne gagne pas de points
                 serveur.broadcast(joueur.getNom() + " a trouvé le mot en " + ordre + "e position et gagne " + points + " points!", null);
+                // Seul le score modifié est diffusé, le podium complet est envoyé en fin de partie
+                serveur.broadcast("SCORE:" + rang + ":" + joueur.getPoints() + ":" + joueur.getNom(), null);
                 devineursQuiOntTrouve.add(joueur);
+                pointsManche.put(joueur.getNom(), points);
 
                 // Envoi de messages spécifiques
-                ClientHandler handlerJoueur = serveur.getClientHandler(joueur);
-                ClientHandler handlerDessinateur = serveur.getClientHandler(dessinateur);
+                Diffusion diffusion = serveur.getDiffusion();
+                ClientHandler handlerJoueur = diffusion.connexion(joueur);
+                diffusion.aTrouve(handlerJoueur);
 
                 if (handlerJoueur != null) {
                     handlerJoueur.envoyerMessageAsync("GUESS_CORRECT:Vous avez trouvé le mot '" + motCourant.getMot() + "'!");
                 }
 
-                if (handlerDessinateur != null) {
-                    handlerDessinateur.envoyerMessageAsync("GUESS_CORRECT:" + joueur.getNom() + " a trouvé le mot '" + motCourant.getMot() + "'!");
-                }
+                diffusion.publier(Diffusion.DESSINATEUR, "GUESS_CORRECT:" + joueur.getNom() + " a trouvé le mot '" + motCourant.getMot() + "'!", null);
 
                 serveur.broadcast("NOTIFICATION:" + joueur.getNom() + " a trouvé le mot!", handlerJoueur);
 
@@ -221,80 +267,48 @@ public class Partie {
                     if (serveur.getCurrentTimer() != null) {
                         serveur.getCurrentTimer().stopTimer();
                     }
-                    terminerManche();
+                    mancheFinie = true;
                 }
-                return true;
-            } else if (!joueur.equals(dessinateur) && estPresqueLeMot(motNormalise, propositionNormalisee)) {
-                // Envoyer un message uniquement au joueur qui a presque trouvé
-                ClientHandler handlerJoueur = serveur.getClientHandler(joueur);
-                if (handlerJoueur != null) {
-                    handlerJoueur.envoyerMessageAsync("CHAT:[Indice] C'est presque ça !");
+                trouve = true;
+            } else if (!joueur.equals(dessinateur)) {
+                String indice = indiceProximite(distance);
+                if (indice != null) {
+                    // Envoyer un message uniquement au joueur qui a presque trouvé
+                    ClientHandler handlerJoueur = serveur.getDiffusion().connexion(joueur);
+                    if (handlerJoueur != null) {
+                        handlerJoueur.envoyerMessageAsync("CHAT:[Indice] " + indice);
+                    }
                 }
-                return false;
             }
-            return false;
         }
+        serveur.getMetriques().getVerifierMot().depuis(debut);
+
+        // La fin de manche (et sa pause de 3 s) se fait hors du verrou et hors de la mesure
+        if (mancheFinie) {
+            terminerManche();
+        }
+        return trouve;
     }
 
     /**
-     * Compare deux mots pour voir s'ils sont proches
-     * @param mot1 Premier mot
-     * @param mot2 Second mot
-     * @return true si les mots sont presque identiques
+     * Choisit l'indice à envoyer selon la distance au mot courant
+     * @param distance Distance d'édition entre la proposition et le mot
+     * @return Le texte de l'indice ou null si la proposition est trop éloignée
      */
-    private boolean estPresqueLeMot(String mot1, String mot2) {
-        // Si la différence de longueur est supérieure à 1, ce n'est pas "presque" le même mot
-        if (Math.abs(mot1.length() - mot2.length()) > 1) {
-            return false;
+    private String indiceProximite(int distance) {
+        if (distance <= SEUIL_PRESQUE) {
+            return "C'est presque ça !";
         }
-
-        // Si les mots ont la même longueur, on compte les différences
-        if (mot1.length() == mot2.length()) {
-            int differences = 0;
-            for (int i = 0; i < mot1.length(); i++) {
-                if (mot1.charAt(i) != mot2.charAt(i)) {
-                    differences++;
-                }
-            }
-            return differences == 1;
+        if (distance <= SEUIL_PROCHE && comparateur.getCible().length() >= LONGUEUR_MIN_PROCHE) {
+            return "Tu chauffes !";
         }
-
-        // Si la longueur diffère de 1, on vérifie si on peut obtenir l'un à partir de l'autre
-        String plusLong = mot1.length() > mot2.length() ? mot1 : mot2;
-        String plusCourt = mot1.length() > mot2.length() ? mot2 : mot1;
-
-        int indexLong = 0, indexCourt = 0;
-        boolean differenceTrouvee = false;
-
-        while (indexLong < plusLong.length() && indexCourt < plusCourt.length()) {
-            if (plusLong.charAt(indexLong) != plusCourt.charAt(indexCourt)) {
-                if (differenceTrouvee) {
-                    return false;
-                }
-                differenceTrouvee = true;
-                indexLong++;
-                continue;
-            }
-            indexLong++;
-            indexCourt++;
-        }
-
-        return true;
+        return null;
     }
 
     //==========================================================================
     // Méthodes utilitaires
     //==========================================================================
 
-    /**
-     * Supprime les accents d'une chaîne
-     */
-    private String enleverAccents(String texte) {
-        String normalisé = Normalizer.normalize(texte, Normalizer.Form.NFD);
-        Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-        return pattern.matcher(normalisé).replaceAll("");
-    }
-
     /**
      * Calcule les points en fonction du temps et de l'ordre
      */
@@ -305,6 +319,46 @@ public class Partie {
         return basePoints + (tempsRestant / 2) + bonus;
     }
 
+    /**
+     * Transmet le résultat de la manche au journal (écriture en arrière-plan)
+     * et au classement général
+     */
+    private void enregistrerManche() {
+        JournalResultats journal = serveur.getJournal();
+        synchronized (lockPartie) {
+            if (journal != null) {
+                journal.enregistrerManche(serveur.getNomSalle(), motCourant.getMot(), dessinateur.getNom(), pointsManche);
+            }
+            for (Map.Entry<String, Integer> entree : pointsManche.entrySet()) {
+                serveur.getClassementGeneral().ajouterPoints(entree.getKey(), entree.getValue());
+            }
+        }
+    }
+
+    /**
+     * Transmet les scores finaux de la partie au journal (écriture en arrière-plan)
+     */
+    private void enregistrerPartie() {
+        JournalResultats journal = serveur.getJournal();
+        if (journal != null) {
+            Map<String, Integer> scores = new LinkedHashMap<>();
+            synchronized (joueurs) {
+                for (Joueur j : joueurs) {
+                    scores.put(j.getNom(), j.getPoints());
+                }
+            }
+            journal.enregistrerPartie(serveur.getNomSalle(), scores);
+        }
+    }
+
+    /**
+     * Ferme l'enregistrement de la partie, si le serveur en tient un
+     */
+    private void terminerEnregistrement() {
+        EnregistreurPartie enregistreur = serveur.getEnregistreur();
+        if (enregistreur != null) enregistreur.terminer();
+    }
+
     /**
      * Démarre le timer de la manche en cours
      * Cette méthode est appelée lorsqu'un mot est choisi
@@ -317,23 +371,44 @@ public class Partie {
      * Affiche le classement des joueurs
      */
     private void afficherPodium() {
-        List<Joueur> podium = new ArrayList<>(joueurs);
-        podium.sort((j1, j2) -> j2.getPoints() - j1.getPoints());
-
-        StringBuilder classement = new StringBuilder("PODIUM:\n");
-        for (int i = 0; i < podium.size(); i++) {
-            Joueur j = podium.get(i);
-            classement.append((i + 1)).append(". ")
-                     .append(j.getNom()).append(" - ")
-                     .append(j.getPoints()).append(" points\n");
-        }
-        serveur.broadcast(classement.toString(), null);
+        serveur.broadcast(classement.podium(), null);
+    }
+
+    /**
+     * Envoie le classement complet à un seul client qui l'a demandé
+     * @param client Le client demandeur
+     */
+    public void envoyerPodium(ClientHandler client) {
+        client.envoyerMessageAsync(classement.podium());
+    }
+
+    /**
+     * Envoie à un client l'image du dessin en cours (message CANEVAS)
+     * L'image est construite au moment de l'envoi : les traits suivants arrivent après elle
+     * @param client Le client qui arrive ou qui a perdu le fil du dessin
+     */
+    public void envoyerCanevas(ClientHandler client) {
+        client.envoyerCalcule(() -> canevas.instantane(historique.copie()));
     }
 
     //==========================================================================
     // Getters & Setters
     //==========================================================================
 
+    /**
+     * Retourne l'historique des traits de la manche en cours
+     */
+    public HistoriqueTraits getHistorique() {
+        return historique;
+    }
+
+    /**
+     * Retourne l'image des traits de la manche en cours
+     */
+    public CanevasTuiles getCanevas() {
+        return canevas;
+    }
+
     /**
      * Définit le mot choisi par le dessinateur
      */
@@ -342,6 +417,7 @@ public class Partie {
             for (Mots mot : gestionnaireDeMot.getMotsDisponibles()) {
                 if (mot.getMot().equalsIgnoreCase(motChoisi)) {
                     motCourant = mot;
+                    comparateur = new ComparateurFlou(mot.getMot(), SEUIL_PROCHE);
                     motsUtilises.add(motChoisi); // Ajouter le mot aux mots utilisés
                     // Démarrer le timer de la manche
                     demarrerTimer();
@@ -356,16 +432,77 @@ public class Partie {
      * Modifie l'état de la partie
      */
     public void setPartieEnCours(boolean partieEnCours) {
+        boolean abandon = this.partieEnCours && !partieEnCours;
         this.partieEnCours = partieEnCours;
+        if (abandon) {
+            serveur.broadcast(FIN_PARTIE, null);
+        }
         if (!partieEnCours && serveur.getCurrentTimer() != null) {
             serveur.getCurrentTimer().stopTimer();  // S'assurer que le timer est arrêté quand la partie se termine
         }
+        if (!partieEnCours) {
+            terminerEnregistrement();
+        }
     }
 
     /**
-     * Ajoute un joueur à la partie
+     * Ajoute un joueur à la partie (sans effet s'il y est déjà)
      */
     public void ajouterJoueur(Joueur joueur) {
-        joueurs.add(joueur);
+        synchronized (joueurs) {
+            if (joueurs.contains(joueur)) return;
+            joueurs.add(joueur);
+        }
+        classement.ajouterJoueur(joueur);
+    }
+
+    /**
+     * Retire un joueur parti : il quitte le classement, ne dessinera plus et
+     * la manche n'attend plus qu'il trouve le mot. S'il dessinait, ou s'il
+     * était le dernier à chercher, la manche se termine (sur un autre thread,
+     * à cause de sa pause)
+     * @param joueur Le joueur parti
+     */
+    public void retirerJoueur(Joueur joueur) {
+        boolean mancheFinie = false;
+        synchronized (lockPartie) {
+            if (!joueurs.remove(joueur)) return;
+            classement.retirerJoueur(joueur);
+            devineursQuiOntTrouve.remove(joueur);
+            boolean dessinait = joueur.equals(dessinateur);
+            if (partieEnCours && mancheEnCours && dessinait) {
+                if (serveur.getCurrentTimer() != null) {
+                    serveur.getCurrentTimer().stopTimer();
+                }
+                mancheFinie = true;
+            } else if (partieEnCours && comparateur != null && !dessinait
+                    && !devineursQuiOntTrouve.isEmpty()
+                    && devineursQuiOntTrouve.size() >= joueurs.size() - 1) {
+                if (serveur.getCurrentTimer() != null) {
+                    serveur.getCurrentTimer().stopTimer();
+                }
+                mancheFinie = true;
+            }
+        }
+        if (mancheFinie) {
+            CompletableFuture.runAsync(this::terminerManche);
+        }
+    }
+
+    /**
+     * Remet les joueurs et leurs scores à zéro avant une nouvelle partie
+     * Les joueurs partis depuis la partie précédente sont oubliés
+     * @param clients Clients des joueurs assis
+     */
+    public void preparerJoueurs(List<ClientHandler> clients) {
+        synchronized (lockPartie) {
+            if (partieEnCours) return;
+            joueurs.clear();
+            classement.vider();
+            for (ClientHandler client : clients) {
+                client.getJoueur().reinitialiserPoints();
+                ajouterJoueur(client.getJoueur());
+            }
+        }
     }
 }
\ No newline at end of file
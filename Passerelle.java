@@ -0,0 +1,675 @@
+/******************************************************************************
+ * Passerelle.java
+ * Point d'entrée unique devant plusieurs processus Serveur
+ *
+ * Cette passerelle :
+ * - Accepte les connexions des clients à la place du serveur, avec les
+ *   mêmes limites d'accueil (Accueil : échéance, longueur, par adresse)
+ * - Attribue chaque salle à un serveur par hachage cohérent (anneau de
+ *   nœuds virtuels) : ajouter ou retirer un serveur ne déplace qu'une
+ *   petite part des salles
+ * - Relaie les messages ligne par ligne dans les deux sens, par blocs de
+ *   lignes complètes, sans les décoder ; une ligne de client plus longue
+ *   que LecteurLignes.LONGUEUR_MAX ferme sa session
+ * - Surveille les serveurs et déplace les salles quand un serveur est
+ *   ajouté ou retiré (à la fin de leur partie) ou perdu (immédiatement)
+ * - Suit l'état de la partie de chaque salle dans les messages relayés
+ *   (NOUVEAU_DESSINATEUR, FIN_PARTIE), sans les décoder
+ *
+ * Un client choisit sa salle en envoyant "SALLE:<nom>" avant son nom ; sans
+ * cette ligne il rejoint la salle principale. La passerelle transmet cette
+ * ligne au serveur choisi, qui joue une partie par salle hébergée. Une salle
+ * n'est déplacée en pleine partie que si son serveur est perdu ; sinon elle
+ * attend la fin de sa partie. Elle recommence sur son nouveau serveur, les
+ * clients restant connectés à la passerelle.
+ *
+ * Usage : java Passerelle [port] hôte:port [hôte:port...]
+ * Commandes sur l'entrée standard : ajouter hôte:port, retirer hôte:port, etat
+ *****************************************************************************/
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class Passerelle {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final String PREFIXE_SALLE = "SALLE:";  // Première ligne facultative d'un client
+    private static final String SALLE_DEFAUT = "principale"; // Salle des clients qui n'en demandent pas
+    private static final int PORT = 12340;                // Port d'écoute par défaut
+    private static final int NB_NOEUDS_VIRTUELS = 64;     // Points de chaque serveur sur l'anneau
+    private static final int PERIODE_SURVEILLANCE_S = 2;  // Intervalle entre deux vérifications des serveurs
+    private static final int DELAI_CONNEXION_MS = 1000;   // Délai de connexion à un serveur
+    private static final int BUFFER_SIZE = 8192;          // Taille du buffer réseau
+
+    private static final int ACTIF = 0;                   // Serveur sur l'anneau
+    private static final int VIDANGE = 1;                 // Serveur retiré : garde ses salles jusqu'à leur déplacement
+    private static final int PERDU = 2;                   // Serveur injoignable : ses salles partent tout de suite
+
+    private static final byte[] DEBUT_PARTIE = "NOUVEAU_DESSINATEUR:".getBytes(StandardCharsets.US_ASCII); // Manche lancée : partie en cours
+    private static final byte[] FIN_PARTIE = Partie.FIN_PARTIE.getBytes(StandardCharsets.US_ASCII);       // Partie terminée ou abandonnée
+
+    //==========================================================================
+    // Serveur, salle et session
+    //==========================================================================
+    /**
+     * Un processus Serveur derrière la passerelle
+     */
+    private static class Noeud {
+        final String hote;
+        final int port;
+        int etat = ACTIF;
+
+        Noeud(String hote, int port) {
+            this.hote = hote;
+            this.port = port;
+        }
+
+        @Override
+        public String toString() {
+            return hote + ":" + port;
+        }
+    }
+
+    /**
+     * Une salle et les sessions qui y jouent
+     */
+    private static class Salle {
+        final String nom;
+        final Set<Session> sessions = new HashSet<>();
+        Noeud noeud;                                      // Serveur qui héberge la salle
+        volatile boolean enJeu = false;                   // Partie en cours sur son serveur
+        boolean annonce = false;                          // Déplacement en attente de la fin de la partie
+
+        Salle(String nom, Noeud noeud) {
+            this.nom = nom;
+            this.noeud = noeud;
+        }
+    }
+
+    /**
+     * Un client relayé vers le serveur de sa salle
+     */
+    private class Session {
+        final Socket client;
+        final InputStream depuisClient;
+        final OutputStream versClient;
+        final byte[] poignee;                             // Lignes de la salle et du nom, rejouées à chaque serveur
+        Salle salle;
+        private Socket serveur;                           // Connexion au serveur actuel (protégée par this)
+        private OutputStream versServeur;
+        volatile boolean fermee = false;
+
+        Session(Socket client, InputStream depuisClient, byte[] poignee) throws IOException {
+            this.client = client;
+            this.depuisClient = depuisClient;
+            this.versClient = client.getOutputStream();
+            this.poignee = poignee;
+        }
+
+        /**
+         * Se connecte à un serveur, lui envoie le nom du client puis relaie ses messages
+         */
+        void attacher(Noeud noeud) throws IOException {
+            Socket socket = connecter(noeud);
+            socket.getOutputStream().write(poignee);
+            synchronized (this) {
+                if (fermee) {
+                    fermerSocket(socket);   // Client parti pendant la connexion
+                    return;
+                }
+                serveur = socket;
+                versServeur = socket.getOutputStream();
+            }
+            relais.execute(() -> relayerServeur(socket, noeud));
+        }
+
+        /**
+         * Quitte le serveur actuel pour un autre
+         */
+        void deplacer(Noeud noeud) {
+            Socket ancien;
+            synchronized (this) {
+                ancien = serveur;
+                serveur = null;
+                versServeur = null;
+            }
+            fermerSocket(ancien);
+            try {
+                attacher(noeud);
+            } catch (IOException e) {
+                System.err.println("Déplacement impossible vers " + noeud + ": " + e.getMessage());
+                fermer();
+            }
+        }
+
+        /**
+         * Relaie les messages du serveur au client jusqu'à la fin de la connexion
+         */
+        private void relayerServeur(Socket socket, Noeud noeud) {
+            try {
+                copierLignes(socket.getInputStream(), Integer.MAX_VALUE, (octets, longueur) -> {
+                    suivrePartie(octets, longueur);
+                    synchronized (versClient) {
+                        versClient.write(octets, 0, longueur);
+                    }
+                });
+            } catch (IOException e) {
+                // Fin de connexion, traitée ci-dessous
+            }
+            synchronized (this) {
+                if (fermee || socket != serveur) return;   // Session fermée ou déplacée entre-temps
+            }
+            serveurFerme(this, noeud);
+        }
+
+        /**
+         * Note le début et la fin de la partie de la salle parmi les lignes
+         * relayées ; à la fin, un déplacement en attente part aussitôt
+         */
+        private void suivrePartie(byte[] octets, int longueur) {
+            int debut = 0;
+            for (int i = 0; i < longueur; i++) {
+                if (octets[i] != '\n') continue;
+                if (commencePar(octets, debut, i, DEBUT_PARTIE)) {
+                    salle.enJeu = true;
+                } else if (commencePar(octets, debut, i, FIN_PARTIE) && salle.enJeu) {
+                    salle.enJeu = false;
+                    surveillance.execute(Passerelle.this::reequilibrer);
+                }
+                debut = i + 1;
+            }
+        }
+
+        /**
+         * Relaie les messages du client au serveur actuel (thread de la session)
+         * Pendant un déplacement, les lignes du client sont perdues
+         */
+        void relayerClient() {
+            try {
+                copierLignes(depuisClient, LecteurLignes.LONGUEUR_MAX, (octets, longueur) -> {
+                    synchronized (this) {
+                        if (versServeur == null) return;
+                        try {
+                            versServeur.write(octets, 0, longueur);
+                        } catch (IOException e) {
+                            // Serveur perdu : relayerServeur s'en occupe
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                // Client déconnecté, ou ligne trop longue
+            }
+            fermer();
+        }
+
+        void fermer() {
+            Socket ancien;
+            synchronized (this) {
+                if (fermee) return;
+                fermee = true;
+                ancien = serveur;
+                serveur = null;
+                versServeur = null;
+            }
+            fermerSocket(ancien);
+            fermerSocket(client);
+            quitterSalle(this);
+        }
+    }
+
+    /**
+     * Reçoit un bloc de lignes complètes
+     */
+    private interface Destination {
+        void ecrire(byte[] octets, int longueur) throws IOException;
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final List<Noeud> noeuds = new ArrayList<>();                  // Serveurs connus
+    private final TreeMap<Long, Noeud> anneau = new TreeMap<>();           // Anneau des serveurs actifs
+    private final Map<String, Salle> salles = new HashMap<>();              // Salles ouvertes
+    private final ExecutorService relais = Executors.newCachedThreadPool(); // Threads de relais
+    private final Accueil accueil = new Accueil();                          // Clients qui n'ont pas encore envoyé leur nom
+    private final ScheduledExecutorService surveillance =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "passerelle-surveillance");
+            t.setDaemon(true);
+            return t;
+        });
+
+    //==========================================================================
+    // Méthodes de gestion des serveurs (protégées par this)
+    //==========================================================================
+    /**
+     * Ajoute un serveur à l'anneau, ou y remet un serveur retiré
+     * Les salles dont il devient responsable y sont déplacées après vidange
+     * @param adresse "hôte:port"
+     */
+    public void ajouter(String adresse) {
+        synchronized (this) {
+            Noeud noeud = trouver(adresse);
+            if (noeud == null) {
+                int separateur = adresse.lastIndexOf(':');
+                noeud = new Noeud(adresse.substring(0, separateur), Integer.parseInt(adresse.substring(separateur + 1)));
+                noeuds.add(noeud);
+            }
+            noeud.etat = ACTIF;
+            reconstruireAnneau();
+            System.out.println("Serveur ajouté : " + noeud);
+        }
+        surveillance.execute(this::reequilibrer);
+    }
+
+    /**
+     * Retire un serveur de l'anneau : il ne reçoit plus de nouvelles salles et
+     * les siennes partent dès qu'elles ne sont plus en partie
+     * @param adresse "hôte:port"
+     */
+    public void retirer(String adresse) {
+        synchronized (this) {
+            Noeud noeud = trouver(adresse);
+            if (noeud == null) {
+                System.out.println("Serveur inconnu : " + adresse);
+                return;
+            }
+            noeud.etat = VIDANGE;
+            reconstruireAnneau();
+            System.out.println("Serveur en vidange : " + noeud);
+        }
+        surveillance.execute(this::reequilibrer);
+    }
+
+    private Noeud trouver(String adresse) {
+        for (Noeud noeud : noeuds) {
+            if (noeud.toString().equals(adresse)) return noeud;
+        }
+        return null;
+    }
+
+    private void reconstruireAnneau() {
+        anneau.clear();
+        for (Noeud noeud : noeuds) {
+            if (noeud.etat != ACTIF) continue;
+            for (int i = 0; i < NB_NOEUDS_VIRTUELS; i++) {
+                anneau.put(hacher(noeud + "#" + i), noeud);
+            }
+        }
+    }
+
+    /**
+     * Serveur responsable d'une salle sur l'anneau
+     * @return Le serveur, ou null si aucun n'est actif
+     */
+    private Noeud responsable(String salle) {
+        if (anneau.isEmpty()) return null;
+        Map.Entry<Long, Noeud> entree = anneau.ceilingEntry(hacher(salle));
+        return (entree != null ? entree : anneau.firstEntry()).getValue();
+    }
+
+    /**
+     * Hachage 64 bits (FNV-1a puis mélange final de MurmurHash3)
+     */
+    private static long hacher(String texte) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : texte.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    //==========================================================================
+    // Méthodes de gestion des salles
+    //==========================================================================
+    /**
+     * Place une session dans sa salle
+     * @return Le serveur de la salle, ou null si aucun serveur n'est disponible
+     */
+    private synchronized Noeud entrerSalle(Session session, String nom) {
+        Salle salle = salles.get(nom);
+        if (salle == null) {
+            Noeud noeud = responsable(nom);
+            if (noeud == null) return null;
+            salle = new Salle(nom, noeud);
+            salles.put(nom, salle);
+        }
+        session.salle = salle;
+        salle.sessions.add(session);
+        return salle.noeud;
+    }
+
+    private synchronized void quitterSalle(Session session) {
+        Salle salle = session.salle;
+        if (salle == null) return;
+        salle.sessions.remove(session);
+        if (salle.sessions.isEmpty()) salles.remove(salle.nom);
+    }
+
+    /**
+     * Déplace les salles qui ne sont plus sur leur serveur responsable :
+     * tout de suite si leur serveur est perdu ou si elles ne jouent pas,
+     * sinon à la fin de leur partie (une salle vide est déjà fermée)
+     * Appelée uniquement sur le thread de surveillance
+     */
+    private void reequilibrer() {
+        List<Salle> aDeplacer = new ArrayList<>();
+        List<Noeud> destinations = new ArrayList<>();
+        List<List<Session>> sessions = new ArrayList<>();
+
+        synchronized (this) {
+            for (Salle salle : salles.values()) {
+                Noeud cible = responsable(salle.nom);
+                if (cible == null || cible == salle.noeud) {
+                    salle.annonce = false;
+                } else if (salle.noeud.etat == PERDU || !salle.enJeu) {
+                    aDeplacer.add(salle);
+                    destinations.add(cible);
+                    sessions.add(new ArrayList<>(salle.sessions));
+                    salle.noeud = cible;
+                    salle.enJeu = false;                  // Le nouveau serveur commence sans partie
+                    salle.annonce = false;
+                } else if (!salle.annonce) {
+                    salle.annonce = true;
+                    System.out.println("Salle " + salle.nom + " : déplacement vers " + cible
+                        + " à la fin de sa partie");
+                }
+            }
+            // Un serveur en vidange qui n'héberge plus rien peut être arrêté
+            for (Iterator<Noeud> it = noeuds.iterator(); it.hasNext(); ) {
+                Noeud noeud = it.next();
+                if (noeud.etat == VIDANGE && salles.values().stream().noneMatch(s -> s.noeud == noeud)) {
+                    it.remove();
+                    System.out.println("Serveur " + noeud + " vidé, il peut être arrêté");
+                }
+            }
+        }
+
+        for (int i = 0; i < aDeplacer.size(); i++) {
+            System.out.println("Salle " + aDeplacer.get(i).nom + " déplacée vers " + destinations.get(i)
+                + " (" + sessions.get(i).size() + " clients)");
+            for (Session session : sessions.get(i)) {
+                session.deplacer(destinations.get(i));
+            }
+        }
+    }
+
+    /**
+     * Un serveur a fermé la connexion d'une session : s'il répond encore, la
+     * fermeture était voulue (partie pleine...) ; sinon il est perdu
+     */
+    private void serveurFerme(Session session, Noeud noeud) {
+        if (joignable(noeud)) {
+            session.fermer();
+            return;
+        }
+        synchronized (this) {
+            if (noeud.etat != PERDU) {
+                noeud.etat = PERDU;
+                reconstruireAnneau();
+                System.err.println("Serveur perdu : " + noeud);
+            }
+        }
+        surveillance.execute(this::reequilibrer);
+    }
+
+    /**
+     * Vérifie périodiquement les serveurs : un serveur perdu qui répond à
+     * nouveau revient sur l'anneau, un serveur qui ne répond plus en sort
+     */
+    private void surveiller() {
+        List<Noeud> aVerifier;
+        synchronized (this) {
+            aVerifier = new ArrayList<>(noeuds);
+        }
+        boolean change = false;
+        for (Noeud noeud : aVerifier) {
+            boolean repond = joignable(noeud);
+            synchronized (this) {
+                if (!repond && noeud.etat != PERDU) {
+                    System.err.println("Serveur perdu : " + noeud);
+                    noeud.etat = PERDU;
+                    change = true;
+                } else if (repond && noeud.etat == PERDU) {
+                    System.out.println("Serveur de retour : " + noeud);
+                    noeud.etat = ACTIF;
+                    change = true;
+                }
+            }
+        }
+        if (change) {
+            synchronized (this) {
+                reconstruireAnneau();
+            }
+        }
+        reequilibrer();
+    }
+
+    //==========================================================================
+    // Méthodes de connexion
+    //==========================================================================
+    /**
+     * Démarre la passerelle et attend les connexions
+     * @param port Port d'écoute
+     */
+    public void demarrer(int port) {
+        surveillance.scheduleWithFixedDelay(this::surveillerSilencieusement,
+            PERIODE_SURVEILLANCE_S, PERIODE_SURVEILLANCE_S, TimeUnit.SECONDS);
+        Thread console = new Thread(this::lireCommandes, "passerelle-console");
+        console.setDaemon(true);
+        console.start();
+
+        System.out.println("Passerelle sur le port " + port);
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                if (!accueil.reserver(socket.getInetAddress())) {
+                    fermerSocket(socket);   // Trop de connexions en cours d'accueil
+                    continue;
+                }
+                socket.setTcpNoDelay(true);
+                socket.setSendBufferSize(BUFFER_SIZE);
+                socket.setReceiveBufferSize(BUFFER_SIZE);
+                relais.execute(() -> accueillir(socket));
+            }
+        } catch (IOException e) {
+            System.err.println("Erreur passerelle: " + e.getMessage());
+        }
+    }
+
+    private void surveillerSilencieusement() {
+        try {
+            surveiller();
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors de la surveillance des serveurs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lit la salle et le nom du client avant l'échéance d'accueil, le relie
+     * au serveur de sa salle puis relaie ses messages jusqu'à sa déconnexion
+     */
+    private void accueillir(Socket socket) {
+        Session session = null;
+        try {
+            InputStream entree = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+            String salle = SALLE_DEFAUT;
+            String poignee;
+            try {
+                long echeance = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Accueil.DELAI_MS);
+                String premiere = Accueil.lireLigne(socket, entree, echeance);
+                poignee = premiere == null ? null : premiere + "\n";
+                if (premiere != null && premiere.startsWith(PREFIXE_SALLE)) {
+                    salle = premiere.substring(PREFIXE_SALLE.length());
+                    String nom = Accueil.lireLigne(socket, entree, echeance);
+                    poignee = nom == null ? null : poignee + nom + "\n";
+                }
+                socket.setSoTimeout(0);
+            } catch (SocketTimeoutException e) {
+                accueil.expiree();
+                poignee = null;
+            } finally {
+                accueil.liberer(socket.getInetAddress());
+            }
+            if (poignee == null) {
+                fermerSocket(socket);
+                return;
+            }
+
+            session = new Session(socket, entree, poignee.getBytes(StandardCharsets.UTF_8));
+            Noeud noeud = entrerSalle(session, salle);
+            if (noeud == null) {
+                session.versClient.write("Aucun serveur disponible\n".getBytes(StandardCharsets.UTF_8));
+                session.fermer();
+                return;
+            }
+            session.attacher(noeud);
+        } catch (IOException e) {
+            System.err.println("Connexion d'un client impossible: " + e.getMessage());
+            if (session != null) session.fermer(); else fermerSocket(socket);
+            return;
+        }
+        session.relayerClient();
+    }
+
+    /**
+     * Lit les commandes d'administration sur l'entrée standard
+     */
+    private void lireCommandes() {
+        try (BufferedReader console = new BufferedReader(new InputStreamReader(System.in))) {
+            String ligne;
+            while ((ligne = console.readLine()) != null) {
+                String[] mots = ligne.trim().split("\\s+");
+                if (mots.length == 2 && mots[0].equals("ajouter")) {
+                    ajouter(mots[1]);
+                } else if (mots.length == 2 && mots[0].equals("retirer")) {
+                    retirer(mots[1]);
+                } else if (mots[0].equals("etat")) {
+                    System.out.print(etat());
+                } else if (!mots[0].isEmpty()) {
+                    System.out.println("Commandes : ajouter hôte:port, retirer hôte:port, etat");
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Console de la passerelle fermée: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Décrit les serveurs et les salles
+     */
+    private synchronized String etat() {
+        StringBuilder sb = new StringBuilder();
+        String[] etats = {"actif", "vidange", "perdu"};
+        for (Noeud noeud : noeuds) {
+            sb.append("serveur ").append(noeud).append(' ').append(etats[noeud.etat]).append('\n');
+        }
+        for (Salle salle : salles.values()) {
+            sb.append("salle ").append(salle.nom).append(" -> ").append(salle.noeud)
+              .append(" (").append(salle.sessions.size()).append(" clients)\n");
+        }
+        return sb.toString();
+    }
+
+    //==========================================================================
+    // Méthodes utilitaires
+    //==========================================================================
+    private static Socket connecter(Noeud noeud) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSendBufferSize(BUFFER_SIZE);
+            socket.setReceiveBufferSize(BUFFER_SIZE);
+            socket.connect(new InetSocketAddress(noeud.hote, noeud.port), DELAI_CONNEXION_MS);
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static boolean joignable(Noeud noeud) {
+        try {
+            connecter(noeud).close();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true si la ligne octets[debut..fin[ commence par le préfixe
+     */
+    private static boolean commencePar(byte[] octets, int debut, int fin, byte[] prefixe) {
+        if (fin - debut < prefixe.length) return false;
+        for (int i = 0; i < prefixe.length; i++) {
+            if (octets[debut + i] != prefixe[i]) return false;
+        }
+        return true;
+    }
+
+    private static void fermerSocket(Socket socket) {
+        if (socket == null) return;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Déjà fermée
+        }
+    }
+
+    /**
+     * Copie un flux vers une destination par blocs de lignes complètes
+     * Un bloc ne coupe jamais une ligne : la destination peut changer entre
+     * deux blocs sans mélanger deux messages
+     * @param entree Flux à copier
+     * @param longueurMax Octets au plus d'une ligne (le tampon ne grandit pas au-delà)
+     * @param destination Destination des blocs
+     * @throws IOException en fin de connexion ou si une ligne dépasse longueurMax
+     */
+    private static void copierLignes(InputStream entree, int longueurMax, Destination destination) throws IOException {
+        byte[] tampon = new byte[BUFFER_SIZE];
+        int rempli = 0;
+        int lus;
+        while ((lus = entree.read(tampon, rempli, tampon.length - rempli)) > 0) {
+            int debut = rempli;
+            rempli += lus;
+            int fin = rempli;
+            while (fin > debut && tampon[fin - 1] != '\n') fin--;
+            if (fin > debut) {
+                destination.ecrire(tampon, fin);
+                System.arraycopy(tampon, fin, tampon, 0, rempli - fin);
+                rempli -= fin;
+            } else if (rempli == tampon.length) {
+                if (tampon.length >= longueurMax) throw new IOException("Ligne trop longue");
+                tampon = Arrays.copyOf(tampon, (int) Math.min(2L * tampon.length, longueurMax));   // Ligne plus longue que le tampon (CANEVAS...)
+            }
+        }
+    }
+
+    //==========================================================================
+    // Point d'entrée
+    //==========================================================================
+    public static void main(String[] args) {
+        int premier = 0;
+        int port = PORT;
+        if (args.length > 0 && !args[0].contains(":")) {
+            port = Integer.parseInt(args[0]);
+            premier = 1;
+        }
+        Passerelle passerelle = new Passerelle();
+        for (int i = premier; i < args.length; i++) {
+            passerelle.ajouter(args[i]);
+        }
+        passerelle.demarrer(port);
+    }
+}
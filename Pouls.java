@@ -0,0 +1,222 @@
+/******************************************************************************
+ * Pouls.java
+ * Battement de cœur des connexions d'une salle
+ *
+ * Cette classe gère :
+ * - L'envoi de PING:<instant> aux connexions silencieuses depuis le délai
+ *   d'inactivité, et au moins toutes les PERIODE_RTT_MS aux autres pour
+ *   garder leur temps d'aller-retour à jour
+ * - La mesure du temps d'aller-retour à chaque PONG:<instant> renvoyé
+ * - La fermeture des connexions muettes depuis le délai de mort : un
+ *   portable en veille ou une connexion à moitié ouverte libère sa place et
+ *   cesse d'accumuler des messages en quelques secondes
+ *
+ * Tout message reçu (pas seulement PONG) prouve que le client est vivant.
+ * Un seul thread, partagé par toutes les salles du processus, fait le tour
+ * des connexions.
+ *****************************************************************************/
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Détection des clients disparus et mesure de leur temps d'aller-retour
+ */
+public class Pouls {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final String PING = "PING:";        // Préfixe envoyé par le serveur
+    public static final String PONG = "PONG:";        // Préfixe de la réponse du client
+    public static final long INACTIVITE_MS = 1500;    // Silence après lequel un client est sondé
+    public static final long MORT_MS = 6000;          // Silence après lequel un client est déconnecté
+    private static final long PERIODE_MS = 500;       // Intervalle entre deux tours des connexions
+    private static final long PERIODE_RTT_MS = 5000;  // Sondage minimal des clients actifs
+
+    private static final ScheduledExecutorService HORLOGE = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "pouls");
+        t.setDaemon(true);
+        return t;
+    });                                               // Tours de toutes les salles
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Serveur serveur;                    // Serveur de la salle (métriques)
+    private final long inactivite;                    // Délai d'inactivité en nanosecondes
+    private final long mort;                          // Délai de mort en nanosecondes
+    private final Set<ClientHandler> connexions = ConcurrentHashMap.newKeySet(); // Joueurs, file et spectateurs
+    private final LongAdder deconnectes = new LongAdder(); // Connexions fermées faute de réponse
+    private ScheduledFuture<?> tache;                 // Tour périodique (null : arrêté)
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param serveur Serveur de la salle
+     * @param inactiviteMs Silence en ms après lequel un client est sondé
+     * @param mortMs Silence en ms après lequel un client est déconnecté
+     */
+    public Pouls(Serveur serveur, long inactiviteMs, long mortMs) {
+        this.serveur = serveur;
+        this.inactivite = TimeUnit.MILLISECONDS.toNanos(inactiviteMs);
+        this.mort = TimeUnit.MILLISECONDS.toNanos(Math.max(mortMs, 2 * inactiviteMs));
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Démarre les tours périodiques (serveur démarré ou salle ouverte)
+     */
+    public synchronized void demarrer() {
+        if (tache == null) {
+            tache = HORLOGE.scheduleWithFixedDelay(this::battreSilencieusement, PERIODE_MS, PERIODE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Arrête les tours (salle fermée)
+     */
+    public synchronized void arreter() {
+        if (tache != null) {
+            tache.cancel(false);
+            tache = null;
+        }
+    }
+
+    /**
+     * Surveille une connexion dont l'accueil est terminé
+     * @param client La connexion
+     */
+    public void ajouter(ClientHandler client) {
+        connexions.add(client);
+    }
+
+    /**
+     * Cesse de surveiller une connexion fermée
+     * @param client La connexion
+     */
+    public void retirer(ClientHandler client) {
+        connexions.remove(client);
+    }
+
+    /**
+     * Traite la réponse d'un client à un PING
+     * @param client La connexion qui répond
+     * @param message Le message PONG:<instant> reçu
+     */
+    public void pong(ClientHandler client, String message) {
+        try {
+            long rtt = System.nanoTime() - Long.parseLong(message.substring(PONG.length()));
+            if (rtt >= 0 && rtt <= mort) {   // Écarte les instants forgés ou d'une autre salle
+                client.getRtt().enregistrer(rtt);
+                serveur.getMetriques().getRtt().enregistrer(rtt);
+            }
+        } catch (NumberFormatException e) {
+            // Réponse invalide : elle compte seulement comme signe de vie
+        }
+    }
+
+    public long getInactiviteMs() { return TimeUnit.NANOSECONDS.toMillis(inactivite); }
+    public long getMortMs() { return TimeUnit.NANOSECONDS.toMillis(mort); }
+    public int getNombre() { return connexions.size(); }
+    public long getDeconnectes() { return deconnectes.sum(); }
+
+    //==========================================================================
+    // Tour des connexions
+    //==========================================================================
+    private void battreSilencieusement() {
+        try {
+            battre();
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors du tour des connexions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Sonde les connexions silencieuses et ferme les connexions muettes
+     */
+    private void battre() {
+        long maintenant = System.nanoTime();
+        for (ClientHandler client : connexions) {
+            long silence = maintenant - client.getDernierMessage();
+            if (silence >= mort) {
+                connexions.remove(client);
+                deconnectes.increment();
+                System.out.println("Client sans réponse depuis " + TimeUnit.NANOSECONDS.toMillis(silence)
+                    + " ms, déconnecté : " + (client.getJoueur() != null ? client.getJoueur().getNom() : "inconnu"));
+                client.fermer();
+                continue;
+            }
+            long depuisPing = maintenant - client.getDernierPing();
+            if ((silence >= inactivite && depuisPing >= inactivite)
+                    || depuisPing >= TimeUnit.MILLISECONDS.toNanos(PERIODE_RTT_MS)) {
+                client.envoyerPing();
+            }
+        }
+    }
+
+    //==========================================================================
+    // Temps d'aller-retour d'une connexion
+    //==========================================================================
+    /**
+     * Temps d'aller-retour lissé (moyenne exponentielle, comme le SRTT de TCP)
+     * et dernières mesures pour les centiles
+     */
+    public static class Rtt {
+        private static final int NB_MESURES = 32;     // Mesures gardées pour les centiles
+        private final long[] mesures = new long[NB_MESURES];
+        private int nombre = 0;                       // Mesures enregistrées (total)
+        private long lisse = -1;                      // Moyenne lissée en nanosecondes (-1 : aucune mesure)
+        private long ecart = 0;                       // Écart moyen lissé en nanosecondes
+
+        /**
+         * Enregistre une mesure (alpha 1/8 pour la moyenne, 1/4 pour l'écart)
+         * @param nanos Temps d'aller-retour mesuré
+         */
+        public synchronized void enregistrer(long nanos) {
+            if (lisse < 0) {
+                lisse = nanos;
+                ecart = nanos / 2;
+            } else {
+                ecart += (Math.abs(nanos - lisse) - ecart) / 4;
+                lisse += (nanos - lisse) / 8;
+            }
+            mesures[nombre++ % NB_MESURES] = nanos;
+        }
+
+        /**
+         * @return Temps d'aller-retour lissé en microsecondes (-1 si aucune mesure)
+         */
+        public synchronized long getLisseMicros() {
+            return lisse < 0 ? -1 : lisse / 1000;
+        }
+
+        /**
+         * @return Écart moyen lissé en microsecondes
+         */
+        public synchronized long getEcartMicros() {
+            return ecart / 1000;
+        }
+
+        /**
+         * Centile des dernières mesures
+         * @param fraction Centile entre 0 et 1
+         * @return Temps en microsecondes (-1 si aucune mesure)
+         */
+        public synchronized long centileMicros(double fraction) {
+            int n = Math.min(nombre, NB_MESURES);
+            if (n == 0) return -1;
+            long[] triees = Arrays.copyOf(mesures, n);
+            Arrays.sort(triees);
+            return triees[Math.min(n - 1, (int) Math.ceil(n * fraction) - 1)] / 1000;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/******************************************************************************
+ * ReceptionDatagrammes.java
+ * Réception des traits par le canal UDP, côté client
+ *
+ * Cette classe gère :
+ * - L'envoi du jeton d'ouverture, répété jusqu'à la confirmation UDP_OK:
+ * - La reconstitution des traits à partir des plages de points reçues,
+ *   dans n'importe quel ordre et autant de fois qu'il le faut
+ * - La détection des pertes : numéro de datagramme sauté, UDP_SEQ en
+ *   avance, ou trait dont les premiers points manquent ; le renvoi est
+ *   demandé sur TCP (RENVOI:<premier>:<dernier>)
+ * - La fusion avec les messages TCP : un DRAW renvoyé complète le trait, un
+ *   effacement (CLEAR, nouvelle manche, CANEVAS) oublie les traits en cours
+ *
+ * L'écouteur reçoit des DRAW ordinaires : seul le début continu de chaque
+ * trait lui est transmis, et chaque trait ne fait que s'allonger, sauf
+ * quand une version TCP change des points déjà transmis (dernier point
+ * provisoire d'une version décimée) : le trait est alors retransmis. UDP et
+ * TCP passent par le même verrou, l'écouteur reçoit un message à la fois.
+ *****************************************************************************/
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Canal UDP des traits d'une connexion au serveur
+ */
+public class ReceptionDatagrammes implements Closeable {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int ESSAIS_JETON = 10;        // Envois du jeton avant d'abandonner (traits par TCP)
+    private static final long INTERVALLE_JETON_MS = 200; // Intervalle entre deux envois du jeton
+    private static final int POINTS_MAX = 1 << 16;     // Index de point au-delà duquel un datagramme est ignoré
+
+    //==========================================================================
+    // Trait en cours de réception
+    //==========================================================================
+    private static class Trait {
+        final int couleur;                             // Couleur ARGB
+        final int epaisseur;                           // Épaisseur du trait
+        int[] coordonnees = new int[64];               // x0, y0, x1, y1... des points reçus
+        boolean[] recus = new boolean[32];             // Points reçus
+        int continus = 0;                              // Points reçus sans trou depuis le premier
+        int transmis = 0;                              // Points déjà transmis à l'écouteur
+        boolean renvoiDemande = false;                 // Début manquant déjà demandé
+
+        Trait(int couleur, int epaisseur) {
+            this.couleur = couleur;
+            this.epaisseur = epaisseur;
+        }
+
+        /**
+         * @return true si le point avait déjà été reçu à une autre position
+         */
+        boolean placer(int index, int x, int y) {
+            if (index >= recus.length) {
+                int taille = Math.max(2 * recus.length, index + 1);
+                recus = Arrays.copyOf(recus, taille);
+                coordonnees = Arrays.copyOf(coordonnees, 2 * taille);
+            }
+            boolean deplace = recus[index] && (coordonnees[2 * index] != x || coordonnees[2 * index + 1] != y);
+            coordonnees[2 * index] = x;
+            coordonnees[2 * index + 1] = y;
+            recus[index] = true;
+            while (continus < recus.length && recus[continus]) continus++;
+            return deplace;
+        }
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final DatagramChannel canal;               // Socket UDP reliée au serveur
+    private final ConnexionServeur connexion;          // Connexion TCP (demandes de renvoi)
+    private final ConnexionServeur.Ecouteur ecouteur;  // Destinataire des traits
+    private final long jeton;                          // Jeton d'ouverture reçu sur TCP
+    private volatile boolean actif = false;            // UDP_OK reçu
+    private final Map<Integer, Trait> traits = new HashMap<>(); // Traits en cours de réception
+    private int attendu = 1;                           // Prochain numéro de datagramme attendu
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Ouvre la socket UDP vers le serveur et démarre l'envoi du jeton et la réception
+     * @param adresse Adresse du serveur (celle de la connexion TCP)
+     * @param jeton Jeton reçu dans UDP:<jeton>
+     * @param connexion Connexion TCP, pour les demandes de renvoi
+     * @param ecouteur Destinataire des traits reconstitués
+     * @throws IOException si la socket ne peut pas être ouverte
+     */
+    public ReceptionDatagrammes(InetSocketAddress adresse, long jeton, ConnexionServeur connexion,
+                                ConnexionServeur.Ecouteur ecouteur) throws IOException {
+        this.connexion = connexion;
+        this.ecouteur = ecouteur;
+        this.jeton = jeton;
+        canal = DatagramChannel.open();
+        canal.connect(adresse);
+
+        Thread reception = new Thread(this::recevoir, "datagrammes");
+        reception.setDaemon(true);
+        reception.start();
+        Thread ouverture = new Thread(this::envoyerJeton, "datagrammes-jeton");
+        ouverture.setDaemon(true);
+        ouverture.start();
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Le serveur a reçu le jeton : les traits arrivent désormais par UDP
+     */
+    public void activer() {
+        actif = true;
+    }
+
+    /**
+     * Transmet un message TCP à l'écouteur, en tenant compte des traits en cours
+     * @param message Message reçu sur la connexion TCP
+     */
+    public synchronized void transmettre(String message) {
+        if (message.startsWith("DRAW:")) {
+            completer(message);
+            return;
+        }
+        if (message.startsWith(CanalDatagrammes.SEQUENCE)) {
+            try {
+                int dernier = Integer.parseInt(message.substring(CanalDatagrammes.SEQUENCE.length()));
+                if (dernier >= attendu) {
+                    demanderRenvoi(attendu, dernier);
+                    attendu = dernier + 1;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Numéro de datagramme invalide: " + message);
+            }
+            return;
+        }
+        if (message.startsWith("CLEAR:") || message.startsWith("NOUVEAU_DESSINATEUR:") || message.startsWith("CANEVAS:")) {
+            traits.clear();   // Un point arrivé ensuite pour un ancien trait fera demander le trait entier
+        }
+        ecouteur.messageRecu(message);
+    }
+
+    /**
+     * Ferme la socket UDP
+     */
+    @Override
+    public void close() {
+        try {
+            canal.close();
+        } catch (IOException e) {
+            System.err.println("Erreur lors de la fermeture du canal UDP: " + e.getMessage());
+        }
+    }
+
+    //==========================================================================
+    // Ouverture et réception (threads dédiés)
+    //==========================================================================
+    /**
+     * Envoie le jeton jusqu'à la confirmation du serveur
+     * Sans confirmation (UDP filtré, passerelle), les traits restent sur TCP
+     */
+    private void envoyerJeton() {
+        ByteBuffer datagramme = ByteBuffer.allocate(CanalDatagrammes.TAILLE_JETON).putLong(0, jeton);
+        try {
+            for (int essai = 0; essai < ESSAIS_JETON && !actif && canal.isOpen(); essai++) {
+                canal.write(datagramme.clear());
+                Thread.sleep(INTERVALLE_JETON_MS);
+            }
+        } catch (IOException | InterruptedException e) {
+            // Pas de canal UDP : les traits restent sur TCP
+        }
+    }
+
+    private void recevoir() {
+        ByteBuffer tampon = ByteBuffer.allocate(CanalDatagrammes.TAILLE_MAX);
+        while (canal.isOpen()) {
+            try {
+                tampon.clear();
+                canal.receive(tampon);
+                tampon.flip();
+                appliquer(tampon);
+            } catch (BufferUnderflowException e) {
+                // Datagramme tronqué : ignoré, sa perte sera vue par les numéros
+            } catch (IOException e) {
+                return;   // Socket fermée ou port injoignable : les traits restent sur TCP
+            }
+        }
+    }
+
+    //==========================================================================
+    // Méthodes privées (sous le verrou)
+    //==========================================================================
+    /**
+     * Place les points d'un datagramme et transmet le trait s'il s'est allongé
+     */
+    private synchronized void appliquer(ByteBuffer datagramme) {
+        int numero = datagramme.getInt();
+        int identifiant = datagramme.getInt();
+        int couleur = datagramme.getInt();
+        int epaisseur = datagramme.getInt();
+        int premier = datagramme.getInt();
+        int nombre = datagramme.getShort();
+        if (premier < 0 || nombre < 0 || premier + nombre > POINTS_MAX || datagramme.remaining() != 4 * nombre) return;
+        if (!LineData.epaisseurValide(epaisseur)) return;
+
+        boolean saut = numero > attendu;
+        if (saut) demanderRenvoi(attendu, numero - 1);
+        if (numero >= attendu) attendu = numero + 1;
+
+        Trait trait = traits.computeIfAbsent(identifiant, i -> new Trait(couleur, epaisseur));
+        for (int i = premier; i < premier + nombre; i++) {
+            trait.placer(i, datagramme.getShort(), datagramme.getShort());
+        }
+        if (trait.continus < premier && !saut && !trait.renvoiDemande) {
+            // Début du trait manquant sans numéro sauté : oublié par un effacement, ou perte déjà signalée
+            trait.renvoiDemande = true;
+            demanderRenvoi(numero, numero);
+        }
+        transmettreTrait(identifiant, trait);
+    }
+
+    /**
+     * Complète un trait avec sa version entière reçue sur TCP (renvoi, niveau
+     * décimé) ; rien n'est transmis si elle n'apporte aucun point ni n'en
+     * déplace aucun
+     */
+    private void completer(String message) {
+        LineData ligne;
+        try {
+            ligne = LineData.decoder(message.substring(5));
+        } catch (IOException e) {
+            ecouteur.messageRecu(message);   // L'écouteur signalera l'erreur
+            return;
+        }
+        Trait trait = traits.computeIfAbsent(ligne.getIdentifiant(),
+            i -> new Trait(ligne.getCouleur(), ligne.getStrokeWidth()));
+        boolean deplace = false;
+        for (int i = 0; i < ligne.getNbPoints(); i++) {
+            deplace |= trait.placer(i, ligne.getX(i), ligne.getY(i));
+        }
+        if (deplace) trait.transmis = 0;               // Points déjà transmis modifiés : tout le trait repart
+        transmettreTrait(ligne.getIdentifiant(), trait);
+    }
+
+    private void transmettreTrait(int identifiant, Trait trait) {
+        if (trait.continus <= trait.transmis) return;
+        trait.transmis = trait.continus;
+        trait.renvoiDemande = false;
+        LineData ligne = LineData.depuisCoordonnees(identifiant, trait.couleur, trait.epaisseur,
+                                                    trait.coordonnees, trait.continus);
+        ecouteur.messageRecu("DRAW:" + ligne.encoder());
+    }
+
+    private void demanderRenvoi(int premier, int dernier) {
+        try {
+            connexion.envoyer(CanalDatagrammes.RENVOI + premier + ":" + dernier);
+        } catch (IOException e) {
+            // Connexion perdue : la réception TCP le signale
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/******************************************************************************
+ * RejouerPartie.java
+ * Rediffusion d'une partie enregistrée par le serveur
+ *
+ * Cet outil :
+ * - Se fait passer pour le serveur : le client Swing, GenerateurCharge ou
+ *   tout client sans interface s'y connecte comme d'habitude
+ * - Attend le nombre de spectateurs demandé puis rejoue l'enregistrement,
+ *   avec ses délais d'origine divisés par la vitesse (1x à 50x)
+ * - Envoie exactement la même suite de messages à chaque exécution : la
+ *   rediffusion sert aussi de charge reproductible pour comparer deux versions
+ * - Affiche à la fin le nombre de messages et le débit obtenus
+ *
+ * Les spectateurs reçoivent ce que recevaient tous les joueurs (messages
+ * diffusés) et sont devineurs à chaque manche. Ce qu'ils envoient est ignoré.
+ *
+ * Usage : java RejouerPartie fichier.rec [vitesse] [port] [spectateurs]
+ *****************************************************************************/
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+public class RejouerPartie {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int PORT = 12345;                // Port par défaut, celui du serveur
+    private static final double VITESSE = 1.0;            // Vitesse par défaut
+    private static final double VITESSE_MAX = 50.0;      // Accélération maximale
+    private static final int NB_SPECTATEURS = 1;          // Spectateurs attendus par défaut
+    private static final int BUFFER_SIZE = 8192;          // Taille du buffer réseau
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final String fichier;                         // Enregistrement à rejouer
+    private final double vitesse;                         // Facteur d'accélération
+    private final List<Spectateur> spectateurs = new CopyOnWriteArrayList<>();
+    private final CountDownLatch attendus;                // Spectateurs encore attendus
+
+    //==========================================================================
+    // Spectateur
+    //==========================================================================
+    /**
+     * Connexion d'un spectateur
+     */
+    private class Spectateur {
+        private final Socket socket;
+        private final OutputStream out;
+
+        Spectateur(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        }
+
+        /**
+         * Lit le nom du spectateur puis ignore tout ce qu'il envoie
+         */
+        void ecouter() {
+            try {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                String nom = in.readLine();
+                if (nom == null) return;
+                System.out.println("Spectateur connecté : " + nom);
+                spectateurs.add(this);
+                attendus.countDown();
+                while (in.readLine() != null) {
+                    // Le spectateur ne fait que regarder
+                }
+            } catch (IOException e) {
+                // Déconnexion, traitée à la prochaine écriture
+            }
+        }
+
+        /**
+         * Écrit un message sans l'envoyer (voir envoyer)
+         * @return false si la connexion est perdue
+         */
+        boolean ecrire(byte[] ligne) {
+            try {
+                out.write(ligne);
+                return true;
+            } catch (IOException e) {
+                fermer();
+                return false;
+            }
+        }
+
+        void envoyer() {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                fermer();
+            }
+        }
+
+        void fermer() {
+            spectateurs.remove(this);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+        }
+    }
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param fichier Enregistrement à rejouer
+     * @param vitesse Facteur d'accélération, ramené entre 1 et VITESSE_MAX
+     * @param nbSpectateurs Spectateurs à attendre avant de commencer
+     */
+    public RejouerPartie(String fichier, double vitesse, int nbSpectateurs) {
+        this.fichier = fichier;
+        this.vitesse = Math.max(1.0, Math.min(VITESSE_MAX, vitesse));
+        this.attendus = new CountDownLatch(nbSpectateurs);
+    }
+
+    //==========================================================================
+    // Déroulement
+    //==========================================================================
+    /**
+     * Accepte les spectateurs, attend qu'ils soient tous là puis rejoue la partie
+     * @param port Port d'écoute
+     */
+    public void executer(int port) throws IOException, InterruptedException {
+        try (ServerSocket serverSocket = new ServerSocket(port);
+             EnregistreurPartie.Lecteur lecteur = new EnregistreurPartie.Lecteur(Paths.get(fichier))) {
+            Thread accueil = new Thread(() -> accepter(serverSocket), "accueil-spectateurs");
+            accueil.setDaemon(true);
+            accueil.start();
+
+            System.out.println("Rediffusion de " + fichier + " à " + vitesse + "x sur le port " + port
+                + ", en attente de " + attendus.getCount() + " spectateur(s)...");
+            attendus.await();
+
+            long debut = System.nanoTime();
+            diffuser("La partie commence dans 1 secondes!");
+            diffuser("La partie commence maintenant!");
+            long nbMessages = 0;
+            String message;
+            while ((message = lecteur.suivant()) != null) {
+                attendre(debut + (long) (lecteur.getInstant() * 1_000_000L / vitesse));
+                diffuser(message);
+                if (message.startsWith("NOUVEAU_DESSINATEUR:")) {
+                    diffuser("ROLE:devineur");   // Rôle envoyé à chaque joueur, absent de l'enregistrement
+                }
+                nbMessages++;
+            }
+            envoyer();
+
+            double duree = (System.nanoTime() - debut) / 1e9;
+            System.out.printf("Rediffusion terminée : %d messages en %.1f s (%.0f messages/s par spectateur)%n",
+                nbMessages, duree, nbMessages / Math.max(duree, 1e-3));
+            for (Spectateur spectateur : spectateurs) {
+                spectateur.fermer();
+            }
+        }
+    }
+
+    private void accepter(ServerSocket serverSocket) {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSendBufferSize(BUFFER_SIZE);
+                Spectateur spectateur = new Spectateur(socket);
+                Thread reception = new Thread(spectateur::ecouter, "spectateur");
+                reception.setDaemon(true);
+                reception.start();
+            }
+        } catch (IOException e) {
+            // Socket d'écoute fermée en fin de rediffusion
+        }
+    }
+
+    /**
+     * Attend l'instant prévu pour le prochain message
+     * Les messages déjà dus partent ensemble, avec un seul envoi par spectateur
+     */
+    private void attendre(long echeance) throws InterruptedException {
+        long reste = echeance - System.nanoTime();
+        if (reste > 0) {
+            envoyer();
+            Thread.sleep(reste / 1_000_000, (int) (reste % 1_000_000));
+        }
+    }
+
+    private void diffuser(String message) {
+        byte[] ligne = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        for (Spectateur spectateur : spectateurs) {
+            spectateur.ecrire(ligne);
+        }
+    }
+
+    private void envoyer() {
+        for (Spectateur spectateur : spectateurs) {
+            spectateur.envoyer();
+        }
+    }
+
+    //==========================================================================
+    // Point d'entrée
+    //==========================================================================
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage : java RejouerPartie fichier.rec [vitesse] [port] [spectateurs]");
+            System.exit(1);
+        }
+        double vitesse = args.length > 1 ? Double.parseDouble(args[1]) : VITESSE;
+        int port = args.length > 2 ? Integer.parseInt(args[2]) : PORT;
+        int nbSpectateurs = args.length > 3 ? Integer.parseInt(args[3]) : NB_SPECTATEURS;
+        new RejouerPartie(args[0], vitesse, nbSpectateurs).executer(port);
+    }
+}
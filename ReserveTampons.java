@@ -0,0 +1,229 @@
+/******************************************************************************
+ * ReserveTampons.java
+ * Réserve de tampons d'entrée-sortie partagée par toutes les connexions
+ *
+ * Cette classe gère :
+ * - Des classes de taille (1, 4, 16 et 64 Ko) : un tampon emprunté a la
+ *   taille de la plus petite classe qui suffit
+ * - Des plaques : un grand tableau par classe, découpé en blocs, alloué
+ *   quand la classe n'a plus de bloc libre ; les blocs rendus servent aux
+ *   emprunts suivants, sans nouvelle allocation
+ * - Les tampons plus grands que la dernière classe, alloués à part et
+ *   laissés au ramasse-miettes quand ils sont rendus
+ * - La détection des fuites : un tampon oublié sans être rendu est signalé
+ *   (et compté) quand le ramasse-miettes le découvre, et son bloc retourne
+ *   dans sa classe
+ *
+ * Les connexions n'empruntent un tampon que lorsque des octets sont en
+ * cours de lecture ou d'écriture : un joueur inactif n'en tient aucun. La
+ * mémoire réservée suit ainsi le nombre de connexions actives au même
+ * moment, pas le nombre de connexions ouvertes.
+ *
+ * Les sockets sont des flux bloquants : les plaques sont des tableaux
+ * (lus et écrits directement par les flux) plutôt que des tampons hors tas.
+ *****************************************************************************/
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tampons d'octets empruntés et rendus par les connexions
+ */
+public class ReserveTampons {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int[] TAILLES = {1024, 4096, 16384, 65536};  // Taille des blocs de chaque classe
+    private static final int TAILLE_PLAQUE = 256 * 1024;              // Octets d'une plaque (tous les blocs d'une classe)
+
+    private static final ReserveTampons COMMUNE = new ReserveTampons();   // Réserve du processus
+    private static final Cleaner NETTOYEUR = Cleaner.create();       // Détection des tampons oubliés
+
+    //==========================================================================
+    // Tampon emprunté
+    //==========================================================================
+    /**
+     * Bloc d'une plaque prêté à une connexion : les octets utilisables vont
+     * de getDebut() (inclus) à getFin() (exclu) dans getOctets()
+     */
+    public static final class Tampon {
+        private final byte[] octets;                   // Plaque (ou tableau propre, hors classe)
+        private final int debut;                       // Premier octet du bloc dans la plaque
+        private final int capacite;                    // Taille du bloc
+        private final Emprunt emprunt;                 // État partagé avec la détection de fuite
+        private final Cleaner.Cleanable nettoyage;     // Enregistrement auprès du nettoyeur
+
+        private Tampon(byte[] octets, int debut, int capacite, Emprunt emprunt) {
+            this.octets = octets;
+            this.debut = debut;
+            this.capacite = capacite;
+            this.emprunt = emprunt;
+            this.nettoyage = NETTOYEUR.register(this, emprunt);
+        }
+
+        public byte[] getOctets() { return octets; }
+        public int getDebut() { return debut; }
+        public int getFin() { return debut + capacite; }
+        public int getCapacite() { return capacite; }
+    }
+
+    /**
+     * Action du nettoyeur : appelée au rendu (sans effet) ou quand le
+     * tampon devient inaccessible sans avoir été rendu (fuite)
+     * Ne référence pas le tampon, sans quoi il ne serait jamais ramassé :
+     * seulement son bloc, que personne ne peut plus utiliser et qui est rendu
+     */
+    private static final class Emprunt implements Runnable {
+        private final ReserveTampons reserve;          // Réserve d'origine
+        private final int capacite;                    // Taille du bloc (rapport de fuite)
+        private final int classe;                      // Classe de taille (-1 : hors classe)
+        private final Bloc bloc;                       // Bloc à remettre dans sa classe (null : hors classe)
+        private boolean rendu = false;                 // Rendu par son emprunteur (verrou : l'emprunt)
+
+        Emprunt(ReserveTampons reserve, int capacite, int classe, Bloc bloc) {
+            this.reserve = reserve;
+            this.capacite = capacite;
+            this.classe = classe;
+            this.bloc = bloc;
+        }
+
+        /**
+         * Marque l'emprunt rendu
+         * @return false s'il l'était déjà
+         */
+        synchronized boolean rendre() {
+            if (rendu) return false;
+            rendu = true;
+            return true;
+        }
+
+        @Override
+        public void run() {
+            if (!rendre()) return;
+            reserve.fuites.increment();
+            System.err.println("Tampon de " + capacite + " octets jamais rendu à la réserve (fuite)");
+            reserve.restituer(this);
+        }
+    }
+
+    /**
+     * Bloc libre d'une plaque
+     */
+    private static final class Bloc {
+        final byte[] plaque;
+        final int debut;
+
+        Bloc(byte[] plaque, int debut) {
+            this.plaque = plaque;
+            this.debut = debut;
+        }
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final List<Deque<Bloc>> libres = new ArrayList<>(); // Blocs libres de chaque classe (verrou : la file)
+    private final LongAdder emprunts = new LongAdder(); // Tampons empruntés depuis le démarrage
+    private final AtomicLong enCours = new AtomicLong(); // Tampons empruntés et pas encore rendus
+    private final AtomicLong reserves = new AtomicLong(); // Octets des plaques allouées
+    private final LongAdder horsClasse = new LongAdder(); // Tampons trop grands pour les classes
+    private final LongAdder fuites = new LongAdder();  // Tampons perdus sans être rendus
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    private ReserveTampons() {
+        for (int classe = 0; classe < TAILLES.length; classe++) {
+            libres.add(new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * @return La réserve partagée par toutes les connexions du processus
+     */
+    public static ReserveTampons commune() {
+        return COMMUNE;
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Emprunte un tampon d'au moins la taille demandée
+     * @param taille Octets nécessaires
+     * @return Le tampon, à rendre par rendre() une fois les octets partis ou lus
+     */
+    public Tampon emprunter(int taille) {
+        emprunts.increment();
+        enCours.incrementAndGet();
+        int classe = 0;
+        while (classe < TAILLES.length && TAILLES[classe] < taille) classe++;
+        if (classe == TAILLES.length) {
+            horsClasse.increment();
+            return new Tampon(new byte[taille], 0, taille, new Emprunt(this, taille, -1, null));
+        }
+        int capacite = TAILLES[classe];
+        Deque<Bloc> file = libres.get(classe);
+        Bloc bloc;
+        synchronized (file) {
+            bloc = file.pollFirst();
+            if (bloc == null) {
+                bloc = decouperPlaque(classe);
+            }
+        }
+        return new Tampon(bloc.plaque, bloc.debut, capacite, new Emprunt(this, capacite, classe, bloc));
+    }
+
+    /**
+     * Rend un tampon : il ne doit plus être utilisé ensuite
+     * @param tampon Le tampon emprunté (sans effet si null ou déjà rendu)
+     */
+    public void rendre(Tampon tampon) {
+        if (tampon == null || !tampon.emprunt.rendre()) return;
+        tampon.nettoyage.clean();                      // Désinscrit du nettoyeur (l'action ne fait plus rien)
+        restituer(tampon.emprunt);
+    }
+
+    //==========================================================================
+    // Getters
+    //==========================================================================
+    public long getEmprunts() { return emprunts.sum(); }
+    public long getEnCours() { return enCours.get(); }
+    public long getOctetsReserves() { return reserves.get(); }
+    public long getHorsClasse() { return horsClasse.sum(); }
+    public long getFuites() { return fuites.sum(); }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Remet le bloc d'un emprunt terminé (rendu ou perdu) dans sa classe
+     */
+    private void restituer(Emprunt emprunt) {
+        enCours.decrementAndGet();
+        if (emprunt.bloc == null) return;              // Hors classe : laissé au ramasse-miettes
+        Deque<Bloc> file = libres.get(emprunt.classe);
+        synchronized (file) {
+            file.addFirst(emprunt.bloc);               // Le dernier rendu, encore en cache, part le premier
+        }
+    }
+
+    /**
+     * Alloue une plaque pour une classe et met ses blocs (sauf le premier,
+     * rendu) dans la file des blocs libres (sous le verrou de la file)
+     */
+    private Bloc decouperPlaque(int classe) {
+        int capacite = TAILLES[classe];
+        byte[] plaque = new byte[TAILLE_PLAQUE];
+        reserves.addAndGet(TAILLE_PLAQUE);
+        for (int debut = capacite; debut + capacite <= TAILLE_PLAQUE; debut += capacite) {
+            libres.get(classe).addLast(new Bloc(plaque, debut));
+        }
+        return new Bloc(plaque, 0);
+    }
+}
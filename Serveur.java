@@ -4,13 +4,25 @@
  *
  * Ce serveur :
  * - Accepte les connexions des clients
- * - Gère le début de partie
+ * - Confie le début des parties à l'appariement (Appariement)
  * - Coordonne les échanges entre les joueurs
  * - Maintient la synchronisation du jeu
+ * - Héberge d'autres salles à la demande : un client qui commence par
+ *   "SALLE:<nom>" rejoint la partie de cette salle (une instance de Serveur
+ *   par salle, créée à la première connexion, arrêtée à la dernière, au
+ *   plus SALLES_MAX à la fois)
+ * - Partage entre toutes ses salles le journal des résultats (chaque
+ *   enregistrement porte sa salle), le classement général et les métriques ;
+ *   seuls les enregistrements des parties sont propres à chaque salle
+ * - Ouvre à côté du port TCP un canal UDP pour les traits
+ *   (CanalDatagrammes), partagé par toutes ses salles
+ * - Publie les messages par sujet (Diffusion) : la salle, un rôle ou un
+ *   joueur, sans parcourir les autres connexions
  *****************************************************************************/
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -18,137 +30,362 @@ public class Serveur {
     //==========================================================================
     // Constantes
     //==========================================================================
-    private static final int PORT = 12345;           // Port d'écoute du serveur
-    private static final int MIN_PLAYERS = 3;        // Nombre minimum de joueurs pour démarrer
-    private static final int MAX_PLAYERS = 10;       // Nombre maximum de joueurs autorisés
+    private static final int PORT = 12345;           // Port d'écoute par défaut du serveur
     private static final int BUFFER_SIZE = 8192;     // Taille du buffer réseau
-    private static final int COUNTDOWN_SECONDS = 15;  // Temps de compte à rebours avant début de partie
+    private static final String DOSSIER_RESULTATS = "resultats"; // Dossier du journal des résultats
+    private static final int DECALAGE_METRIQUES = 1;  // Port HTTP local des métriques : port du serveur + 1
+    private static final String DOSSIER_PARTIES = "parties"; // Dossier des enregistrements de parties
+    private static final int SALLES_MAX = 64;        // Salles ouvertes au plus en plus de la principale
+    private static final int NOM_SALLE_MAX = 24;     // Caractères au plus d'un nom de salle
 
     //==========================================================================
     // Variables membres
     //==========================================================================
-    private final List<ClientHandler> clients = new CopyOnWriteArrayList<>();  // Liste thread-safe des clients
+    private final int port;                          // Port d'écoute
+    private final String salle;                      // Nom de la salle (null : salle principale)
+    private final Serveur principal;                 // Serveur qui écoute le port (null si c'est celui-ci)
+    private final Map<String, Serveur> salles = new HashMap<>(); // Salles hébergées par le serveur principal
+    private final Set<String> fermetures = new HashSet<>(); // Salles en cours d'arrêt (protégé par salles)
+    private int connexions = 0;                      // Connexions de la salle (protégé par principal.salles)
+    private final String dossierResultats;           // Dossier du journal (null : pas de journal)
+    private final String dossierParties;             // Dossier des enregistrements (null : pas d'enregistrement)
+    private final Thread arretJournaux;              // Fermeture du journal et de l'enregistreur (null : rien à fermer)
+    private final Diffusion diffusion = new Diffusion();  // Joueurs assis, par sujet, et registre joueur -> connexion
     private final Partie partie;                     // Instance de la partie en cours
-    private volatile boolean gameStarted = false;    // État de la partie
     private final Object lock = new Object();        // Verrou pour synchronisation
     private Timer currentTimer;                      // Timer de la manche en cours
-    private final Set<String> connectedPlayers;      // Noms des joueurs connectés
+    private final JournalResultats journal;          // Journal persistant des résultats, celui du principal (peut être null)
+    private final ClassementGeneral classementGeneral; // Classement de tous les temps, celui du principal
+    private final Metriques metriques;               // Compteurs et latences, ceux du principal
+    private final EnregistreurPartie enregistreur;   // Déroulement des parties (peut être null)
+    private final Tribune tribune = new Tribune(this);  // Spectateurs, servis à part des joueurs
+    private final Appariement appariement;           // Places, file d'attente et début des parties
+    private final Accueil accueil = new Accueil();   // Connexions qui n'ont pas encore envoyé leur nom
+    private final Pouls pouls;                       // PING / PONG : clients disparus et temps d'aller-retour
+    private volatile CanalDatagrammes datagrammes;   // Canal UDP des traits (null : traits par TCP seulement)
+    private double perteDatagrammes = 0;             // Perte simulée des datagrammes sortants (essais)
 
     //==========================================================================
     // Constructeur
     //==========================================================================
     /**
-     * Initialise un nouveau serveur de jeu
+     * Initialise un nouveau serveur de jeu sur le port par défaut
      */
     public Serveur() {
-        this.partie = new Partie(this, "Mots.txt");
-        this.connectedPlayers = Collections.synchronizedSet(new HashSet<>());
+        this(PORT, Appariement.MAX_JOUEURS);
     }
 
-    //==========================================================================
-    // Méthodes de gestion de partie
-    //==========================================================================
+    /**
+     * Initialise un nouveau serveur de jeu
+     * @param port Port d'écoute
+     */
+    public Serveur(int port) {
+        this(port, Appariement.MAX_JOUEURS);
+    }
 
     /**
-     * Vérifie périodiquement si les conditions de démarrage sont remplies
+     * Initialise un nouveau serveur de jeu au nombre de places choisi
+     * @param port Port d'écoute
+     * @param places Joueurs assis au plus dans chaque salle
      */
-    private void checkGameStart() {
-        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        final boolean[] countdownStarted = new boolean[1];  // Pour suivre si le compte à rebours a commencé
-        countdownStarted[0] = false;
-
-        scheduler.scheduleAtFixedRate(() -> {
-            if (clients.size() >= MIN_PLAYERS && !gameStarted) {
-                // Vérifier si tous les joueurs ont défini leur nom
-                boolean allPlayersNamed = clients.size() == connectedPlayers.size();
-
-                if (allPlayersNamed && !countdownStarted[0]) {
-                    countdownStarted[0] = true;
-                    startCountdown(scheduler);
-                } else if (!allPlayersNamed) {
-                    System.out.println("En attente des noms de tous les joueurs...");
-                }
-            }
-        }, 0, 1, TimeUnit.SECONDS);
+    public Serveur(int port, int places) {
+        this(port, places, Pouls.INACTIVITE_MS, Pouls.MORT_MS);
+    }
+
+    /**
+     * Initialise un nouveau serveur de jeu aux délais de battement de cœur choisis
+     * @param port Port d'écoute
+     * @param places Joueurs assis au plus dans chaque salle
+     * @param inactiviteMs Silence après lequel un client reçoit un PING
+     * @param mortMs Silence après lequel un client est déconnecté
+     */
+    public Serveur(int port, int places, long inactiviteMs, long mortMs) {
+        this(port, places, inactiviteMs, mortMs,
+            suffixer(DOSSIER_RESULTATS, port == PORT ? null : String.valueOf(port)),
+            suffixer(DOSSIER_PARTIES, port == PORT ? null : String.valueOf(port)));
     }
 
     /**
-     * Lance le compte à rebours avant le début de la partie
-     * @param scheduler L'exécuteur de tâches pour le compte à rebours
+     * Initialise un nouveau serveur de jeu aux dossiers choisis
+     * Hors du port par défaut, les dossiers par défaut sont suffixés du port :
+     * plusieurs serveurs peuvent tourner dans le même dossier
+     * @param port Port d'écoute
+     * @param places Joueurs assis au plus dans chaque salle
+     * @param inactiviteMs Silence après lequel un client reçoit un PING
+     * @param mortMs Silence après lequel un client est déconnecté
+     * @param dossierResultats Dossier du journal des résultats (null : pas de journal)
+     * @param dossierParties Dossier des enregistrements (null : parties non enregistrées)
      */
-    private void startCountdown(ScheduledExecutorService scheduler) {
-        Runnable startGameTask = new Runnable() {
-            int countdown = COUNTDOWN_SECONDS;  // Utilisation de la constante
-
-            @Override
-            public void run() {
-                if (countdown > 0) {
-                    broadcast("La partie commence dans " + countdown + " secondes!", null);
-                    countdown--;
-                } else {
-                    broadcast("La partie commence maintenant!", null);
-                    scheduler.shutdown();
-
-                    new Thread(() -> {
-                        List<ClientHandler> activeClients;
-                        synchronized (clients) {
-                            activeClients = new ArrayList<>(clients);
-                        }
-                        partie.demarrerPartie(activeClients);
-                    }).start();
+    public Serveur(int port, int places, long inactiviteMs, long mortMs, String dossierResultats, String dossierParties) {
+        this(port, places, inactiviteMs, mortMs, null, null, dossierResultats, dossierParties);
+    }
+
+    /**
+     * Initialise le serveur d'une salle
+     * Une salle reprend le journal, le classement général et les métriques
+     * de son serveur principal ; elle n'a à elle que ses enregistrements
+     * @param port Port d'écoute
+     * @param places Joueurs assis au plus dans la salle
+     * @param inactiviteMs Silence après lequel un client reçoit un PING
+     * @param mortMs Silence après lequel un client est déconnecté
+     * @param salle Nom de la salle (null : salle principale)
+     * @param principal Serveur qui écoute le port (null si c'est celui-ci)
+     * @param dossierResultats Dossier du journal des résultats (null : pas de journal ; ignoré pour une salle)
+     * @param dossierParties Dossier des enregistrements (null : parties non enregistrées)
+     */
+    private Serveur(int port, int places, long inactiviteMs, long mortMs, String salle, Serveur principal,
+                    String dossierResultats, String dossierParties) {
+        this.port = port;
+        this.salle = salle;
+        this.principal = principal;
+        this.dossierResultats = principal != null ? principal.dossierResultats : dossierResultats;
+        this.dossierParties = dossierParties;
+        this.metriques = principal != null ? principal.metriques : new Metriques(this);
+        this.partie = new Partie(this, "Mots.txt");
+        this.appariement = new Appariement(this, places);
+        this.pouls = new Pouls(this, inactiviteMs, mortMs);
+        this.enregistreur = dossierParties != null ? new EnregistreurPartie(dossierParties) : null;
+        if (principal != null) {
+            this.journal = principal.journal;
+            this.classementGeneral = principal.classementGeneral;
+        } else {
+            this.journal = dossierResultats != null ? ouvrirJournal(dossierResultats) : null;
+            this.classementGeneral = new ClassementGeneral();
+            if (journal != null) {
+                try {
+                    classementGeneral.reconstruire(journal);
+                } catch (IOException e) {
+                    System.err.println("Impossible de relire le journal des résultats: " + e.getMessage());
                 }
             }
-        };
+        }
+        if (enregistreur != null || (principal == null && journal != null)) {
+            this.arretJournaux = new Thread(this::fermerJournaux);
+            Runtime.getRuntime().addShutdownHook(arretJournaux);
+        } else {
+            this.arretJournaux = null;
+        }
+    }
+
+    /**
+     * Ouvre le journal des résultats, le jeu continue sans historique en cas d'échec
+     * @param dossier Dossier des segments du journal
+     * @return Le journal ouvert ou null
+     */
+    private static JournalResultats ouvrirJournal(String dossier) {
+        try {
+            return new JournalResultats(dossier);
+        } catch (IOException e) {
+            System.err.println("Journal des résultats indisponible: " + e.getMessage());
+            return null;
+        }
+    }
 
-        scheduler.scheduleAtFixedRate(startGameTask, 0, 1, TimeUnit.SECONDS);
+    /**
+     * Dossier propre à un port ou à une salle, à côté du dossier de base
+     * Les caractères hors [A-Za-z0-9_-] sont échappés en %XX (octets UTF-8) :
+     * deux noms différents donnent toujours deux dossiers différents
+     * @param dossier Dossier de base (null : aucun)
+     * @param suffixe Suffixe (null : le dossier de base lui-même)
+     * @return Le dossier suffixé, ou null
+     */
+    private static String suffixer(String dossier, String suffixe) {
+        if (dossier == null || suffixe == null) return dossier;
+        StringBuilder nom = new StringBuilder(dossier).append('-');
+        for (byte b : suffixe.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-') {
+                nom.append(c);
+            } else {
+                nom.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return nom.toString();
     }
 
+    //==========================================================================
+    // Méthodes de gestion de partie
+    //==========================================================================
+
     /**
      * Démarre le serveur et attend les connexions
      */
     public void demarrer() {
-        System.out.println("Démarrage du serveur sur le port " + PORT);
+        System.out.println("Démarrage du serveur sur le port " + port);
+        metriques.exposer(port + DECALAGE_METRIQUES);
+        pouls.demarrer();
+        try {
+            datagrammes = new CanalDatagrammes(port, perteDatagrammes);
+        } catch (IOException e) {
+            System.err.println("Canal UDP indisponible, les traits passeront par TCP: " + e.getMessage());
+        }
 
         try {
             ServerSocket serverSocket = new ServerSocket();
             serverSocket.setReceiveBufferSize(BUFFER_SIZE);
-            serverSocket.bind(new InetSocketAddress(PORT));
-
-            new Thread(this::checkGameStart).start();
+            serverSocket.bind(new InetSocketAddress(port));
 
             ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
             executor.setKeepAliveTime(60L, TimeUnit.SECONDS);
 
             while (true) {
                 Socket clientSocket = serverSocket.accept();
+                if (!accueil.reserver(clientSocket.getInetAddress())) {
+                    clientSocket.close();   // Trop de connexions en cours d'accueil : refus sans thread
+                    continue;
+                }
                 clientSocket.setTcpNoDelay(true);
                 clientSocket.setSendBufferSize(BUFFER_SIZE);
                 clientSocket.setReceiveBufferSize(BUFFER_SIZE);
 
-                if (gameStarted && clients.size() >= MAX_PLAYERS) {
-                    try (BufferedWriter out = new BufferedWriter(
-                            new OutputStreamWriter(clientSocket.getOutputStream()))) {
-                        out.write("La partie est pleine (maximum " + MAX_PLAYERS + " joueurs)\n");
-                        out.flush();
-                    }
-                    clientSocket.close();
-                    continue;
-                }
-
-                ClientHandler clientHandler = new ClientHandler(clientSocket, this);
-                clients.add(clientHandler);
-                executor.execute(clientHandler);
-
-                if (!gameStarted) {
-                    System.out.println("Nouveau client connecté. Total: " + clients.size());
-                    broadcast("Un nouveau joueur a rejoint la partie. (" + clients.size() + " joueurs)", null);
-                }
+                executor.execute(() -> orienter(clientSocket));
             }
         } catch (IOException e) {
             System.err.println("Erreur serveur: " + e.getMessage());
         }
     }
 
+    /**
+     * Accueille un client : lit sa salle éventuelle et son nom avant
+     * l'échéance, puis le confie à la salle demandée
+     * Joueur ou spectateur : décidé ensuite par ClientHandler selon le nom
+     * @param socket Connexion du client, déjà réservée dans l'accueil
+     */
+    private void orienter(Socket socket) {
+        String salleDemandee = null;
+        String nom;
+        try {
+            InputStream entree = socket.getInputStream();
+            long echeance = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Accueil.DELAI_MS);
+            nom = Accueil.lireLigne(socket, entree, echeance);
+            if (nom != null && nom.startsWith(Passerelle.PREFIXE_SALLE)) {
+                salleDemandee = nom.substring(Passerelle.PREFIXE_SALLE.length());
+                nom = Accueil.lireLigne(socket, entree, echeance);
+            }
+            socket.setSoTimeout(0);
+        } catch (SocketTimeoutException e) {
+            accueil.expiree();
+            nom = null;
+        } catch (IOException e) {
+            nom = null;   // Déconnexion ou ligne trop longue
+        } finally {
+            accueil.liberer(socket.getInetAddress());
+        }
+        if (nom == null || nom.isEmpty()) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+            return;
+        }
+        Serveur serveurSalle = salleDemandee == null ? this : entrerSalle(salleDemandee);
+        if (serveurSalle == null) {
+            try (socket) {
+                socket.getOutputStream().write(("Salle refusée : nom invalide ou trop de salles ouvertes\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // Déjà fermée
+            }
+            return;
+        }
+        new ClientHandler(socket, serveurSalle, nom).run();
+    }
+
+    //==========================================================================
+    // Méthodes de gestion des salles
+    //==========================================================================
+    /**
+     * Retourne le serveur d'une salle, créé et lancé s'il n'existe pas
+     * Chaque appel compte une connexion, rendue par connexionFermee
+     * Une salle en cours d'arrêt est attendue avant d'être rouverte : ses
+     * enregistrements ne sont jamais ouverts par deux instances à la fois
+     * @param nom Nom de la salle
+     * @return Le serveur de la salle, ou null si le nom est invalide ou si
+     *         SALLES_MAX salles sont déjà ouvertes
+     */
+    private Serveur entrerSalle(String nom) {
+        if (nom.isEmpty() || nom.length() > NOM_SALLE_MAX) return null;
+        synchronized (salles) {
+            try {
+                while (fermetures.contains(nom)) salles.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Serveur serveurSalle = salles.get(nom);
+            if (serveurSalle == null) {
+                if (salles.size() + fermetures.size() >= SALLES_MAX) return null;
+                serveurSalle = new Serveur(port, appariement.getPlaces(),
+                    pouls.getInactiviteMs(), pouls.getMortMs(), nom, this,
+                    null, suffixer(dossierParties, nom));
+                serveurSalle.pouls.demarrer();
+                salles.put(nom, serveurSalle);
+                System.out.println("Ouverture de la salle " + nom);
+            }
+            serveurSalle.connexions++;
+            return serveurSalle;
+        }
+    }
+
+    /**
+     * Signale la fermeture d'une connexion de cette salle
+     * La salle est arrêtée quand il n'en reste plus aucune
+     */
+    public void connexionFermee() {
+        if (principal == null) return;
+        synchronized (principal.salles) {
+            if (--connexions > 0) return;
+            principal.salles.remove(salle);
+            principal.fermetures.add(salle);
+        }
+        System.out.println("Fermeture de la salle " + salle);
+        try {
+            arreter();
+        } finally {
+            synchronized (principal.salles) {
+                principal.fermetures.remove(salle);
+                principal.salles.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * @return Ce serveur et les salles qu'il héberge (copie)
+     */
+    List<Serveur> getSalles() {
+        List<Serveur> serveurs = new ArrayList<>();
+        serveurs.add(this);
+        synchronized (salles) {
+            serveurs.addAll(salles.values());
+        }
+        return serveurs;
+    }
+
+    /**
+     * Arrête la partie et les threads d'une salle vide, ou d'un serveur
+     * jamais démarré (bancs d'essai)
+     */
+    void arreter() {
+        appariement.arreter();
+        pouls.arreter();
+        partie.setPartieEnCours(false);
+        tribune.arreter();
+        if (arretJournaux != null) {
+            Runtime.getRuntime().removeShutdownHook(arretJournaux);
+        }
+        fermerJournaux();
+    }
+
+    /**
+     * Ferme les enregistrements de ce serveur, et le journal des résultats
+     * s'il est le sien (une salle laisse celui de son principal ouvert)
+     */
+    private void fermerJournaux() {
+        if (enregistreur != null) enregistreur.fermer();
+        if (journal != null && principal == null) journal.fermer();
+    }
+
     //==========================================================================
     // Méthodes de gestion du timer
     //==========================================================================
@@ -174,26 +411,38 @@ public class Serveur {
      * @param exclude Le client à exclure (peut être null)
      */
     public void broadcast(String message, ClientHandler exclude) {
-        for (ClientHandler client : clients) {
-            if (client != exclude && client.isActive()) {
-                client.envoyerMessageAsync(message);
-            }
-        }
+        long debut = System.nanoTime();
+        if (enregistreur != null) enregistreur.noter(message);
+        tribune.noter(message);
+        diffusion.publier(Diffusion.SALLE, message, exclude);
+        metriques.getBroadcast().depuis(debut);
     }
 
     /**
      * Diffuse des données de dessin à tous les clients sauf celui spécifié
+     * Chaque client les reçoit au niveau de fidélité de sa connexion
      * @param drawingData Les données de dessin à diffuser
      * @param exclude Le client à exclure
      */
     public void broadcastDrawing(String drawingData, ClientHandler exclude) {
-        synchronized (clients) {
-            for (ClientHandler client : clients) {
-                if (client != exclude && client.isActive()) {
-                    client.envoyerMessage("DRAW:" + drawingData);
-                }
+        broadcastDrawing(new Fidelite.Trait(drawingData), exclude);
+    }
+
+    /**
+     * Diffuse un trait reçu : au niveau plein, tous les clients TCP reçoivent
+     * les mêmes octets, ceux de la ligne lue
+     * @param trait Le trait, avec sa ligne reçue si elle est disponible
+     * @param exclude Le client à exclure
+     */
+    public void broadcastDrawing(Fidelite.Trait trait, ClientHandler exclude) {
+        long debut = System.nanoTime();
+        if (enregistreur != null) enregistreur.noterTrait(trait.getDonnees());
+        for (ClientHandler client : diffusion.abonnes(Diffusion.SALLE)) {
+            if (client != exclude && client.isActive()) {
+                client.getFidelite().tracer(trait);
             }
         }
+        metriques.getBroadcast().depuis(debut);
     }
 
     //==========================================================================
@@ -202,26 +451,48 @@ public class Serveur {
 
     public Timer getCurrentTimer() { return currentTimer; }
     public Partie getPartie() { return partie; }
+    public String getNomSalle() { return salle; }
+    public JournalResultats getJournal() { return journal; }
+    public ClassementGeneral getClassementGeneral() { return classementGeneral; }
+    public Metriques getMetriques() { return metriques; }
+    public EnregistreurPartie getEnregistreur() { return enregistreur; }
+    public Tribune getTribune() { return tribune; }
+    public Appariement getAppariement() { return appariement; }
+    public Accueil getAccueil() { return accueil; }
+    public Pouls getPouls() { return pouls; }
+    public Diffusion getDiffusion() { return diffusion; }
+
+    /**
+     * Canal UDP des traits, celui du serveur principal pour une salle
+     * @return Le canal, ou null s'il n'est pas ouvert
+     */
+    public CanalDatagrammes getDatagrammes() {
+        return principal != null ? principal.getDatagrammes() : datagrammes;
+    }
+
+    /**
+     * Fait jeter une part des datagrammes sortants (essais de perte en local)
+     * A appeler avant demarrer
+     * @param perte Part entre 0 et 1
+     */
+    public void setPerteDatagrammes(double perte) {
+        this.perteDatagrammes = perte;
+    }
     public List<ClientHandler> getClients() {
-        synchronized (clients) {
-            return new ArrayList<>(clients);
+        List<ClientHandler> clients = new ArrayList<>();
+        for (ClientHandler client : diffusion.abonnes(Diffusion.SALLE)) {
+            clients.add(client);
         }
+        return clients;
     }
 
     /**
-     * Recherche un client par son joueur associé
+     * Recherche un client par son joueur associé (registre de la diffusion)
      * @param joueur Le joueur à rechercher
      * @return Le ClientHandler associé ou null si non trouvé
      */
     public ClientHandler getClientHandler(Joueur joueur) {
-        synchronized (clients) {
-            for (ClientHandler client : clients) {
-                if (client.getJoueur().equals(joueur)) {
-                    return client;
-                }
-            }
-        }
-        return null;
+        return diffusion.connexion(joueur);
     }
 
     //==========================================================================
@@ -229,27 +500,22 @@ public class Serveur {
     //==========================================================================
 
     /**
-     * Enregistre le nom d'un nouveau joueur
-     * @param playerName Le nom du joueur
+     * Ajoute un joueur assis par l'appariement à la liste des clients
+     * Les spectateurs n'y sont pas : ils ne comptent pas dans les places
+     * @param client Le client du joueur, nom déjà lu
      */
-    public void playerNameSet(String playerName) {
-        connectedPlayers.add(playerName);
+    void ajouterClient(ClientHandler client) {
+        diffusion.inscrire(client);
     }
 
     /**
      * Supprime un client de la partie
+     * Appelée par l'appariement, qui décide de l'abandon de la partie
      * @param client Le client à supprimer
      */
-    public void removeClient(ClientHandler client) {
-        synchronized (clients) {
-            clients.remove(client);
-            broadcast(client.getJoueur().getNom() + " a quitté la partie.", null);
-
-            if (clients.size() < MIN_PLAYERS && gameStarted) {
-                broadcast("Trop peu de joueurs pour continuer. Fin de la partie.", null);
-                partie.setPartieEnCours(false);
-            }
-        }
+    void removeClient(ClientHandler client) {
+        diffusion.desinscrire(client);
+        broadcast(client.getJoueur().getNom() + " a quitté la partie.", null);
     }
 
     //==========================================================================
@@ -258,8 +524,15 @@ public class Serveur {
 
     /**
      * Point d'entrée principal du serveur
+     * Usage : java Serveur [port] [places] [inactivité ms] [mort ms] [perte UDP %]
      */
     public static void main(String[] args) {
-        new Serveur().demarrer();
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : PORT;
+        int places = args.length > 1 ? Integer.parseInt(args[1]) : Appariement.MAX_JOUEURS;
+        long inactivite = args.length > 2 ? Long.parseLong(args[2]) : Pouls.INACTIVITE_MS;
+        long mort = args.length > 3 ? Long.parseLong(args[3]) : Pouls.MORT_MS;
+        Serveur serveur = new Serveur(port, places, inactivite, mort);
+        if (args.length > 4) serveur.setPerteDatagrammes(Double.parseDouble(args[4]) / 100);
+        serveur.demarrer();
     }
 }
\ No newline at end of file
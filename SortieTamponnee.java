@@ -0,0 +1,126 @@
+/******************************************************************************
+ * SortieTamponnee.java
+ * Flux de sortie d'une connexion, tamponné par la réserve commune
+ *
+ * Cette classe gère :
+ * - Le regroupement des messages écrits entre deux vidages dans un tampon
+ *   emprunté à la réserve (ReserveTampons) au premier octet écrit
+ * - Le rendu de ce tampon dès qu'il est vidé sur la socket : une connexion
+ *   sans message en file n'en tient aucun
+ * - L'écriture directe, sans copie, d'un bloc plus grand que le tampon
+ * - Le refus de toute écriture une fois le flux fermé (connexion perdue),
+ *   pour qu'un envoi encore en file n'emprunte pas de nouveau tampon
+ *
+ * Comme BufferedOutputStream, mais sans tableau gardé toute la vie de la
+ * connexion. Les appels se font sous le verrou de l'appelant.
+ *****************************************************************************/
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sortie tamponnée dont le tampon n'est tenu que pendant un envoi
+ */
+public class SortieTamponnee extends OutputStream {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final int TAILLE_TAMPON = 4096;     // Taille du tampon emprunté
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final OutputStream sortie;                 // Flux de la socket
+    private final ReserveTampons reserve;              // Réserve des tampons
+    private ReserveTampons.Tampon tampon;              // Tampon emprunté (null : rien en attente)
+    private int rempli;                                // Fin des octets en attente dans le tampon
+    private boolean ferme = false;                     // Flux fermé : plus aucune écriture
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param sortie Flux de la socket
+     * @param reserve Réserve où emprunter les tampons
+     */
+    public SortieTamponnee(OutputStream sortie, ReserveTampons reserve) {
+        this.sortie = sortie;
+        this.reserve = reserve;
+    }
+
+    //==========================================================================
+    // Méthodes de OutputStream
+    //==========================================================================
+    @Override
+    public void write(int b) throws IOException {
+        preparer(1);
+        tampon.getOctets()[rempli++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= TAILLE_TAMPON) {
+            // Bloc plus grand que le tampon : ce qui attend part d'abord, le bloc ensuite, sans copie
+            verifierOuvert();
+            vider();
+            sortie.write(b, off, len);
+            return;
+        }
+        preparer(len);
+        System.arraycopy(b, off, tampon.getOctets(), rempli, len);
+        rempli += len;
+    }
+
+    /**
+     * Écrit les octets en attente sur la socket et rend le tampon
+     */
+    @Override
+    public void flush() throws IOException {
+        vider();
+        sortie.flush();
+    }
+
+    /**
+     * Rend le tampon sans écrire ce qui attend : la socket est fermée
+     */
+    @Override
+    public void close() {
+        ferme = true;
+        rendre();
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Garantit la place pour len octets : emprunte le tampon, ou le vide s'il est trop plein
+     */
+    private void preparer(int len) throws IOException {
+        verifierOuvert();
+        if (tampon != null && rempli + len > tampon.getFin()) {
+            vider();
+        }
+        if (tampon == null) {
+            tampon = reserve.emprunter(TAILLE_TAMPON);
+            rempli = tampon.getDebut();
+        }
+    }
+
+    private void vider() throws IOException {
+        if (tampon == null) return;
+        try {
+            sortie.write(tampon.getOctets(), tampon.getDebut(), rempli - tampon.getDebut());
+        } finally {
+            rendre();   // Écrit ou perdu avec la connexion : le tampon retourne à la réserve
+        }
+    }
+
+    private void rendre() {
+        reserve.rendre(tampon);
+        tampon = null;
+    }
+
+    private void verifierOuvert() throws IOException {
+        if (ferme) throw new IOException("Connexion fermée");
+    }
+}
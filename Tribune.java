@@ -0,0 +1,192 @@
+/******************************************************************************
+ * Tribune.java
+ * Diffusion de la partie aux spectateurs
+ *
+ * Cette classe gère :
+ * - Les connexions des spectateurs, qui ne sont pas des joueurs (pas de
+ *   rôle, pas de tour, pas de place comptée dans MAX_PLAYERS)
+ * - L'accumulation des événements de la partie (manches, chat, temps...)
+ * - L'envoi groupé, quelques fois par seconde, de ces événements et des
+ *   seules tuiles du dessin modifiées depuis l'envoi précédent
+ *
+ * Tout le travail se fait sur un thread de faible priorité, à part du jeu :
+ * le fil des joueurs ne fait qu'ajouter un message à une file. Un grand
+ * public ne change donc rien à la latence des joueurs. Un spectateur trop
+ * lent saute des envois : les événements sautés lui sont gardés et partent
+ * avec l'envoi suivant (rôles, scores et temps restent justes), le dessin
+ * est rattrapé d'un coup. Au-delà de RETARD_OCTETS_MAX d'événements en
+ * attente, il ne suit plus du tout et sa connexion est fermée.
+ *****************************************************************************/
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spectateurs du serveur et leur diffusion basse fréquence
+ */
+public class Tribune {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    public static final String PREFIXE = "SPECTATEUR:";  // Début du nom envoyé par un spectateur
+    private static final int PERIODE_MS = 500;          // Intervalle entre deux envois aux spectateurs
+    private static final int RETARD_MAX = 4;            // Envois en attente au-delà desquels un spectateur saute un tour
+    private static final int RETARD_OCTETS_MAX = 256 * 1024;   // Événements gardés au-delà desquels un spectateur est déconnecté
+
+    //==========================================================================
+    // Place d'un spectateur
+    //==========================================================================
+    private static class Place {
+        final ClientHandler client;                     // Connexion du spectateur
+        long version = 0;                               // Version du canevas déjà envoyée (0 : image blanche)
+        final StringBuilder sautes = new StringBuilder();   // Événements des envois sautés, à envoyer au suivant
+
+        Place(ClientHandler client) {
+            this.client = client;
+        }
+    }
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final Serveur serveur;                      // Référence au serveur
+    private final List<Place> places = new CopyOnWriteArrayList<>();   // Spectateurs connectés
+    private final Queue<String> evenements = new ConcurrentLinkedQueue<>(); // Événements depuis le dernier envoi
+    private final ScheduledExecutorService diffuseur;   // Thread de diffusion
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Crée la tribune et démarre sa diffusion périodique
+     * @param serveur Serveur dont on diffuse la partie
+     */
+    public Tribune(Serveur serveur) {
+        this.serveur = serveur;
+        diffuseur = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tribune");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        diffuseur.scheduleWithFixedDelay(this::diffuserSilencieusement, PERIODE_MS, PERIODE_MS, TimeUnit.MILLISECONDS);
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Ajoute un spectateur, qui recevra tout le dessin au prochain envoi
+     * @param client Connexion du spectateur
+     */
+    public void ajouter(ClientHandler client) {
+        places.add(new Place(client));
+    }
+
+    /**
+     * Retire un spectateur déconnecté
+     * @param client Connexion du spectateur
+     */
+    public void retirer(ClientHandler client) {
+        places.removeIf(place -> place.client == client);
+    }
+
+    /**
+     * Note un message diffusé aux joueurs (non bloquant)
+     * Les messages de dessin sont ignorés : les spectateurs reçoivent des tuiles
+     * @param message Le message diffusé
+     */
+    public void noter(String message) {
+        if (places.isEmpty()) return;
+        if (message.startsWith("UNDO:") || message.startsWith("REDO:") || message.startsWith("CLEAR:")) return;
+        evenements.offer(message);
+    }
+
+    /**
+     * Arrête la diffusion (salle fermée)
+     */
+    public void arreter() {
+        diffuseur.shutdownNow();
+    }
+
+    /**
+     * Retourne le nombre de spectateurs connectés
+     * @return Nombre de spectateurs
+     */
+    public int getNombre() {
+        return places.size();
+    }
+
+    //==========================================================================
+    // Diffusion
+    //==========================================================================
+    private void diffuserSilencieusement() {
+        try {
+            diffuser();
+        } catch (RuntimeException e) {
+            System.err.println("Erreur lors de la diffusion aux spectateurs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envoie à chaque spectateur, en un seul message, les événements accumulés
+     * puis les tuiles qu'il n'a pas encore
+     * Le message des tuiles est construit une fois par version de départ
+     */
+    private void diffuser() {
+        if (places.isEmpty()) {
+            evenements.clear();
+            return;
+        }
+
+        StringBuilder texte = new StringBuilder();
+        String evenement;
+        while ((evenement = evenements.poll()) != null) {
+            if (texte.length() > 0) texte.append('\n');
+            texte.append(evenement);
+        }
+        String lot = texte.toString();
+        CanevasTuiles canevas = serveur.getPartie().getCanevas();
+        long version = canevas.actualiser(serveur.getPartie().getHistorique().copie());
+
+        Map<Long, String> tuilesDepuis = new HashMap<>();
+        for (Place place : places) {
+            if (place.client.getFileAttente() > RETARD_MAX) {
+                // Envoi sauté : ses événements attendent le suivant
+                if (!lot.isEmpty()) {
+                    if (place.sautes.length() > 0) place.sautes.append('\n');
+                    place.sautes.append(lot);
+                }
+                if (place.sautes.length() > RETARD_OCTETS_MAX) {
+                    System.out.println("Spectateur trop en retard, déconnecté : " + place.client.getJoueur().getNom());
+                    place.client.fermer();
+                }
+                continue;
+            }
+
+            String evenementsPlace = lot;
+            if (place.sautes.length() > 0) {
+                if (!lot.isEmpty()) place.sautes.append('\n').append(lot);
+                evenementsPlace = place.sautes.toString();
+                place.sautes.setLength(0);
+            }
+            String tuiles = place.version < version
+                ? tuilesDepuis.computeIfAbsent(place.version, canevas::tuiles)
+                : null;
+            place.version = version;
+            if (tuiles == null) {
+                if (!evenementsPlace.isEmpty()) place.client.envoyerMessageAsync(evenementsPlace);
+            } else {
+                // Les tuiles après les événements : un NOUVEAU_DESSINATEUR du même envoi ne les efface pas
+                place.client.envoyerMessageAsync(evenementsPlace.isEmpty() ? tuiles : evenementsPlace + "\n" + tuiles);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/******************************************************************************
+ * ZoneChat.java
+ * Zone d'affichage du chat du client
+ *
+ * Cette classe gère :
+ * - L'historique des lignes dans un tampon circulaire de taille fixe
+ * - Le regroupement des ajouts d'une même image en une seule insertion
+ * - La suppression des lignes les plus anciennes par blocs
+ * - Le défilement automatique vers la dernière ligne
+ *
+ * Le document ne dépasse jamais CAPACITE + MARGE lignes : la mémoire et le
+ * coût d'un ajout restent constants, même après des heures de partie.
+ *****************************************************************************/
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+
+/**
+ * JTextArea en lecture seule dont l'historique est borné
+ * A utiliser depuis l'EDT uniquement
+ */
+public class ZoneChat extends JTextArea {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final long serialVersionUID = 1L;
+    private static final int CAPACITE = 500;          // Lignes conservées après un nettoyage
+    private static final int MARGE = 100;             // Lignes tolérées en plus avant de nettoyer
+
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final int[] longueurs = new int[CAPACITE + MARGE]; // Longueur de chaque ligne affichée (tampon circulaire)
+    private int premiere = 0;                         // Index de la plus ancienne ligne dans longueurs
+    private int nombre = 0;                           // Lignes présentes dans le document
+    private final List<String> enAttente = new ArrayList<>(); // Lignes ajoutées depuis le dernier affichage
+    private boolean affichagePlanifie = false;        // Un vidage de enAttente est déjà prévu
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * Crée la zone de chat, non éditable, avec retour à la ligne par mots
+     */
+    public ZoneChat() {
+        setEditable(false);
+        setLineWrap(true);
+        setWrapStyleWord(true);
+    }
+
+    //==========================================================================
+    // Méthodes publiques
+    //==========================================================================
+    /**
+     * Ajoute une ligne au chat
+     * Elle est affichée avec les autres lignes ajoutées pendant le même passage de l'EDT
+     * @param ligne Texte de la ligne, sans retour à la ligne
+     */
+    public void ajouterLigne(String ligne) {
+        enAttente.add(ligne);
+        if (!affichagePlanifie) {
+            affichagePlanifie = true;
+            SwingUtilities.invokeLater(this::afficherEnAttente);
+        }
+    }
+
+    //==========================================================================
+    // Méthodes privées
+    //==========================================================================
+    /**
+     * Insère les lignes en attente en une fois, retire les plus anciennes si
+     * nécessaire puis fait défiler jusqu'en bas
+     */
+    private void afficherEnAttente() {
+        affichagePlanifie = false;
+        if (enAttente.isEmpty()) return;
+
+        // Au-delà de CAPACITE lignes dans un même lot, les plus anciennes ne seraient jamais visibles
+        int ignorees = Math.max(0, enAttente.size() - CAPACITE);
+        Document document = getDocument();
+        try {
+            if (nombre + enAttente.size() - ignorees > CAPACITE + MARGE) {
+                retirerPlusAnciennes(document, nombre + enAttente.size() - ignorees - CAPACITE);
+            }
+
+            StringBuilder texte = new StringBuilder();
+            for (int i = ignorees; i < enAttente.size(); i++) {
+                String ligne = enAttente.get(i) + "\n";
+                texte.append(ligne);
+                longueurs[(premiere + nombre) % longueurs.length] = ligne.length();
+                nombre++;
+            }
+            document.insertString(document.getLength(), texte.toString(), null);
+        } catch (BadLocationException e) {
+            System.err.println("Erreur lors de l'affichage du chat: " + e.getMessage());
+        }
+        enAttente.clear();
+        setCaretPosition(document.getLength());
+    }
+
+    /**
+     * Retire d'un bloc les plus anciennes lignes du document
+     * @param document Document de la zone
+     * @param aRetirer Nombre de lignes à retirer
+     * @throws BadLocationException si le document ne correspond plus au tampon
+     */
+    private void retirerPlusAnciennes(Document document, int aRetirer) throws BadLocationException {
+        int caracteres = 0;
+        for (int i = 0; i < aRetirer; i++) {
+            caracteres += longueurs[premiere];
+            premiere = (premiere + 1) % longueurs.length;
+        }
+        nombre -= aRetirer;
+        document.remove(0, caracteres);
+    }
+}
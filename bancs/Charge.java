@@ -0,0 +1,33 @@
+/******************************************************************************
+ * Charge.java
+ * Opération mesurée par un banc d'essai
+ *
+ * Les classes du jeu sont dans le paquetage par défaut, que JMH refuse et
+ * qu'un paquetage nommé ne peut pas importer : les bancs manipulent donc le
+ * jeu uniquement à travers cette interface, implémentée côté jeu par
+ * ChargesBanc.
+ *****************************************************************************/
+
+package bancs;
+
+public interface Charge {
+    /**
+     * Exécute une fois l'opération mesurée
+     * @return Un résultat à consommer pour éviter l'élimination de code mort
+     * @throws Exception si l'opération échoue
+     */
+    Object executer() throws Exception;
+
+    /**
+     * Attend la fin du travail asynchrone déclenché (files d'envoi vidées)
+     * @throws InterruptedException si l'attente est interrompue
+     */
+    default void attendre() throws InterruptedException {
+    }
+
+    /**
+     * Libère les ressources (connexions, threads)
+     */
+    default void fermer() {
+    }
+}
@@ -0,0 +1,45 @@
+/******************************************************************************
+ * Charges.java
+ * Fabrique des opérations mesurées par les bancs d'essai
+ *****************************************************************************/
+
+package bancs;
+
+public interface Charges {
+    /**
+     * Diffusion d'un message à nbClients connexions en mémoire
+     * @param nbClients Nombre de clients connectés
+     * @param dessin true pour Serveur.broadcastDrawing, false pour Serveur.broadcast
+     */
+    Charge diffusion(int nbClients, boolean dessin);
+
+    /** Encodage DRAW d'un trait de nbPoints points */
+    Charge encodageDessin(int nbPoints);
+
+    /** Décodage DRAW d'un trait de nbPoints points */
+    Charge decodageDessin(int nbPoints);
+
+    /** Partie.verifierMot pour une proposition fausse donnée */
+    Charge verification(String proposition);
+
+    /** Tirage d'un mot dans le dictionnaire */
+    Charge choixMot();
+
+    /** Lancement d'une manche pour nbJoueurs joueurs */
+    Charge debutManche(int nbJoueurs);
+
+    /** Construction et envoi du podium pour nbJoueurs joueurs */
+    Charge podium(int nbJoueurs);
+
+    /**
+     * Charge l'implémentation du paquetage par défaut
+     * @return Les charges du jeu
+     */
+    static Charges charger() {
+        try {
+            return (Charges) Class.forName("ChargesBanc").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("ChargesBanc introuvable", e);
+        }
+    }
+}
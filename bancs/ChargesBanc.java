@@ -0,0 +1,184 @@
+/******************************************************************************
+ * ChargesBanc.java
+ * Opérations du jeu exposées aux bancs d'essai JMH
+ *
+ * Cette classe prépare :
+ * - Un serveur avec des clients en mémoire (SocketMemoire), sans journal des
+ *   résultats ni enregistrement des parties, arrêté à la fin de l'essai
+ * - Des traits de dessin de taille donnée
+ * - Une partie avec un mot choisi
+ * Toutes les données aléatoires utilisent une graine fixe pour que les
+ * résultats soient comparables d'un commit à l'autre.
+ *****************************************************************************/
+
+import bancs.Charge;
+import bancs.Charges;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Implémentation des charges sur les classes du jeu
+ */
+public class ChargesBanc implements Charges {
+    //==========================================================================
+    // Constantes
+    //==========================================================================
+    private static final long GRAINE = 42L;                 // Graine des données aléatoires
+    private static final int POINTS_TRAIT_DIFFUSE = 50;     // Taille du trait diffusé
+    private static final String MOT = "Maison";             // Mot choisi pour les vérifications
+    private static final int PORT = 12345;                  // Port du serveur, jamais ouvert
+
+    //==========================================================================
+    // Charges
+    //==========================================================================
+    @Override
+    public Charge diffusion(int nbClients, boolean dessin) {
+        Salle salle = new Salle(nbClients);
+        String donnees = trait(POINTS_TRAIT_DIFFUSE).encoder();
+        return salle.charge(() -> {
+            if (dessin) {
+                salle.serveur.broadcastDrawing(donnees, null);
+            } else {
+                salle.serveur.broadcast("TEMPS:42", null);
+            }
+            return salle;
+        });
+    }
+
+    @Override
+    public Charge encodageDessin(int nbPoints) {
+        LineData ligne = trait(nbPoints);
+        return ligne::encoder;
+    }
+
+    @Override
+    public Charge decodageDessin(int nbPoints) {
+        String donnees = trait(nbPoints).encoder();
+        return () -> LineData.decoder(donnees);
+    }
+
+    @Override
+    public Charge verification(String proposition) {
+        Salle salle = new Salle(3);
+        Partie partie = salle.serveur.getPartie();
+        partie.setMotChoisi(MOT);
+        salle.serveur.getCurrentTimer().stopTimer();   // Pas de TEMPS: parasites pendant la mesure
+        Joueur joueur = salle.clients.get(1).getJoueur();
+        return salle.charge(() -> partie.verifierMot(joueur, proposition));
+    }
+
+    @Override
+    public Charge choixMot() {
+        GestionnaireDeMot gestionnaire = new GestionnaireDeMot("Mots.txt");
+        return gestionnaire::choisirMotAleatoire;
+    }
+
+    @Override
+    public Charge debutManche(int nbJoueurs) {
+        Salle salle = new Salle(nbJoueurs);
+        Partie partie = salle.serveur.getPartie();
+        return salle.charge(() -> {
+            partie.demarrerPartie(salle.clients);
+            partie.setPartieEnCours(false);
+            return partie;
+        });
+    }
+
+    @Override
+    public Charge podium(int nbJoueurs) {
+        Salle salle = new Salle(nbJoueurs);
+        ClientHandler demandeur = salle.clients.get(0);
+        return salle.charge(() -> {
+            salle.serveur.getPartie().envoyerPodium(demandeur);
+            return demandeur;
+        });
+    }
+
+    //==========================================================================
+    // Méthodes utilitaires
+    //==========================================================================
+    /**
+     * Construit un trait pseudo-aléatoire (marche aléatoire) de nbPoints points
+     */
+    private static LineData trait(int nbPoints) {
+        Random aleatoire = new Random(GRAINE);
+        LineData ligne = new LineData(1, Color.BLACK, 4);
+        int x = 400, y = 300;
+        for (int i = 0; i < nbPoints; i++) {
+            x += aleatoire.nextInt(7) - 3;
+            y += aleatoire.nextInt(7) - 3;
+            ligne.ajouterPoint(x, y);
+        }
+        return ligne;
+    }
+
+    //==========================================================================
+    // Salle de test
+    //==========================================================================
+    /**
+     * Serveur non démarré auquel sont branchés des clients en mémoire
+     * Rien n'est écrit sur disque : les essais ne touchent ni aux résultats
+     * ni aux enregistrements d'un vrai serveur lancé dans le même dossier
+     */
+    private static class Salle {
+        final Serveur serveur = new Serveur(PORT, Appariement.MAX_JOUEURS,
+            Pouls.INACTIVITE_MS, Pouls.MORT_MS, null, null);
+        final List<ClientHandler> clients = new ArrayList<>();
+        final List<SocketMemoire> sockets = new ArrayList<>();
+        final ExecutorService lecteurs = Executors.newCachedThreadPool();
+
+        Salle(int nbClients) {
+            serveur.getAppariement().desactiver();   // Pas de limite de places ni de partie lancée seule
+            for (int i = 0; i < nbClients; i++) {
+                SocketMemoire socket = new SocketMemoire("joueur" + i);
+                ClientHandler client = new ClientHandler(socket, serveur);
+                sockets.add(socket);
+                clients.add(client);
+                lecteurs.execute(client);
+            }
+            // Attendre que chaque client ait envoyé son nom et soit admis comme joueur
+            while (serveur.getClients().size() < nbClients) {
+                Thread.onSpinWait();
+            }
+            vider();
+        }
+
+        /**
+         * Attend que toutes les files d'envoi soient vides
+         */
+        void vider() {
+            for (ClientHandler client : clients) {
+                while (client.getFileAttente() > 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        Charge charge(Charge operation) {
+            return new Charge() {
+                @Override
+                public Object executer() throws Exception {
+                    return operation.executer();
+                }
+
+                @Override
+                public void attendre() {
+                    vider();
+                }
+
+                @Override
+                public void fermer() {
+                    for (SocketMemoire socket : sockets) {
+                        socket.close();
+                    }
+                    lecteurs.shutdown();
+                    serveur.arreter();   // Threads de la tribune, du pouls et de l'appariement
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/******************************************************************************
+ * DessinBanc.java
+ * Banc d'essai du codec des messages DRAW
+ *
+ * Mesure l'encodage (côté dessinateur) et le décodage (côté devineurs)
+ * d'un trait selon son nombre de points.
+ *****************************************************************************/
+
+package bancs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DessinBanc {
+    @Param({"2", "50", "500"})
+    public int nbPoints;
+
+    private Charge encodage;
+    private Charge decodage;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        Charges charges = Charges.charger();
+        encodage = charges.encodageDessin(nbPoints);
+        decodage = charges.decodageDessin(nbPoints);
+    }
+
+    @Benchmark
+    public Object encoder() throws Exception {
+        return encodage.executer();
+    }
+
+    @Benchmark
+    public Object decoder() throws Exception {
+        return decodage.executer();
+    }
+}
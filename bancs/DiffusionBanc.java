@@ -0,0 +1,56 @@
+/******************************************************************************
+ * DiffusionBanc.java
+ * Banc d'essai de la diffusion vers N clients
+ *
+ * Mesure Serveur.broadcast et Serveur.broadcastDrawing : le coût porté par
+ * le thread appelant (mise en file pour chaque client). Les files sont
+ * vidées entre deux itérations pour que la mémoire reste stable.
+ *****************************************************************************/
+
+package bancs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class DiffusionBanc {
+    @Param({"1", "10", "100", "500"})
+    public int nbClients;
+
+    private Charge texte;
+    private Charge dessin;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        Charges charges = Charges.charger();
+        texte = charges.diffusion(nbClients, false);
+        dessin = charges.diffusion(nbClients, true);
+    }
+
+    @TearDown(Level.Iteration)
+    public void vider() throws InterruptedException {
+        texte.attendre();
+        dessin.attendre();
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() {
+        texte.fermer();
+        dessin.fermer();
+    }
+
+    @Benchmark
+    public Object broadcast() throws Exception {
+        return texte.executer();
+    }
+
+    @Benchmark
+    public Object broadcastDrawing() throws Exception {
+        return dessin.executer();
+    }
+}
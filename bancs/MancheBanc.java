@@ -0,0 +1,57 @@
+/******************************************************************************
+ * MancheBanc.java
+ * Banc d'essai des transitions de manche
+ *
+ * Mesure le lancement d'une manche (rôles, choix des mots) et l'envoi du
+ * podium selon le nombre de joueurs. terminerManche n'est pas mesurée
+ * directement : elle est dominée par sa pause fixe de 3 secondes, le podium
+ * en est la partie qui dépend de la taille de la salle.
+ *****************************************************************************/
+
+package bancs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MancheBanc {
+    @Param({"3", "10", "100"})
+    public int nbJoueurs;
+
+    private Charge debutManche;
+    private Charge podium;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        Charges charges = Charges.charger();
+        debutManche = charges.debutManche(nbJoueurs);
+        podium = charges.podium(nbJoueurs);
+    }
+
+    @TearDown(Level.Iteration)
+    public void vider() throws InterruptedException {
+        debutManche.attendre();
+        podium.attendre();
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() {
+        debutManche.fermer();
+        podium.fermer();
+    }
+
+    @Benchmark
+    public Object lancerManche() throws Exception {
+        return debutManche.executer();
+    }
+
+    @Benchmark
+    public Object envoyerPodium() throws Exception {
+        return podium.executer();
+    }
+}
@@ -0,0 +1,59 @@
+/******************************************************************************
+ * MotsBanc.java
+ * Banc d'essai de la gestion des mots
+ *
+ * Mesure la vérification d'une proposition (éloignée ou presque juste)
+ * par Partie.verifierMot et le tirage d'un mot dans le dictionnaire.
+ *****************************************************************************/
+
+package bancs;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class MotsBanc {
+    private Charge propositionEloignee;
+    private Charge propositionProche;
+    private Charge choixMot;
+
+    @Setup(Level.Trial)
+    public void preparer() {
+        Charges charges = Charges.charger();
+        propositionEloignee = charges.verification("girafe");
+        propositionProche = charges.verification("maisn");
+        choixMot = charges.choixMot();
+    }
+
+    @TearDown(Level.Iteration)
+    public void vider() throws InterruptedException {
+        propositionEloignee.attendre();
+        propositionProche.attendre();
+    }
+
+    @TearDown(Level.Trial)
+    public void fermer() {
+        propositionEloignee.fermer();
+        propositionProche.fermer();
+    }
+
+    @Benchmark
+    public Object verifierMotEloigne() throws Exception {
+        return propositionEloignee.executer();
+    }
+
+    @Benchmark
+    public Object verifierMotProche() throws Exception {
+        return propositionProche.executer();
+    }
+
+    @Benchmark
+    public Object choisirMot() throws Exception {
+        return choixMot.executer();
+    }
+}
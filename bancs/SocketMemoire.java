@@ -0,0 +1,77 @@
+/******************************************************************************
+ * SocketMemoire.java
+ * Socket factice pour les bancs d'essai
+ *
+ * Cette classe :
+ * - Fournit le nom du joueur en entrée puis bloque jusqu'à la fermeture
+ * - Jette tout ce qui est écrit en sortie
+ * Elle permet de connecter des centaines de ClientHandler sans réseau.
+ *****************************************************************************/
+
+import java.io.*;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Socket en mémoire, sans connexion réelle
+ */
+class SocketMemoire extends Socket {
+    //==========================================================================
+    // Variables membres
+    //==========================================================================
+    private final byte[] nom;                               // Ligne de nom envoyée au serveur
+    private final CountDownLatch fermeture = new CountDownLatch(1);
+
+    //==========================================================================
+    // Constructeur
+    //==========================================================================
+    /**
+     * @param nomJoueur Nom que le "client" envoie à la connexion
+     */
+    public SocketMemoire(String nomJoueur) {
+        this.nom = (nomJoueur + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    //==========================================================================
+    // Flux
+    //==========================================================================
+    @Override
+    public InputStream getInputStream() {
+        return new InputStream() {
+            private int position = 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] un = new byte[1];
+                return read(un, 0, 1) < 0 ? -1 : un[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (position < nom.length) {
+                    int n = Math.min(len, nom.length - position);
+                    System.arraycopy(nom, position, b, off, n);
+                    position += n;
+                    return n;
+                }
+                try {
+                    fermeture.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return -1;
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return OutputStream.nullOutputStream();
+    }
+
+    @Override
+    public synchronized void close() {
+        fermeture.countDown();
+    }
+}